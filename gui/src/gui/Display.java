@@ -8,12 +8,18 @@ import javafx.scene.layout.*;
 import javafx.scene.shape.Rectangle;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import model.BinaryImage;
+import model.EntropyCodec;
 import model.FileLoader;
+import model.LoaderException;
 import model.QuadTree;
+import model.RITQTNode;
 import ptui.RITCompress;
 import ptui.RITUncompress;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
@@ -30,8 +36,9 @@ public class Display {
     private static final FileChooser FILE_CHOOSER = new FileChooser();
 
     // Filters for file selection
-    private static final FileChooser.ExtensionFilter UNCOMPRESSED_FILTER = new FileChooser.ExtensionFilter("Uncompressed Image Format", "*.txt");
-    private static final FileChooser.ExtensionFilter COMPRESSED_FILTER = new FileChooser.ExtensionFilter("Compressed Image Format", "*.rit");
+    private static final FileChooser.ExtensionFilter UNCOMPRESSED_FILTER = new FileChooser.ExtensionFilter("Uncompressed Image Format", "*.txt", "*.pgm", "*.raw");
+    private static final FileChooser.ExtensionFilter ARCHIVE_FILTER = new FileChooser.ExtensionFilter("Image Archive", "*.rita");
+    private static final FileChooser.ExtensionFilter COMPRESSED_FILTER = new FileChooser.ExtensionFilter("Compressed Image Format", "*.rit", "*.ritd", "*.rite");
 
     /**
      * Opens a file selection window with the provided title.
@@ -50,7 +57,28 @@ public class Display {
         // Access the file
         File file = save ? FILE_CHOOSER.showSaveDialog(stage) : FILE_CHOOSER.showOpenDialog(stage);
 
-        if (file != null) {
+        if (file != null && !save && FileLoader.isArchive(file.getPath())) {
+            // Entries of an archive are opened as if they were files
+            try {
+                List<String> names = new ArrayList<>();
+                FileLoader.openArchive(file.getPath()).entries().forEach(entry -> names.add(entry.name()));
+
+                ChoiceDialog<String> dialog = new ChoiceDialog<>(names.isEmpty() ? null : names.get(0), names);
+                dialog.setTitle(title);
+                dialog.setHeaderText("Select an entry of " + file.getName());
+                Optional<String> name = dialog.showAndWait();
+
+                if (name.isPresent()) {
+                    String path = file.getPath() + FileLoader.ENTRY_SEPARATOR + name.get();
+                    pathApplicator.accept(path);
+                    postOut("Applied new path: " + path);
+                } else {
+                    postOut("Failed to apply path, no entry selected");
+                }
+            } catch (IOException | LoaderException e) {
+                postException(e.getMessage());
+            }
+        } else if (file != null) {
             pathApplicator.accept(file.getPath());
             postOut("Applied new path: " + file.getPath());
         } else {
@@ -76,7 +104,12 @@ public class Display {
     private static void saveContentToDestination() {
         if(!destinationPathField.getText().isEmpty() && !destinationPathField.getText().equals(NO_PATH)) {
             if(activeContents != null) {
-                FileLoader.secureWriteFileContents(activeContents, destinationPathField.getText());
+                if (activeMode == Mode.COMPRESS && FileLoader.isEntropyFormat(destinationPathField.getText())) {
+                    // Entropy coded files are encoded from the compressed tree rather than the active contents
+                    FileLoader.secureWriteBytes(EntropyCodec.encode(RITCompress.treeContents(), RITCompress.uncompressedSize()), destinationPathField.getText());
+                } else {
+                    FileLoader.secureWriteFileContents(activeContents, destinationPathField.getText());
+                }
                 postOut("Saved active contents to: " + destinationPathField.getText());
                 return;
             }
@@ -94,7 +127,10 @@ public class Display {
     private static Mode activeMode = Mode.DISPLAY;
 
     /** The default zoom value is 1. **/
-    private static int zoom = 1;
+    private static double zoom = 1;
+
+    /** The viewer of the displayed image, or null when no image is displayed. **/
+    private static TiledViewer activeViewer;
 
     /** The root container of all gui elements. **/
     private static final BorderPane container = new BorderPane();
@@ -123,7 +159,7 @@ public class Display {
         destinationPathField.setText(NO_PATH);
 
         // Clear any displayed images
-        scrollView.setContent(null);
+        showViewer(null);
 
         postOut("Reset program data");
     }
@@ -228,7 +264,14 @@ public class Display {
         existingFile.setOnAction(actionEvent -> postFileSelection(stage, "Select Destination File", false, destinationPathField::setText, activeMode == Mode.UNCOMPRESS ? UNCOMPRESSED_FILTER : COMPRESSED_FILTER));
 
         // Action and configuration for selecting the source file
-        sourceSelect.setOnAction(actionEvent -> postFileSelection(stage, "Select Source File", false, sourcePathField::setText, activeMode == Mode.UNCOMPRESS ? COMPRESSED_FILTER : UNCOMPRESSED_FILTER));
+        sourceSelect.setOnAction(actionEvent -> {
+            if (activeMode == Mode.DISPLAY) {
+                // Both image formats can be displayed
+                postFileSelection(stage, "Select Source File", false, sourcePathField::setText, UNCOMPRESSED_FILTER, COMPRESSED_FILTER, ARCHIVE_FILTER);
+            } else {
+                postFileSelection(stage, "Select Source File", false, sourcePathField::setText, activeMode == Mode.UNCOMPRESS ? COMPRESSED_FILTER : UNCOMPRESSED_FILTER, ARCHIVE_FILTER);
+            }
+        });
         sourceSelect.setMaxWidth(Double.MAX_VALUE);
 
         destinationSelect.getItems().addAll(newFile, existingFile);
@@ -301,10 +344,12 @@ public class Display {
             area.setWrapText(true);
 
             area.setText(
-                    "This program includes an additional zoom functionality that allows images to be viewed at a " +
-                    "maximum size of five times their original size. This functionality becomes less reliable when " +
-                    "with large images. Images that are larger than the window will be viewable using scroll bars that " +
-                    "appear accordingly."
+                    "This program includes an additional zoom functionality that allows images to be viewed at any " +
+                    "size between " + TiledViewer.MIN_ZOOM + " and " + TiledViewer.MAX_ZOOM + " times their original " +
+                    "size. Zoom values below 1 display an averaged image, and fractional values are accepted. Holding " +
+                    "the control key while scrolling over a displayed image will zoom about the cursor. Only the visible " +
+                    "part of an image is drawn, so very large images can be displayed. Images that are larger than the " +
+                    "window will be viewable using scroll bars that appear accordingly."
             );
 
             contentPane.add(area, 1, 1);
@@ -365,25 +410,46 @@ public class Display {
         run.setOnAction(actionEvent -> {
             String sourcePath = sourcePathField.getText();
 
+            // The format of an archive entry is given by the entry name rather than the archive
+            String sourceName = FileLoader.isArchiveEntry(sourcePath) ? sourcePath.substring(sourcePath.lastIndexOf(FileLoader.ENTRY_SEPARATOR) + 1) : sourcePath;
+
             // The run button handles display, compression, and uncompression
 
             if (!sourcePath.equals(NO_PATH)) {
                 if (activeMode == Mode.DISPLAY) {
-                    if (sourcePath.contains(".txt")) {
+                    if (sourceName.contains(".txt") || BinaryImage.isBinaryImage(sourceName)) {
                         List<Integer> content = FileLoader.secureLoadFileContents(sourcePath);
                         if(!content.isEmpty()) {
-                            // Center the displayed image in a stackpane that is the same size as the scrollView
-                            StackPane centeringPane = new StackPane(RITViewer.fillCanvas(content, zoom));
-                            centeringPane.setMinWidth(scrollView.getWidth());
-                            centeringPane.setMinHeight(scrollView.getHeight());
-                            scrollView.setContent(centeringPane);
+                            // The viewer centers images that are smaller than the scrollView
+                            showViewer(new TiledViewer(content, scrollView, zoom));
                             postOut("Displayed uncompressed image at: " + sourcePath);
                         }
+                    } else if (FileLoader.isEntropyFormat(sourcePath)) {
+                        try {
+                            byte[] data = FileLoader.secureLoadBytes(sourcePath);
+                            showViewer(new TiledViewer(EntropyCodec.decode(data), (int) Math.sqrt(EntropyCodec.uncompressedSize(data)), scrollView, zoom));
+                            postOut("Displayed compressed image at: " + sourcePath);
+                        } catch (LoaderException.MalformedTreeException e) {
+                            postException(e.getMessage());
+                        }
+                    } else if (sourceName.contains(".rit")) {
+                        List<Integer> content = FileLoader.secureLoadFileContents(sourcePath);
+                        if(!content.isEmpty()) {
+                            // Compressed images are displayed directly from their QuadTree
+                            int dimension = (int) Math.sqrt(content.remove(0));
+                            try {
+                                RITQTNode root = FileLoader.isSharedFormat(sourcePath) ? QuadTree.fromSharedContents(content) : QuadTree.fromCompressedContents(content);
+                                showViewer(new TiledViewer(root, dimension, scrollView, zoom));
+                                postOut("Displayed compressed image at: " + sourcePath);
+                            } catch (LoaderException.MalformedTreeException e) {
+                                postException(e.getMessage());
+                            }
+                        }
                     } else {
                         postOut("Display failed: Invalid source format");
                     }
                 } else if (activeMode == Mode.COMPRESS) {
-                    if (sourcePath.contains(".txt")) {
+                    if (sourceName.contains(".txt") || BinaryImage.isBinaryImage(sourceName)) {
                         activeContents = RITCompress.compress(sourcePath);
                         postOut("Compressed file at: " + sourcePath);
                         postOut("QuadTree: " + QuadTree.preorder(RITCompress.treeContents()));
@@ -395,7 +461,7 @@ public class Display {
                         postOut("Compress failed: Source file is not uncompressed");
                     }
                 } else if (activeMode == Mode.UNCOMPRESS) {
-                    if (sourcePath.contains(".rit")) {
+                    if (sourceName.contains(".rit")) {
                         activeContents = RITUncompress.uncompress(sourcePath);
                         postOut("Uncompressed file at: " + sourcePath);
                         postOut("QuadTree: " + QuadTree.preorder(RITUncompress.treeContents()));
@@ -439,6 +505,18 @@ public class Display {
         }
     }
 
+    /**
+     * Replaces the displayed image with the provided viewer. The previous viewer is disposed of.
+     */
+    private static void showViewer(TiledViewer viewer) {
+        if (activeViewer != null) {
+            activeViewer.dispose();
+        }
+
+        activeViewer = viewer;
+        scrollView.setContent(viewer);
+    }
+
     /**
      * Changes the current operational mode.
      */
@@ -466,17 +544,19 @@ public class Display {
 
         // Zoom opens dialogue that allows user to change zoom value
         zoomItem.setOnAction(actionEvent -> {
-            TextInputDialog dialog = new TextInputDialog("" + zoom);
-            dialog.setHeaderText("Input a new zoom value between 1 and 5.");
+            TextInputDialog dialog = new TextInputDialog("" + (activeViewer != null ? activeViewer.getZoom() : zoom));
+            dialog.setHeaderText("Input a new zoom value between " + TiledViewer.MIN_ZOOM + " and " + TiledViewer.MAX_ZOOM + ".");
             Optional<String> input = dialog.showAndWait();
             if (input.isPresent()) {
                 try {
-                    int value = Integer.parseInt(input.get());
-                    value = Math.max(1, value);
-                    value = Math.min(5, value);
-                    zoom = value;
+                    zoom = TiledViewer.clampZoom(Double.parseDouble(input.get()));
+
+                    // Apply the zoom to a displayed image immediately
+                    if (activeViewer != null) {
+                        activeViewer.setZoom(zoom);
+                    }
                 } catch (NumberFormatException n) {
-                    postOut("Failed to update zoom: Non-integral value provided");
+                    postOut("Failed to update zoom: Non-numeric value provided");
                 }
             }
         });
@@ -3,6 +3,7 @@ package gui;
 import javafx.application.Application;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import model.FileLoader;
 
 /**
  * The RITGUI class is an {@link Application} that facilitates the display, compression, and uncompression of certain
@@ -12,9 +13,6 @@ import javafx.stage.Stage;
  */
 public class RITGUI extends Application {
 
-    /** This is only true when the RITGUI Application has been launched. **/
-    public static boolean active = false;
-
     @Override
     public void start(Stage stage) throws Exception {
 
@@ -24,7 +22,9 @@ public class RITGUI extends Application {
         Scene mainScene = new Scene(Display.container());
         stage.setScene(mainScene);
         stage.setTitle("Compresora");
-        active = true;
+
+        // Exceptions caught while loading files are displayed rather than exiting once the application has launched
+        FileLoader.setListener(Display::postException);
         stage.show();
     }
 
@@ -1,10 +1,10 @@
 package gui;
 
 import javafx.application.Application;
-import javafx.scene.Group;
 import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ScrollPane;
 import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 import model.FileLoader;
@@ -23,7 +23,13 @@ public class RITViewer extends Application {
     public void start(Stage stage) throws Exception {
         List<Integer> lineValues = FileLoader.secureLoadFileContents(path);
 
-        stage.setScene(new Scene(new Group(fillCanvas(lineValues, 1))));
+        // Images are displayed in a tiled viewer so that large images are only drawn where visible
+        ScrollPane scrollPane = new ScrollPane();
+        int dimension = (int) Math.sqrt(lineValues.size());
+        scrollPane.setPrefSize(Math.min(dimension, MAX_WINDOW_SIZE) + 2, Math.min(dimension, MAX_WINDOW_SIZE) + 2);
+        scrollPane.setContent(new TiledViewer(lineValues, scrollPane, 1));
+
+        stage.setScene(new Scene(scrollPane));
         stage.show();
     }
 
@@ -55,13 +61,16 @@ public class RITViewer extends Application {
         return canvas;
     }
 
+    /** The largest initial side length of the window. Larger images can be scrolled. **/
+    private static final int MAX_WINDOW_SIZE = 1024;
+
     /** The file to be loaded as an image. **/
     private static String path;
 
     public static void main(String[] args) {
         if (args.length != 1) {
             // Handle missing or invalid argument(s)
-            System.out.println("Usage: java RITViewer <uncompressed.txt>\nSpecified file must be within src/images/uncompressed or some subdirectory of it.");
+            System.out.println("Usage: java RITViewer <uncompressed.txt|image.pgm|image.raw>\nSpecified file must be within src/images/uncompressed or some subdirectory of it.");
         } else {
             path = args[0];
             Application.launch(args);
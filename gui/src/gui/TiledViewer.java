@@ -0,0 +1,427 @@
+package gui;
+
+import javafx.beans.InvalidationListener;
+import javafx.geometry.Bounds;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Pane;
+import model.QuadTree;
+import model.RITQTNode;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The TiledViewer class is a virtualized image surface to be placed inside of a {@link ScrollPane}. Only the tiles that
+ * intersect the visible viewport are rendered, so the size of the displayed image is not limited by the maximum size of
+ * a single {@link Canvas} texture.
+ *
+ * <p>Tiles are rendered at a detail level chosen from the zoom value. A zoom value below 1 selects a shallower depth of
+ * the image, where each tile pixel represents the average color of a 2^level square of image pixels. Zoom values above
+ * 1 reuse the full detail tiles and scale them when drawn. Rendered tiles are kept in a least recently used cache.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class TiledViewer extends Pane {
+
+    /** The side length of a single tile in tile pixels. **/
+    private static final int TILE_SIZE = 256;
+
+    /** The maximum number of rendered tiles kept in the cache. **/
+    private static final int CACHE_CAPACITY = 192;
+
+    /** The lower and upper bounds of the zoom value. **/
+    public static final double MIN_ZOOM = 1.0D / 65536, MAX_ZOOM = 256;
+
+    /** The factor applied to the zoom value by a single scroll step while the control key is held. **/
+    private static final double SCROLL_ZOOM_FACTOR = 1.25D;
+
+    /** The source of the pixel colors displayed by this viewer. **/
+    private final TileSource source;
+
+    /** The scroll pane that this viewer is displayed in. **/
+    private final ScrollPane scrollPane;
+
+    /** The canvas that is moved to cover the visible viewport and redrawn whenever the viewport changes. **/
+    private final Canvas canvas = new Canvas();
+
+    /** Rendered tiles in access order. The eldest tile is discarded once the capacity is exceeded. **/
+    private final Map<Long, WritableImage> tileCache = new LinkedHashMap<>(CACHE_CAPACITY, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, WritableImage> eldest) {
+            return size() > CACHE_CAPACITY;
+        }
+    };
+
+    /** Reusable buffer for the colors of a tile being rendered. **/
+    private final int[] tileBuffer = new int[TILE_SIZE * TILE_SIZE];
+
+    /** The current zoom value. **/
+    private double zoom;
+
+    /** Listeners attached to the scroll pane, kept so that they can be removed in {@link TiledViewer#dispose()}. **/
+    private final InvalidationListener
+        viewportListener = observable -> updateSurface(),
+        scrollListener = observable -> redraw()
+    ;
+
+    /**
+     * Creates a viewer that displays a QuadTree data structure with the provided side length.
+     */
+    public TiledViewer(RITQTNode root, int dimension, ScrollPane scrollPane, double zoom) {
+        this(new TreeSource(root, dimension), scrollPane, zoom);
+    }
+
+    /**
+     * Creates a viewer that displays a list of pixel color values [0, 255] forming a square image.
+     */
+    public TiledViewer(List<Integer> lineValues, ScrollPane scrollPane, double zoom) {
+        this(new PixelSource(lineValues), scrollPane, zoom);
+    }
+
+    private TiledViewer(TileSource source, ScrollPane scrollPane, double zoom) {
+        this.source = source;
+        this.scrollPane = scrollPane;
+        this.zoom = clampZoom(zoom);
+
+        getChildren().add(canvas);
+        canvas.setManaged(false);
+
+        // Any change to the visible area requires a redraw of the canvas
+        scrollPane.viewportBoundsProperty().addListener(viewportListener);
+        scrollPane.hvalueProperty().addListener(scrollListener);
+        scrollPane.vvalueProperty().addListener(scrollListener);
+
+        // Holding control while scrolling zooms about the position of the cursor
+        addEventFilter(ScrollEvent.SCROLL, event -> {
+            if (event.isControlDown() && event.getDeltaY() != 0) {
+                setZoom(this.zoom * (event.getDeltaY() > 0 ? SCROLL_ZOOM_FACTOR : 1 / SCROLL_ZOOM_FACTOR), event.getX(), event.getY());
+                event.consume();
+            }
+        });
+
+        updateSurface();
+    }
+
+    /**
+     * Detaches this viewer from its scroll pane and discards all rendered tiles. This should be called when the viewer
+     * is replaced by other content.
+     */
+    public void dispose() {
+        scrollPane.viewportBoundsProperty().removeListener(viewportListener);
+        scrollPane.hvalueProperty().removeListener(scrollListener);
+        scrollPane.vvalueProperty().removeListener(scrollListener);
+        tileCache.clear();
+    }
+
+    /**
+     * Provides the side length of the displayed image in image pixels.
+     */
+    public int dimension() {
+        return source.dimension();
+    }
+
+    /**
+     * Provides the current zoom value.
+     */
+    public double getZoom() {
+        return zoom;
+    }
+
+    /**
+     * Changes the zoom value while keeping the center of the viewport in place.
+     */
+    public void setZoom(double zoom) {
+        Bounds viewport = scrollPane.getViewportBounds();
+        setZoom(zoom, offsetX() + viewport.getWidth() / 2, offsetY() + viewport.getHeight() / 2);
+    }
+
+    /**
+     * Changes the zoom value while keeping the image pixel under the provided surface coordinates in place.
+     */
+    private void setZoom(double zoom, double anchorX, double anchorY) {
+        zoom = clampZoom(zoom);
+        if (zoom == this.zoom) {
+            return;
+        }
+
+        double offsetX = offsetX(), offsetY = offsetY();
+
+        // Locate the anchor in image coordinates before the surface is resized
+        double imageX = (anchorX - originX()) / this.zoom, imageY = (anchorY - originY()) / this.zoom;
+
+        this.zoom = zoom;
+        updateSurface();
+
+        // Scroll so that the anchor remains at the same position in the viewport
+        scrollTo(imageX * zoom + originX() - (anchorX - offsetX), imageY * zoom + originY() - (anchorY - offsetY));
+    }
+
+    /**
+     * Scrolls the viewport to the provided surface coordinates.
+     */
+    private void scrollTo(double x, double y) {
+        Bounds viewport = scrollPane.getViewportBounds();
+        double rangeX = getPrefWidth() - viewport.getWidth(), rangeY = getPrefHeight() - viewport.getHeight();
+
+        scrollPane.setHvalue(rangeX <= 0 ? 0 : Math.max(0, Math.min(1, x / rangeX)));
+        scrollPane.setVvalue(rangeY <= 0 ? 0 : Math.max(0, Math.min(1, y / rangeY)));
+        redraw();
+    }
+
+    /**
+     * Resizes the surface to the zoomed size of the image, or the size of the viewport when the image is smaller.
+     */
+    private void updateSurface() {
+        Bounds viewport = scrollPane.getViewportBounds();
+        double size = source.dimension() * zoom;
+
+        setPrefSize(Math.max(size, viewport.getWidth()), Math.max(size, viewport.getHeight()));
+        setMinSize(getPrefWidth(), getPrefHeight());
+        setMaxSize(getPrefWidth(), getPrefHeight());
+        redraw();
+    }
+
+    /**
+     * Moves the canvas to the visible area of the surface and draws every tile that intersects it.
+     */
+    private void redraw() {
+        Bounds viewport = scrollPane.getViewportBounds();
+        double offsetX = offsetX(), offsetY = offsetY();
+
+        canvas.setWidth(viewport.getWidth());
+        canvas.setHeight(viewport.getHeight());
+        canvas.relocate(offsetX, offsetY);
+
+        GraphicsContext context = canvas.getGraphicsContext2D();
+        context.setImageSmoothing(false);
+        context.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+
+        // Choose the level at which each tile pixel covers at least one screen pixel when zoomed out
+        int level = detailLevel();
+        int levelDimension = levelDimension(level);
+        double scale = zoom * (1 << level);
+        double tileExtent = TILE_SIZE * scale;
+        int tileCount = (levelDimension + TILE_SIZE - 1) / TILE_SIZE;
+
+        // Visible area in the coordinates of the zoomed image
+        double left = offsetX - originX(), top = offsetY - originY();
+        int firstCol = Math.max(0, (int) Math.floor(left / tileExtent));
+        int firstRow = Math.max(0, (int) Math.floor(top / tileExtent));
+        int lastCol = Math.min(tileCount - 1, (int) Math.floor((left + viewport.getWidth()) / tileExtent));
+        int lastRow = Math.min(tileCount - 1, (int) Math.floor((top + viewport.getHeight()) / tileExtent));
+
+        for (int tileRow = firstRow; tileRow <= lastRow; ++ tileRow) {
+            for (int tileCol = firstCol; tileCol <= lastCol; ++ tileCol) {
+                WritableImage tile = tile(level, tileRow, tileCol);
+
+                context.drawImage(tile,
+                        tileCol * tileExtent - left, tileRow * tileExtent - top,
+                        tile.getWidth() * scale, tile.getHeight() * scale
+                );
+            }
+        }
+    }
+
+    /**
+     * Provides a rendered tile from the cache, rendering it first if it is not present.
+     */
+    private WritableImage tile(int level, int tileRow, int tileCol) {
+        long key = ((long) level << 56) | ((long) tileRow << 28) | tileCol;
+
+        WritableImage tile = tileCache.get(key);
+        if (tile == null) {
+            int levelDimension = levelDimension(level);
+            int width = Math.min(TILE_SIZE, levelDimension - tileCol * TILE_SIZE);
+            int height = Math.min(TILE_SIZE, levelDimension - tileRow * TILE_SIZE);
+
+            source.render(level, tileRow * TILE_SIZE, tileCol * TILE_SIZE, width, height, tileBuffer);
+
+            tile = new WritableImage(width, height);
+            tile.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), tileBuffer, 0, width);
+            tileCache.put(key, tile);
+        }
+
+        return tile;
+    }
+
+    /**
+     * Provides the horizontal scroll position of the viewport on the surface.
+     */
+    private double offsetX() {
+        return scrollPane.getHvalue() * Math.max(0, getPrefWidth() - scrollPane.getViewportBounds().getWidth());
+    }
+
+    /**
+     * Provides the vertical scroll position of the viewport on the surface.
+     */
+    private double offsetY() {
+        return scrollPane.getVvalue() * Math.max(0, getPrefHeight() - scrollPane.getViewportBounds().getHeight());
+    }
+
+    /**
+     * Provides the level of detail for the current zoom value. Level 0 is full detail, and each subsequent level halves
+     * the side length of the image.
+     */
+    private int detailLevel() {
+        int level = 0;
+        while (zoom * (1 << (level + 1)) <= 1 && (source.dimension() >> (level + 1)) > 0) {
+            level ++;
+        }
+        return level;
+    }
+
+    /**
+     * Provides the side length of the image at the provided level of detail.
+     */
+    private int levelDimension(int level) {
+        return Math.max(1, source.dimension() >> level);
+    }
+
+    /**
+     * Provides the horizontal position of the image on the surface. Images smaller than the viewport are centered.
+     */
+    private double originX() {
+        return Math.max(0, (getPrefWidth() - source.dimension() * zoom) / 2);
+    }
+
+    /**
+     * Provides the vertical position of the image on the surface. Images smaller than the viewport are centered.
+     */
+    private double originY() {
+        return Math.max(0, (getPrefHeight() - source.dimension() * zoom) / 2);
+    }
+
+    /**
+     * Restricts a zoom value to the range [{@link TiledViewer#MIN_ZOOM}, {@link TiledViewer#MAX_ZOOM}].
+     */
+    public static double clampZoom(double zoom) {
+        return Double.isNaN(zoom) ? 1 : Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom));
+    }
+
+    /**
+     * Converts a grayscale color value [0, 255] to an opaque ARGB color.
+     */
+    private static int argb(int gray) {
+        return 0xFF000000 | gray << 16 | gray << 8 | gray;
+    }
+
+    /**
+     * The TileSource interface provides the colors of a rectangular area of an image at a level of detail.
+     */
+    private interface TileSource {
+
+        /** The side length of the image in image pixels. **/
+        int dimension();
+
+        /**
+         * Fills the provided buffer with the ARGB colors of an area of the image. The row and column are positions in
+         * the image scaled down by 2^level, and each value represents the average of a 2^level square of pixels.
+         */
+        void render(int level, int row, int col, int width, int height, int[] buffer);
+    }
+
+    /**
+     * Renders tiles from a QuadTree data structure, visiting only the nodes that intersect the requested area.
+     */
+    private static class TreeSource implements TileSource {
+
+        private final RITQTNode root;
+
+        private final int dimension;
+
+        private TreeSource(RITQTNode root, int dimension) {
+            this.root = root;
+            this.dimension = dimension;
+        }
+
+        @Override
+        public int dimension() {
+            return dimension;
+        }
+
+        @Override
+        public void render(int level, int row, int col, int width, int height, int[] buffer) {
+            render(root, level, 0, 0, dimension, row << level, col << level, height << level, width << level, width, buffer);
+        }
+
+        /**
+         * Recursively renders the nodes that intersect the area starting at (areaRow, areaCol) in image coordinates.
+         */
+        private void render(RITQTNode node, int level, int row, int col, int size, int areaRow, int areaCol, int areaHeight, int areaWidth, int width, int[] buffer) {
+            if (areaRow + areaHeight <= row || row + size <= areaRow || areaCol + areaWidth <= col || col + size <= areaCol) {
+                // This node is not visible in the requested area
+                return;
+            }
+
+            if (0 <= node.getVal() || size <= (1 << level)) {
+                // Leaves and nodes at the resolution of a single tile pixel fill a block with one color
+                int color = argb(0 <= node.getVal() ? node.getVal() : (int) Math.round(QuadTree.average(node)));
+
+                int firstRow = (Math.max(row, areaRow) - areaRow) >> level, lastRow = (Math.min(row + size, areaRow + areaHeight) - areaRow - 1) >> level;
+                int firstCol = (Math.max(col, areaCol) - areaCol) >> level, lastCol = (Math.min(col + size, areaCol + areaWidth) - areaCol - 1) >> level;
+
+                for (int r = firstRow; r <= lastRow; ++ r) {
+                    for (int c = firstCol; c <= lastCol; ++ c) {
+                        buffer[r * width + c] = color;
+                    }
+                }
+            } else {
+                int subDim = size / 2;
+
+                render(node.getUpperLeft(),  level, row,          col,          subDim, areaRow, areaCol, areaHeight, areaWidth, width, buffer);
+                render(node.getUpperRight(), level, row,          col + subDim, subDim, areaRow, areaCol, areaHeight, areaWidth, width, buffer);
+                render(node.getLowerLeft(),  level, row + subDim, col,          subDim, areaRow, areaCol, areaHeight, areaWidth, width, buffer);
+                render(node.getLowerRight(), level, row + subDim, col + subDim, subDim, areaRow, areaCol, areaHeight, areaWidth, width, buffer);
+            }
+        }
+    }
+
+    /**
+     * Renders tiles from a list of pixel color values in row-major order.
+     */
+    private static class PixelSource implements TileSource {
+
+        private final List<Integer> lineValues;
+
+        private final int dimension;
+
+        private PixelSource(List<Integer> lineValues) {
+            this.lineValues = lineValues;
+            this.dimension = (int) Math.sqrt(lineValues.size());
+        }
+
+        @Override
+        public int dimension() {
+            return dimension;
+        }
+
+        @Override
+        public void render(int level, int row, int col, int width, int height, int[] buffer) {
+            int block = 1 << level;
+
+            for (int r = 0; r < height; ++ r) {
+                for (int c = 0; c < width; ++ c) {
+
+                    // Average the block of image pixels represented by this tile pixel
+                    int imageRow = (row + r) << level, imageCol = (col + c) << level;
+                    long sum = 0;
+                    int count = 0;
+                    for (int br = imageRow; br < Math.min(dimension, imageRow + block); ++ br) {
+                        for (int bc = imageCol; bc < Math.min(dimension, imageCol + block); ++ bc) {
+                            sum += lineValues.get(br * dimension + bc);
+                            count ++;
+                        }
+                    }
+
+                    buffer[r * width + c] = argb((int) Math.round((double) sum / Math.max(1, count)));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * The RIT.gui module holds the graphical application, which is built on JavaFX and the RIT module.
+ */
+module RIT.gui {
+    requires transitive javafx.controls;
+    requires transitive RIT;
+    exports gui;
+}
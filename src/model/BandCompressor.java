@@ -0,0 +1,321 @@
+package model;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * The BandCompressor class compresses uncompressed image files that are too large to be loaded into memory.
+ *
+ * <p>The source is read twice as a stream. The first pass counts its values to find the image dimension. The second
+ * pass reads the image in horizontal bands whose height is the tile size, and builds a QuadTree for each aligned square
+ * tile of a band as soon as the band has been read. The color of each tile, or the fact that it is split, is merged
+ * upward into the levels of the tree above the tiles, where four tiles of the same color become a single leaf.</p>
+ *
+ * <p>The compressed file is written in preorder as the tree is built. Whenever the next node in preorder is known, it is
+ * written immediately. Split tiles that are completed before their turn in preorder, such as the right half of the
+ * image while the left half is still being read, are written to a temporary spill file beside the destination and copied
+ * into place once every node before them has been written. Peak memory is therefore one band of pixels, the trees of
+ * one band of tiles, and a few integers per tile, regardless of the size of the image.</p>
+ *
+ * <p>The compressed file is written to a partial file beside the destination, which replaces the destination only
+ * once every band has been read and validated, so a source that is invalid or ends early leaves any earlier
+ * destination in place. The compressed file is identical to the file written by {@link ptui.RITCompress} for the same
+ * image.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class BandCompressor {
+
+    /** The default side length of the tiles, and height of the bands, in which images are read. **/
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    /** The status of a node that has not yet been read. Other statuses are a color or the split value -1. **/
+    private static final int UNKNOWN = -2;
+
+    /** The size of the buffer used to copy spilled tiles. **/
+    private static final int COPY_BUFFER_SIZE = 1 << 16;
+
+    /** The side length of the image and of its tiles, and the number of tiles along each side. **/
+    private final int dimension, tileSize, tiles;
+
+    /** The status of each node at each level above the pixels, where level 0 holds the tiles. **/
+    private final int[][] status;
+
+    /** The trees of the split tiles of the current band that have not yet been written, by column. **/
+    private final RITQTNode[] bandTrees;
+
+    /** The position and length of each split tile that has been written to the spill file. **/
+    private final long[] spillOffsets;
+
+    private final int[] spillLengths;
+
+    private final RandomAccessFile spill;
+
+    private final Writer writer;
+
+    /** The nodes that remain to be written in preorder, as { level, row, column } from the top of the stack. **/
+    private final Deque<int[]> pending = new ArrayDeque<>();
+
+    /** The number of values written to the compressed file, including its size header. **/
+    private long written;
+
+    private BandCompressor(int dimension, int tileSize, RandomAccessFile spill, Writer writer) {
+        this.dimension = dimension;
+        this.tileSize = tileSize;
+        this.tiles = dimension / tileSize;
+        this.spill = spill;
+        this.writer = writer;
+
+        int levels = Integer.numberOfTrailingZeros(tiles) + 1;
+        this.status = new int[levels][];
+        for (int level = 0; level < levels; ++ level) {
+            int side = tiles >> level;
+            status[level] = new int[side * side];
+            Arrays.fill(status[level], UNKNOWN);
+        }
+
+        this.bandTrees = new RITQTNode[tiles];
+        this.spillOffsets = new long[tiles * tiles];
+        this.spillLengths = new int[tiles * tiles];
+
+        pending.push(new int[] { levels - 1, 0, 0 });
+    }
+
+    /**
+     * Compresses the uncompressed image file at the source path into a compressed file at the destination path, reading
+     * the source in bands of the provided tile size.
+     *
+     * @param tileSize The height of the bands and side length of the tiles, which must be a power of two. Images smaller
+     *                 than a tile are read as a single band.
+     * @return The number of values written to the compressed file, including its size header
+     * @throws LoaderException.UnreadablePathException Thrown when the source cannot be read or the destination is a directory
+     * @throws LoaderException.FileDimensionException Thrown when the number of values in the source is not a perfect square
+     * @throws LoaderException.IntegralColorException Thrown when a color value is not in the range [0, 255]
+     * @throws LoaderException.MalformedTreeException Thrown when the source contains a non-integral value or its
+     * dimension is not a power of two
+     */
+    public static long compress(String source, String destination, int tileSize) throws IOException, LoaderException {
+        if (tileSize <= 0 || (tileSize & (tileSize - 1)) != 0) {
+            throw new IllegalArgumentException("Tile size " + tileSize + " is not a power of two");
+        }
+
+        File sourceFile = new File(source), destinationFile = new File(destination);
+        if (!sourceFile.exists() || sourceFile.isDirectory()) {
+            throw new LoaderException.UnreadablePathException(source);
+        }
+        if (destinationFile.isDirectory()) {
+            throw new LoaderException.UnreadablePathException("Invalid path " + destinationFile.getPath() + " is a directory not a file");
+        }
+
+        // The first pass only counts values
+        long size = 0;
+        try (InputStream stream = new FileInputStream(sourceFile)) {
+            Tokenizer tokenizer = new Tokenizer(stream);
+            while (tokenizer.next()) {
+                size ++;
+            }
+        }
+
+        int dimension = (int) Math.sqrt(size);
+        if (size == 0 || (long) dimension * dimension != size) {
+            throw new LoaderException.FileDimensionException(Math.sqrt(size));
+        }
+        if ((dimension & (dimension - 1)) != 0) {
+            throw new LoaderException.MalformedTreeException("Image dimension " + dimension + " is not a power of two");
+        }
+        tileSize = Math.min(tileSize, dimension);
+
+        // Spilled tiles are kept beside the destination, where there is room for the compressed file itself
+        File parent = destinationFile.getAbsoluteFile().getParentFile();
+        File spillFile = Files.createTempFile(parent.toPath(), destinationFile.getName(), ".spill").toFile();
+        File partialFile = new File(FileLoader.partialPath(destination));
+
+        try {
+            long written;
+            try (InputStream stream = new FileInputStream(sourceFile);
+                 RandomAccessFile spill = new RandomAccessFile(spillFile, "rw");
+                 Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(partialFile), StandardCharsets.US_ASCII), COPY_BUFFER_SIZE)) {
+
+                BandCompressor compressor = new BandCompressor(dimension, tileSize, spill, writer);
+                compressor.write(Long.toString(size));
+                compressor.readBands(new Tokenizer(stream));
+                written = compressor.written;
+            }
+
+            // The destination is only replaced once the whole image has been read
+            FileLoader.moveIntoPlace(partialFile.getPath(), destination);
+            return written;
+        } finally {
+            Files.deleteIfExists(spillFile.toPath());
+            Files.deleteIfExists(partialFile.toPath());
+        }
+    }
+
+    /**
+     * Reads every band of the image, writing all nodes that become known after each band.
+     */
+    private void readBands(Tokenizer tokenizer) throws IOException, LoaderException {
+        int[] band = new int[tileSize * dimension];
+
+        for (int bandRow = 0; bandRow < tiles; ++ bandRow) {
+            for (int i = 0; i < band.length; ++ i) {
+                if (!tokenizer.next()) {
+                    throw new LoaderException.MalformedTreeException("Source ended while reading band " + bandRow);
+                }
+                if (tokenizer.value < 0 || 255 < tokenizer.value) {
+                    throw new LoaderException.IntegralColorException(tokenizer.value);
+                }
+                band[i] = (int) tokenizer.value;
+            }
+
+            // Build the tree of each tile in the band and merge its status upward
+            for (int col = 0; col < tiles; ++ col) {
+                RITQTNode tree = QuadTree.fromPixels(band, dimension, 0, col * tileSize, tileSize);
+                bandTrees[col] = tree.getVal() < 0 ? tree : null;
+                status[0][bandRow * tiles + col] = tree.getVal();
+                resolve(1, bandRow >> 1, col >> 1);
+            }
+
+            writeKnown(bandRow);
+
+            // Split tiles that could not yet be written are spilled, so that the band can be released
+            for (int col = 0; col < tiles; ++ col) {
+                if (bandTrees[col] != null) {
+                    StringBuilder builder = new StringBuilder();
+                    QuadTree.preorder(bandTrees[col], builder, System.lineSeparator());
+                    byte[] bytes = builder.toString().getBytes(StandardCharsets.US_ASCII);
+
+                    int index = bandRow * tiles + col;
+                    spillOffsets[index] = spill.length();
+                    spillLengths[index] = bytes.length;
+                    spill.seek(spill.length());
+                    spill.write(bytes);
+                    bandTrees[col] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the status of a node above the tiles from the statuses of its quadrants, continuing upward while statuses
+     * change. A node is split as soon as any quadrant is split or two quadrants differ in color, and is a leaf once all
+     * four quadrants are leaves of the same color.
+     */
+    private void resolve(int level, int row, int col) {
+        while (level < status.length && status[level][row * (tiles >> level) + col] == UNKNOWN) {
+            int childSide = tiles >> (level - 1);
+            int[] children = status[level - 1];
+            int top = 2 * row * childSide + 2 * col, bottom = top + childSide;
+            int[] quadrants = { children[top], children[top + 1], children[bottom], children[bottom + 1] };
+
+            // The color shared by the known quadrants, until a quadrant proves the node to be split
+            int color = UNKNOWN, resolved = UNKNOWN;
+            boolean complete = true;
+            for (int quadrant : quadrants) {
+                if (quadrant == -1 || (0 <= quadrant && 0 <= color && quadrant != color)) {
+                    resolved = -1;
+                    break;
+                } else if (quadrant == UNKNOWN) {
+                    complete = false;
+                } else {
+                    color = quadrant;
+                }
+            }
+            if (resolved == UNKNOWN && complete) {
+                resolved = color;
+            }
+
+            if (resolved == UNKNOWN) {
+                return;
+            }
+            status[level][row * (tiles >> level) + col] = resolved;
+
+            level ++;
+            row >>= 1;
+            col >>= 1;
+        }
+    }
+
+    /**
+     * Writes nodes in preorder until the next node is not yet known.
+     *
+     * @param bandRow The row of tiles whose trees are held in memory
+     */
+    private void writeKnown(int bandRow) throws IOException {
+        while (!pending.isEmpty()) {
+            int[] node = pending.peek();
+            int level = node[0], row = node[1], col = node[2];
+            int value = status[level][row * (tiles >> level) + col];
+
+            if (value == UNKNOWN) {
+                return;
+            }
+            pending.pop();
+
+            if (0 <= value) {
+                write(Integer.toString(value));
+            } else if (level == 0) {
+                if (row == bandRow) {
+                    // The tile was completed by the current band and is written directly
+                    QuadTree.preorder(bandTrees[col], writer, System.lineSeparator());
+                    written += nodeCount(bandTrees[col]);
+                    bandTrees[col] = null;
+                } else {
+                    copySpilled(row * tiles + col);
+                }
+            } else {
+                write("-1");
+
+                // Quadrants are pushed in reverse so that the upper left quadrant is written first
+                pending.push(new int[] { level - 1, 2 * row + 1, 2 * col + 1 });
+                pending.push(new int[] { level - 1, 2 * row + 1, 2 * col });
+                pending.push(new int[] { level - 1, 2 * row, 2 * col + 1 });
+                pending.push(new int[] { level - 1, 2 * row, 2 * col });
+            }
+        }
+    }
+
+    /**
+     * Copies the preorder of a spilled tile into the compressed file.
+     */
+    private void copySpilled(int index) throws IOException {
+        byte[] buffer = new byte[Math.min(COPY_BUFFER_SIZE, spillLengths[index])];
+        spill.seek(spillOffsets[index]);
+
+        for (int remaining = spillLengths[index]; 0 < remaining; ) {
+            int read = spill.read(buffer, 0, Math.min(buffer.length, remaining));
+            for (int i = 0; i < read; ++ i) {
+                writer.write(buffer[i]);
+                if (buffer[i] == '\n') {
+                    written ++;
+                }
+            }
+            remaining -= read;
+        }
+    }
+
+    private static long nodeCount(RITQTNode root) {
+        if (0 <= root.getVal()) {
+            return 1;
+        }
+        return 1 + nodeCount(root.getUpperLeft()) + nodeCount(root.getUpperRight()) + nodeCount(root.getLowerLeft()) + nodeCount(root.getLowerRight());
+    }
+
+    private void write(String value) throws IOException {
+        writer.write(value);
+        writer.write(System.lineSeparator());
+        written ++;
+    }
+}
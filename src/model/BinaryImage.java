@@ -0,0 +1,208 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The BinaryImage class reads and writes uncompressed images as one byte per pixel rather than one line of text per
+ * pixel, in either of two formats:
+ * <ul>
+ *     <li>Binary PGM (.pgm): the header P5, the width, the height, and the maximum color separated by whitespace, with
+ *     comments beginning with # allowed between them, followed by one byte per pixel in row-major order</li>
+ *     <li>Raw (.raw): one byte per pixel in row-major order with no header, so the image must be square</li>
+ * </ul>
+ *
+ * <p>Pixels are read and written in bulk through a {@link ByteBuffer}. Images whose width and height are not an equal
+ * power of two are padded with black on the right and bottom to the smallest power of two square that holds them, so
+ * that they can be represented by a QuadTree. PGM images whose maximum color is below 255 are rescaled to the range
+ * [0, 255]. Images are always written as squares with a maximum color of 255.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class BinaryImage {
+
+    /** The file extensions of binary PGM and raw images. **/
+    private static final String PGM_EXTENSION = ".pgm", RAW_EXTENSION = ".raw";
+
+    /** The magic number of binary PGM images. **/
+    private static final String PGM_MAGIC = "P5";
+
+    /** The largest maximum color of an image with one byte per pixel. **/
+    private static final int MAX_COLOR = 255;
+
+    /**
+     * Returns true when the path represents a binary PGM or raw image.
+     */
+    public static boolean isBinaryImage(String path) {
+        return path.endsWith(PGM_EXTENSION) || path.endsWith(RAW_EXTENSION);
+    }
+
+    /**
+     * Reads the pixels of the binary image at the provided path, padded to a power of two square.
+     *
+     * @throws LoaderException.UnreadablePathException Thrown when the path does not name a readable file
+     * @throws LoaderException.MalformedImageException Thrown when the header is invalid or the file holds too few pixels
+     */
+    public static int[] read(String path) throws IOException, LoaderException.UnreadablePathException, LoaderException.MalformedImageException {
+        Path file = Paths.get(path);
+        if (!file.toFile().isFile()) {
+            throw new LoaderException.UnreadablePathException(path);
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (Integer.MAX_VALUE < channel.size()) {
+                throw new LoaderException.MalformedImageException(path, "file exceeds " + Integer.MAX_VALUE + " bytes");
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // Read until the buffer is full
+            }
+            buffer.flip();
+
+            return decode(buffer, path);
+        }
+    }
+
+    /**
+     * Decodes the pixels of a binary image whose contents have already been read, padded to a power of two square. The
+     * path is used only to identify the format and the file in messages.
+     *
+     * @throws LoaderException.MalformedImageException Thrown when the header is invalid, the contents hold too few
+     * pixels, or a pixel exceeds the maximum color
+     */
+    public static int[] decode(ByteBuffer contents, String path) throws LoaderException.MalformedImageException {
+        int width, height, maxColor = MAX_COLOR;
+
+        if (path.endsWith(PGM_EXTENSION)) {
+            if (!PGM_MAGIC.equals(token(contents, path))) {
+                throw new LoaderException.MalformedImageException(path, "not a binary PGM (P5) image");
+            }
+
+            width = number(contents, path, "width");
+            height = number(contents, path, "height");
+            maxColor = number(contents, path, "maximum color");
+            if (maxColor < 1 || MAX_COLOR < maxColor) {
+                throw new LoaderException.MalformedImageException(path, "maximum color " + maxColor + " is not one byte per pixel");
+            }
+
+            // Exactly one whitespace character separates the header from the pixels
+            if (!contents.hasRemaining() || !Character.isWhitespace(contents.get())) {
+                throw new LoaderException.MalformedImageException(path, "missing whitespace after header");
+            }
+        } else {
+            int dimension = (int) Math.sqrt(contents.remaining());
+            if (dimension * dimension != contents.remaining()) {
+                throw new LoaderException.MalformedImageException(path, "raw image of " + contents.remaining() + " bytes is not square");
+            }
+            width = dimension;
+            height = dimension;
+        }
+
+        if (width < 1 || height < 1 || contents.remaining() < (long) width * height) {
+            throw new LoaderException.MalformedImageException(path, "expected " + (long) width * height + " pixels but found " + contents.remaining());
+        }
+
+        int dimension = Integer.highestOneBit(Math.max(width, height));
+        dimension = dimension < Math.max(width, height) ? dimension * 2 : dimension;
+        if (dimension <= 0 || Integer.MAX_VALUE / dimension < dimension) {
+            // Doubling a width or height above 2^30 overflows
+            throw new LoaderException.MalformedImageException(path, "padded dimension of " + width + "x" + height + " is too large");
+        }
+
+        // Pixels outside of the original width and height remain black
+        int[] pixels = new int[dimension * dimension];
+        byte[] row = new byte[width];
+        for (int r = 0; r < height; ++ r) {
+            contents.get(row);
+            for (int c = 0; c < width; ++ c) {
+                pixels[r * dimension + c] = scale(row[c] & 0xFF, maxColor, path);
+            }
+        }
+
+        return pixels;
+    }
+
+    /**
+     * Rescales a sample of a PGM image with the provided maximum color to the range [0, 255].
+     *
+     * @throws LoaderException.MalformedImageException Thrown when the sample exceeds the maximum color
+     */
+    static int scale(int sample, int maxColor, String path) throws LoaderException.MalformedImageException {
+        if (maxColor < sample) {
+            throw new LoaderException.MalformedImageException(path, "sample " + sample + " exceeds maximum color " + maxColor);
+        }
+        return maxColor == MAX_COLOR ? sample : (sample * MAX_COLOR + maxColor / 2) / maxColor;
+    }
+
+    /**
+     * Writes a square of row-major pixels to a binary image at the provided path, in the format of its extension.
+     *
+     * @throws LoaderException.IntegralColorException Thrown when a pixel is not within the range [0, 255]
+     */
+    public static void write(int[] pixels, int dimension, String path) throws IOException, LoaderException.IntegralColorException {
+        byte[] header = path.endsWith(PGM_EXTENSION)
+                ? (PGM_MAGIC + "\n" + dimension + " " + dimension + "\n" + MAX_COLOR + "\n").getBytes(StandardCharsets.US_ASCII)
+                : new byte[0];
+
+        ByteBuffer buffer = ByteBuffer.allocate(header.length + pixels.length);
+        buffer.put(header);
+        for (int pixel : pixels) {
+            if (pixel < 0 || MAX_COLOR < pixel) {
+                throw new LoaderException.IntegralColorException(pixel);
+            }
+            buffer.put((byte) pixel);
+        }
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Reads the next whitespace-separated token of a PGM header, skipping comments.
+     */
+    private static String token(ByteBuffer contents, String path) throws LoaderException.MalformedImageException {
+        StringBuilder token = new StringBuilder();
+
+        while (contents.hasRemaining()) {
+            char c = (char) (contents.get() & 0xFF);
+            if (c == '#' && token.length() == 0) {
+                // Comments run to the end of the line
+                while (contents.hasRemaining() && contents.get() != '\n') {
+                    // Skip the comment
+                }
+            } else if (Character.isWhitespace(c)) {
+                if (token.length() > 0) {
+                    // Leave the whitespace that ends the token to be read as the separator after the header
+                    contents.position(contents.position() - 1);
+                    return token.toString();
+                }
+            } else {
+                token.append(c);
+            }
+        }
+
+        throw new LoaderException.MalformedImageException(path, "header ends early");
+    }
+
+    /**
+     * Reads the next positive number of a PGM header.
+     */
+    private static int number(ByteBuffer contents, String path, String name) throws LoaderException.MalformedImageException {
+        String token = token(contents, path);
+        try {
+            return Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            throw new LoaderException.MalformedImageException(path, "non-integral " + name + ": " + token);
+        }
+    }
+}
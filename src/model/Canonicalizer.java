@@ -0,0 +1,104 @@
+package model;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Canonicalizer class merges equal sibling leaves of QuadTree data structures that were not fully compressed, such
+ * as trees read from compressed image files written by other tools.
+ *
+ * <p>Merging is performed bottom-up in a single traversal using
+ * {@link QuadTree#join(RITQTNode, RITQTNode, RITQTNode, RITQTNode)}, so merges cascade toward the root. Each instance
+ * counts the nodes removed by every tree it has processed.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class Canonicalizer {
+
+    /** The number of nodes removed by this canonicalizer. **/
+    private long removed;
+
+    /**
+     * Provides a canonical copy of a tree, in which no split node has four leaves of the same color. Subtrees that are
+     * already canonical are reused, and a subtree shared by several parents, as in trees read from the shared format,
+     * is canonicalized once and remains shared.
+     */
+    public RITQTNode canonicalize(RITQTNode root) {
+        return canonicalize(root, new IdentityHashMap<>());
+    }
+
+    /**
+     * Recursively canonicalizes a subtree, recording the canonical copy of every split node that has been visited.
+     */
+    private RITQTNode canonicalize(RITQTNode root, Map<RITQTNode, RITQTNode> visited) {
+        if (0 <= root.getVal()) {
+            return root;
+        }
+        RITQTNode canonical = visited.get(root);
+        if (canonical == null) {
+            canonical = canonicalizeSplit(root, visited);
+            visited.put(root, canonical);
+        }
+        return canonical;
+    }
+
+    private RITQTNode canonicalizeSplit(RITQTNode root, Map<RITQTNode, RITQTNode> visited) {
+        RITQTNode ul = canonicalize(root.getUpperLeft(), visited), ur = canonicalize(root.getUpperRight(), visited),
+                ll = canonicalize(root.getLowerLeft(), visited), lr = canonicalize(root.getLowerRight(), visited);
+
+        boolean mergeable = 0 <= ul.getVal() && ul.getVal() == ur.getVal() && ul.getVal() == ll.getVal() && ul.getVal() == lr.getVal();
+        if (!mergeable && ul == root.getUpperLeft() && ur == root.getUpperRight() && ll == root.getLowerLeft() && lr == root.getLowerRight()) {
+            // This node is already canonical and can be reused
+            return root;
+        }
+
+        return count(QuadTree.join(ul, ur, ll, lr));
+    }
+
+    /**
+     * Parses the preorder contents of a compressed image file into a canonical tree, merging equal sibling leaves as
+     * they are read. The list must not include the uncompressed size that begins a compressed file. The parsed values
+     * are removed from the list.
+     */
+    public RITQTNode fromCompressedContents(List<Integer> preorder) {
+        int[] cursor = { 0 };
+        RITQTNode root = fromCompressedContents(preorder, cursor);
+
+        // Values are removed all at once, as in QuadTree#fromCompressedContents(List)
+        preorder.subList(0, cursor[0]).clear();
+
+        return root;
+    }
+
+    /**
+     * Recursively parses the preorder subtree beginning at the cursor position, advancing the cursor past it.
+     */
+    private RITQTNode fromCompressedContents(List<Integer> preorder, int[] cursor) {
+        int val = preorder.get(cursor[0] ++);
+
+        if (0 <= val) {
+            return new RITQTNode(val);
+        } else {
+            RITQTNode ul = fromCompressedContents(preorder, cursor), ur = fromCompressedContents(preorder, cursor),
+                    ll = fromCompressedContents(preorder, cursor), lr = fromCompressedContents(preorder, cursor);
+
+            return count(QuadTree.join(ul, ur, ll, lr));
+        }
+    }
+
+    /**
+     * Counts the nodes removed when a split node and its four leaves were merged into the provided node.
+     */
+    private RITQTNode count(RITQTNode joined) {
+        if (0 <= joined.getVal()) {
+            removed += 4;
+        }
+        return joined;
+    }
+
+    /** Access removed. **/
+    public long removed() {
+        return removed;
+    }
+}
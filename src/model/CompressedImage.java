@@ -0,0 +1,260 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The CompressedImage class pairs the root of a QuadTree data structure with the side length of the image it represents,
+ * and reads and writes images held in memory in every file format.
+ *
+ * <p>Unlike {@link FileLoader}, which reports errors and exits, every method of this class reports invalid contents by
+ * throwing a {@link LoaderException}, so that images received from other programs can be rejected without ending the
+ * program. Compressed contents are checked completely as they are parsed: colors must be in the range [0, 255], no split
+ * may occur in a region of a single pixel, shared references must refer to subtrees that have already begun and that
+ * fit in the region they are placed in, and no values may follow the tree.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class CompressedImage {
+
+    /** The root of the QuadTree data structure. **/
+    private final RITQTNode root;
+
+    /** The side length of the image. **/
+    private final int dimension;
+
+    public CompressedImage(RITQTNode root, int dimension) {
+        this.root = root;
+        this.dimension = dimension;
+    }
+
+    /**
+     * Compresses the contents of an uncompressed image file, one color value per line in row-major order.
+     *
+     * @throws LoaderException.FileDimensionException Thrown when the number of values is not a perfect square
+     * @throws LoaderException.IntegralColorException Thrown when a color value is not in the range [0, 255]
+     * @throws LoaderException.MalformedTreeException Thrown when a value is not integral or the side length is not a
+     * power of two
+     */
+    public static CompressedImage fromUncompressed(InputStream stream) throws IOException, LoaderException {
+        int[] pixels = readValues(stream);
+        int size = pixels.length, dimension = (int) Math.sqrt(size);
+
+        if (size == 0 || dimension * dimension != size) {
+            throw new LoaderException.FileDimensionException(Math.sqrt(size));
+        }
+        if ((dimension & (dimension - 1)) != 0) {
+            throw new LoaderException.MalformedTreeException("Image dimension " + dimension + " is not a power of two");
+        }
+        for (int value : pixels) {
+            if (value < 0 || 255 < value) {
+                throw new LoaderException.IntegralColorException(value);
+            }
+        }
+
+        return new CompressedImage(QuadTree.fromPixels(pixels, dimension, 0, 0, dimension), dimension);
+    }
+
+    /**
+     * Parses the contents of a compressed image file in any compressed format. Entropy coded contents are recognized by
+     * their header, and text contents may be in either the plain or the shared format.
+     *
+     * @throws LoaderException.FileDimensionException Thrown when the size header is not a perfect square
+     * @throws LoaderException.IntegralColorException Thrown when a leaf value is not within the range [0, 255]
+     * @throws LoaderException.MalformedTreeException Thrown when the contents do not describe a valid QuadTree
+     */
+    public static CompressedImage fromCompressed(byte[] data) throws IOException, LoaderException {
+        return fromCompressed(data, Long.MAX_VALUE);
+    }
+
+    /**
+     * Parses the contents of a compressed image file in any compressed format into a tree of at most the provided number
+     * of nodes, so that small contents received from other programs cannot describe a tree too large to be held in
+     * memory. Text contents are refused before any node is built when they hold more values than the limit.
+     *
+     * @throws LoaderException.MalformedTreeException Thrown when the contents do not describe a valid QuadTree or
+     * describe more nodes than the limit
+     * @see CompressedImage#fromCompressed(byte[])
+     */
+    public static CompressedImage fromCompressed(byte[] data, long maxNodes) throws IOException, LoaderException {
+        if (EntropyCodec.isEncoded(data)) {
+            int dimension = (int) Math.sqrt(EntropyCodec.uncompressedSize(data));
+            return new CompressedImage(EntropyCodec.decode(data, maxNodes), dimension);
+        }
+        return fromCompressed(new ByteArrayInputStream(data), maxNodes);
+    }
+
+    /**
+     * Parses the contents of a compressed image file in the plain or shared text format.
+     *
+     * @see CompressedImage#fromCompressed(byte[])
+     */
+    public static CompressedImage fromCompressed(InputStream stream) throws IOException, LoaderException {
+        return fromCompressed(stream, Long.MAX_VALUE);
+    }
+
+    private static CompressedImage fromCompressed(InputStream stream, long maxNodes) throws IOException, LoaderException {
+        int[] values = readValues(stream);
+        if (values.length == 0) {
+            throw new LoaderException.MalformedTreeException("Empty file: missing size header");
+        }
+        if (maxNodes < values.length - 1) {
+            // Every value after the size header is at most one node
+            throw new LoaderException.MalformedTreeException("Contents hold " + (values.length - 1) + " values, more than the limit of " + maxNodes + " nodes");
+        }
+
+        int size = values[0], dimension = (int) Math.sqrt(size);
+        if (size <= 0 || dimension * dimension != size) {
+            throw new LoaderException.FileDimensionException(Math.sqrt(size));
+        }
+        if ((dimension & (dimension - 1)) != 0) {
+            throw new LoaderException.MalformedTreeException("Image dimension " + dimension + " is not a power of two");
+        }
+
+        int[] cursor = { 1 };
+        RITQTNode root = parse(values, cursor, 0, Integer.numberOfTrailingZeros(dimension), new ArrayList<>(), new ArrayList<>(), new int[1]);
+        if (cursor[0] != values.length) {
+            throw new LoaderException.MalformedTreeException("Trailing value " + values[cursor[0]] + " after complete tree at line " + (cursor[0] + 1));
+        }
+
+        return new CompressedImage(root, dimension);
+    }
+
+    /**
+     * Recursively parses the preorder subtree beginning at the cursor, which covers a region at the provided depth.
+     * Split nodes are recorded in the order in which they begin alongside their heights, so that shared references can
+     * be resolved and checked. The height of the parsed subtree is stored in the height array.
+     */
+    private static RITQTNode parse(int[] values, int[] cursor, int depth, int maxDepth, List<RITQTNode> defined, List<Integer> heights, int[] height) throws LoaderException {
+        if (values.length <= cursor[0]) {
+            throw new LoaderException.MalformedTreeException("Incomplete tree: contents end after " + (cursor[0] - 1) + " nodes");
+        }
+
+        int line = cursor[0] + 1, val = values[cursor[0] ++];
+        if (0 <= val) {
+            if (255 < val) {
+                throw new LoaderException.IntegralColorException(val);
+            }
+            height[0] = 0;
+            return new RITQTNode(val);
+        } else if (val == -1) {
+            if (depth == maxDepth) {
+                throw new LoaderException.MalformedTreeException("Split of a single pixel at line " + line);
+            }
+
+            // Reserve the identifier of this subtree before its quadrants are parsed
+            int id = defined.size();
+            defined.add(null);
+            heights.add(null);
+
+            RITQTNode[] quadrants = new RITQTNode[4];
+            int tallest = 0;
+            for (int q = 0; q < 4; ++ q) {
+                quadrants[q] = parse(values, cursor, depth + 1, maxDepth, defined, heights, height);
+                tallest = Math.max(tallest, height[0]);
+            }
+
+            RITQTNode node = new RITQTNode(val, quadrants[0], quadrants[1], quadrants[2], quadrants[3]);
+            defined.set(id, node);
+            heights.set(id, tallest + 1);
+            height[0] = tallest + 1;
+
+            return node;
+        } else {
+            int id = -2 - val;
+            if (defined.size() <= id || defined.get(id) == null) {
+                throw new LoaderException.MalformedTreeException("Reference to undefined subtree " + id + " at line " + line);
+            }
+            if (maxDepth < depth + heights.get(id)) {
+                throw new LoaderException.MalformedTreeException("Reference to subtree " + id + " that does not fit its region at line " + line);
+            }
+            height[0] = heights.get(id);
+            return defined.get(id);
+        }
+    }
+
+    /**
+     * Reads one integral value per line from a stream.
+     */
+    private static int[] readValues(InputStream stream) throws IOException, LoaderException {
+        Tokenizer tokenizer = new Tokenizer(stream);
+        int[] values = new int[1024];
+        int count = 0;
+
+        while (tokenizer.next()) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count ++] = (int) tokenizer.value;
+        }
+
+        return Arrays.copyOf(values, count);
+    }
+
+    /**
+     * Writes this image in the compressed format chosen by the extension of the provided path, as
+     * {@link FileLoader#secureWriteTree(int, RITQTNode, String)} and {@link EntropyCodec#encode(RITQTNode, int)} would.
+     */
+    public byte[] encode(String path) {
+        if (FileLoader.isEntropyFormat(path)) {
+            return EntropyCodec.encode(root, uncompressedSize());
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(uncompressedSize()).append(System.lineSeparator());
+        try {
+            if (FileLoader.isSharedFormat(path)) {
+                // Identical subtrees are only written once when they are the same instance
+                QuadTree.sharedPreorder(new NodeCache().intern(root), builder, System.lineSeparator());
+            } else {
+                QuadTree.preorder(root, builder, System.lineSeparator());
+            }
+        } catch (IOException e) {
+            // A StringBuilder does not throw
+            throw new IllegalStateException(e);
+        }
+        return builder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Writes this image in the uncompressed format, one color value per line in row-major order.
+     */
+    public byte[] uncompressed() {
+        return lines(QuadTree.extract(root, dimension));
+    }
+
+    /**
+     * Writes a grid of color values one value per line in row-major order.
+     */
+    public static byte[] lines(int[][] pixelGrid) {
+        StringBuilder builder = new StringBuilder();
+        for (int[] row : pixelGrid) {
+            for (int value : row) {
+                builder.append(value).append(System.lineSeparator());
+            }
+        }
+        return builder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** Access root. **/
+    public RITQTNode root() {
+        return root;
+    }
+
+    /** Access dimension. **/
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Provides the number of pixels in the image, which begins every compressed file.
+     */
+    public int uncompressedSize() {
+        return dimension * dimension;
+    }
+}
@@ -0,0 +1,395 @@
+package model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The CompressionContext class compresses and uncompresses files in the plain compressed format through buffers that are
+ * kept and reused from one file to the next, so that repeated compression allocates almost nothing.
+ *
+ * <p>A context holds a byte buffer for the file being read, a byte buffer for the file being written, a pixel array, a
+ * preorder array, and a pyramid of the uniform color of every aligned square of the image. Buffers grow to fit the
+ * largest image seen and are never released. No {@link RITQTNode} instances are created: an image is compressed by
+ * building the pyramid bottom-up and reading its preorder top-down, and uncompressed by filling pixels directly from
+ * the preorder. Values are parsed from and encoded into bytes without creating strings.</p>
+ *
+ * <p>Files are identical to those written by {@link ptui.RITCompress} and {@link ptui.RITUncompress}. A context must
+ * only be used by one thread at a time; {@link CompressionContext#current()} provides a context for each thread. Since
+ * virtual threads are not reused, programs that handle each task on a new virtual thread keep their own pool of
+ * contexts instead.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class CompressionContext {
+
+    /** The context of each thread. **/
+    private static final ThreadLocal<CompressionContext> CURRENT = ThreadLocal.withInitial(CompressionContext::new);
+
+    /** The bytes that end every line. **/
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    /** The initial size of every buffer. **/
+    private static final int INITIAL_SIZE = 1 << 12;
+
+    /** The contents of the file being read, and their length. **/
+    private byte[] input = new byte[INITIAL_SIZE];
+
+    private int inputLength;
+
+    /** The contents of the file being written, and their length. **/
+    private byte[] output = new byte[INITIAL_SIZE];
+
+    private int outputLength;
+
+    /** The pixels of the image in row-major order. **/
+    private int[] pixels = new int[INITIAL_SIZE];
+
+    /** The preorder values of the tree of the image, and their number. **/
+    private int[] preorder = new int[INITIAL_SIZE];
+
+    private int preorderLength;
+
+    /** The color of every aligned square above single pixels, or -1 when the square holds more than one color. **/
+    private int[] pyramid = new int[INITIAL_SIZE];
+
+    /** The position of the next value to be read while parsing, and the position of the next preorder value. **/
+    private int position, cursor;
+
+    /**
+     * Provides the context of the calling thread.
+     */
+    public static CompressionContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Compresses the uncompressed image file at the source path into a compressed file at the destination path.
+     *
+     * @return The number of values written, including the size header
+     * @throws LoaderException.UnreadablePathException Thrown when the source cannot be read
+     * @throws LoaderException.FileDimensionException Thrown when the number of values is not a perfect square
+     * @throws LoaderException.IntegralColorException Thrown when a color value is not in the range [0, 255]
+     * @throws LoaderException.MalformedTreeException Thrown when a value is not integral or the dimension is not a power
+     * of two
+     */
+    public int compressFile(String source, String destination) throws IOException, LoaderException {
+        readFile(source);
+        int values = compressInput();
+        writeFile(destination);
+
+        return values;
+    }
+
+    /**
+     * Compresses the contents of an uncompressed image file into the contents of a compressed file. The contents are
+     * read in place, so the returned array is the only allocation.
+     *
+     * @throws LoaderException.FileDimensionException Thrown when the number of values is not a perfect square
+     * @throws LoaderException.IntegralColorException Thrown when a color value is not in the range [0, 255]
+     * @throws LoaderException.MalformedTreeException Thrown when a value is not integral or the dimension is not a power
+     * of two
+     */
+    public byte[] compress(byte[] contents) throws LoaderException {
+        byte[] buffer = input;
+        input = contents;
+        inputLength = contents.length;
+        try {
+            compressInput();
+        } finally {
+            input = buffer;
+            inputLength = 0;
+        }
+
+        return Arrays.copyOf(output, outputLength);
+    }
+
+    /**
+     * Compresses the uncompressed image in the input buffer into the output buffer.
+     *
+     * @return The number of values written, including the size header
+     */
+    private int compressInput() throws LoaderException {
+        // Parse pixels
+        position = 0;
+        int size = 0;
+        while (position < inputLength) {
+            int value = nextValue(size + 1);
+            if (value < 0 || 255 < value) {
+                throw new LoaderException.IntegralColorException(value);
+            }
+            if (size == pixels.length) {
+                pixels = Arrays.copyOf(pixels, size * 2);
+            }
+            pixels[size ++] = value;
+        }
+
+        int dimension = checkDimension(size);
+        compress(dimension);
+
+        // Write the size header followed by the preorder
+        outputLength = 0;
+        writeValue(size);
+        for (int i = 0; i < preorderLength; ++ i) {
+            writeValue(preorder[i]);
+        }
+
+        return preorderLength + 1;
+    }
+
+    /**
+     * Uncompresses the compressed image file at the source path into an uncompressed file at the destination path.
+     *
+     * @return The side length of the image
+     * @throws LoaderException.UnreadablePathException Thrown when the source cannot be read
+     * @throws LoaderException.FileDimensionException Thrown when the size header is not a perfect square
+     * @throws LoaderException.IntegralColorException Thrown when a leaf value is not within the range [0, 255]
+     * @throws LoaderException.MalformedTreeException Thrown when the file does not describe a valid QuadTree
+     */
+    public int uncompressFile(String source, String destination) throws IOException, LoaderException {
+        readFile(source);
+
+        // Parse the size header and preorder
+        position = 0;
+        if (inputLength == 0) {
+            throw new LoaderException.MalformedTreeException("Empty file: missing size header");
+        }
+        int size = nextValue(1);
+        if (size <= 0) {
+            throw new LoaderException.FileDimensionException(Math.sqrt(size));
+        }
+        int dimension = checkDimension(size);
+
+        preorderLength = 0;
+        while (position < inputLength) {
+            if (preorderLength == preorder.length) {
+                preorder = Arrays.copyOf(preorder, preorderLength * 2);
+            }
+            preorder[preorderLength] = nextValue(preorderLength + 2);
+            preorderLength ++;
+        }
+
+        // Fill pixels from the preorder
+        if (pixels.length < size) {
+            pixels = new int[size];
+        }
+        cursor = 0;
+        fill(0, 0, dimension, dimension);
+        if (cursor != preorderLength) {
+            throw new LoaderException.MalformedTreeException("Trailing value " + preorder[cursor] + " after complete tree at line " + (cursor + 2));
+        }
+
+        // Write one pixel per line
+        outputLength = 0;
+        for (int i = 0; i < size; ++ i) {
+            writeValue(pixels[i]);
+        }
+        writeFile(destination);
+
+        return dimension;
+    }
+
+    /**
+     * Builds the pyramid of uniform colors from the pixels, then writes its preorder into the preorder array.
+     */
+    private void compress(int dimension) {
+        // The pyramid holds each level above the pixels in turn, from squares of 2 pixels to the whole image
+        int needed = 0;
+        for (int side = dimension / 2; 0 < side; side /= 2) {
+            needed += side * side;
+        }
+        if (pyramid.length < needed) {
+            pyramid = new int[needed];
+        }
+
+        int below = -1, offset = 0;
+        for (int side = dimension / 2; 0 < side; side /= 2) {
+            int childSide = side * 2;
+            for (int row = 0; row < side; ++ row) {
+                for (int col = 0; col < side; ++ col) {
+                    int ul = colorBelow(below, childSide, 2 * row, 2 * col), ur = colorBelow(below, childSide, 2 * row, 2 * col + 1);
+                    int ll = colorBelow(below, childSide, 2 * row + 1, 2 * col), lr = colorBelow(below, childSide, 2 * row + 1, 2 * col + 1);
+                    pyramid[offset + row * side + col] = 0 <= ul && ul == ur && ul == ll && ul == lr ? ul : -1;
+                }
+            }
+            below = offset;
+            offset += side * side;
+        }
+
+        // The preorder has at most one value per pixel and one per square of the pyramid
+        if (preorder.length < dimension * dimension + needed) {
+            preorder = new int[dimension * dimension + needed];
+        }
+        preorderLength = 0;
+        emit(below, dimension == 1 ? 0 : 1, 0, 0, dimension);
+    }
+
+    /**
+     * Provides the color of a square one level below the level being built, where an offset of -1 is the pixels.
+     */
+    private int colorBelow(int offset, int side, int row, int col) {
+        return offset < 0 ? pixels[row * side + col] : pyramid[offset + row * side + col];
+    }
+
+    /**
+     * Recursively writes the preorder of the square of the provided side length at (row, col) of its level, where the
+     * level is given by its offset in the pyramid, or -1 for the pixels.
+     *
+     * @param side The side length of the level in squares
+     */
+    private void emit(int offset, int side, int row, int col, int dimension) {
+        int value = offset < 0 ? pixels[row * dimension + col] : pyramid[offset + row * side + col];
+        preorder[preorderLength ++] = value;
+
+        if (value < 0) {
+            // The level below begins before this level, and has twice the side length
+            int childSide = side * 2;
+            int childOffset = childSide * 2 > dimension ? -1 : offset - childSide * childSide;
+            emit(childOffset, childSide, 2 * row,     2 * col,     dimension);
+            emit(childOffset, childSide, 2 * row,     2 * col + 1, dimension);
+            emit(childOffset, childSide, 2 * row + 1, 2 * col,     dimension);
+            emit(childOffset, childSide, 2 * row + 1, 2 * col + 1, dimension);
+        }
+    }
+
+    /**
+     * Recursively fills the pixels of the square (row, col, size) from the preorder beginning at the cursor.
+     */
+    private void fill(int row, int col, int size, int dimension) throws LoaderException {
+        if (preorderLength <= cursor) {
+            throw new LoaderException.MalformedTreeException("Incomplete tree: file ends after " + cursor + " nodes");
+        }
+
+        int value = preorder[cursor ++];
+        if (value == -1) {
+            if (size == 1) {
+                throw new LoaderException.MalformedTreeException("Split of a single pixel at line " + (cursor + 1));
+            }
+
+            int subDim = size / 2;
+            fill(row,          col,          subDim, dimension);
+            fill(row,          col + subDim, subDim, dimension);
+            fill(row + subDim, col,          subDim, dimension);
+            fill(row + subDim, col + subDim, subDim, dimension);
+        } else if (value < 0 || 255 < value) {
+            throw new LoaderException.IntegralColorException(value);
+        } else {
+            for (int r = row; r < row + size; ++ r) {
+                Arrays.fill(pixels, r * dimension + col, r * dimension + col + size, value);
+            }
+        }
+    }
+
+    /**
+     * Provides the side length of an image with the provided number of pixels.
+     */
+    private static int checkDimension(int size) throws LoaderException {
+        int dimension = (int) Math.sqrt(size);
+        if (size == 0 || dimension * dimension != size) {
+            throw new LoaderException.FileDimensionException(Math.sqrt(size));
+        }
+        if ((dimension & (dimension - 1)) != 0) {
+            throw new LoaderException.MalformedTreeException("Image dimension " + dimension + " is not a power of two");
+        }
+        return dimension;
+    }
+
+    /**
+     * Parses the value on the line beginning at the current position, advancing past the line.
+     *
+     * @param line The line number, used in messages
+     */
+    private int nextValue(int line) throws LoaderException {
+        boolean negative = input[position] == '-';
+        if (negative) {
+            position ++;
+        }
+
+        long value = 0;
+        int digits = 0;
+        while (position < inputLength && '0' <= input[position] && input[position] <= '9') {
+            value = value * 10 + (input[position ++] - '0');
+            if (++ digits > 10 || Integer.MAX_VALUE < value) {
+                throw new LoaderException.MalformedTreeException("Value too large at line " + line);
+            }
+        }
+
+        if (position < inputLength && input[position] == '\r') {
+            position ++;
+        }
+        if (digits == 0 || (position < inputLength && input[position] != '\n')) {
+            throw new LoaderException.MalformedTreeException("Non-integral value at line " + line);
+        }
+        position ++;
+
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * Encodes a value and a line separator into the output buffer.
+     */
+    private void writeValue(int value) {
+        if (output.length < outputLength + 12 + LINE_SEPARATOR.length) {
+            output = Arrays.copyOf(output, output.length * 2);
+        }
+
+        if (value < 0) {
+            output[outputLength ++] = '-';
+            value = -value;
+        }
+
+        // Digits are written from the end of the number
+        int digits = 1;
+        for (int remaining = value / 10; remaining != 0; remaining /= 10) {
+            digits ++;
+        }
+        for (int i = outputLength + digits - 1; outputLength <= i; -- i) {
+            output[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        outputLength += digits;
+
+        for (byte b : LINE_SEPARATOR) {
+            output[outputLength ++] = b;
+        }
+    }
+
+    /**
+     * Reads a whole file into the input buffer.
+     */
+    private void readFile(String path) throws IOException, LoaderException {
+        File file = new File(path);
+        if (!file.exists() || file.isDirectory()) {
+            throw new LoaderException.UnreadablePathException(path);
+        }
+
+        long length = file.length();
+        if (Integer.MAX_VALUE - 8 < length) {
+            throw new LoaderException.MalformedTreeException("File is too large to be read into memory: " + path);
+        }
+        if (input.length < length) {
+            input = new byte[(int) length];
+        }
+
+        try (InputStream stream = new FileInputStream(file)) {
+            inputLength = 0;
+            for (int read; inputLength < input.length && (read = stream.read(input, inputLength, input.length - inputLength)) != -1; ) {
+                inputLength += read;
+            }
+        }
+    }
+
+    /**
+     * Writes the output buffer to a file.
+     */
+    private void writeFile(String path) throws IOException {
+        try (OutputStream stream = new FileOutputStream(path)) {
+            stream.write(output, 0, outputLength);
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package model;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * The EntropyCodec class encodes QuadTree data structures in a compact binary format using adaptive binary arithmetic
+ * (range) coding.
+ *
+ * <p>The format begins with the four bytes "RITE", a version byte, and the uncompressed size as a four byte integer,
+ * followed by the range coded preorder of the tree. Each node above the pixel level is preceded by one bit stating
+ * whether it is split, modelled by its depth and by whether its previous sibling was split. Nodes at the pixel level are
+ * always leaves and cost no structure bits. Each leaf is coded as one bit stating whether its color equals the previous
+ * leaf in preorder, modelled by depth, followed when it differs by its eight color bits coded most significant first in
+ * a binary tree of probabilities selected by the previous leaf color.</p>
+ *
+ * <p>Probabilities adapt as values are coded, so skewed color distributions and runs of equal neighbouring leaves cost
+ * far less than the eight bits per leaf of a fixed width format.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class EntropyCodec {
+
+    /** The bytes that begin every file in this format. **/
+    private static final byte[] MAGIC = { 'R', 'I', 'T', 'E' };
+
+    /** The version of the format written by this class. **/
+    private static final int VERSION = 1;
+
+    /** The length of the header preceding the coded tree. **/
+    private static final int HEADER_LENGTH = MAGIC.length + 1 + 4;
+
+    /** The deepest tree supported by the format. An image side length may be at most 2^MAX_DEPTH. **/
+    private static final int MAX_DEPTH = 31;
+
+    /** The number of previous leaf colors that select separate probabilities for the color bits. **/
+    private static final int COLOR_CONTEXTS = 8;
+
+    /** Probabilities are stored as 11 bit integers, adapting by 1/32 of their distance to certainty per coded bit. **/
+    private static final int PROBABILITY_BITS = 11, PROBABILITY_ONE = 1 << PROBABILITY_BITS, ADAPTATION_SHIFT = 5;
+
+    /** The range is renormalized whenever it falls below 2^24. **/
+    private static final int TOP = 1 << 24;
+
+    /**
+     * Encodes a QuadTree data structure representing an image with the provided uncompressed size.
+     */
+    public static byte[] encode(RITQTNode root, int uncompressedSize) {
+        int dimension = (int) Math.sqrt(uncompressedSize);
+        Encoder encoder = new Encoder();
+
+        // Write the header
+        encoder.out.write(MAGIC, 0, MAGIC.length);
+        encoder.out.write(VERSION);
+        for (int shift = 24; 0 <= shift; shift -= 8) {
+            encoder.out.write(uncompressedSize >>> shift);
+        }
+
+        encoder.encodeNode(root, 0, Integer.numberOfTrailingZeros(Math.max(1, dimension)), 0);
+        encoder.flush();
+
+        return encoder.out.toByteArray();
+    }
+
+    /**
+     * Returns true when the data begins with the bytes that begin every file in this format.
+     */
+    public static boolean isEncoded(byte[] data) {
+        return MAGIC.length <= data.length && Arrays.equals(data, 0, MAGIC.length, MAGIC, 0, MAGIC.length);
+    }
+
+    /**
+     * Provides the uncompressed size stored in the header of encoded data.
+     *
+     * @throws LoaderException.MalformedTreeException Thrown when the data does not begin with a valid header
+     */
+    public static int uncompressedSize(byte[] data) throws LoaderException.MalformedTreeException {
+        if (data.length < HEADER_LENGTH || !Arrays.equals(data, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+            throw new LoaderException.MalformedTreeException("Missing entropy coded header");
+        }
+        if (data[MAGIC.length] != VERSION) {
+            throw new LoaderException.MalformedTreeException("Unsupported entropy coded version: " + data[MAGIC.length]);
+        }
+
+        int size = 0;
+        for (int i = MAGIC.length + 1; i < HEADER_LENGTH; ++ i) {
+            size = size << 8 | data[i] & 0xFF;
+        }
+
+        int dimension = (int) Math.sqrt(size);
+        if (size <= 0 || dimension * dimension != size || (dimension & (dimension - 1)) != 0) {
+            throw new LoaderException.MalformedTreeException("Uncompressed size " + size + " is not the square of a power of two");
+        }
+        return size;
+    }
+
+    /**
+     * Decodes encoded data into a QuadTree data structure.
+     *
+     * @throws LoaderException.MalformedTreeException Thrown when the data does not begin with a valid header or is truncated
+     */
+    public static RITQTNode decode(byte[] data) throws LoaderException.MalformedTreeException {
+        return new Decoder().decode(data);
+    }
+
+    /**
+     * Decodes encoded data into a QuadTree data structure of at most the provided number of nodes, so that a few bytes
+     * of untrusted data cannot describe a tree too large to be held in memory.
+     *
+     * @throws LoaderException.MalformedTreeException Thrown when the data does not begin with a valid header, is
+     * truncated, or describes more nodes than the limit
+     */
+    public static RITQTNode decode(byte[] data, long maxNodes) throws LoaderException.MalformedTreeException {
+        return new Decoder().decode(data, maxNodes);
+    }
+
+    /**
+     * The Decoder class decodes data encoded by {@link EntropyCodec#encode(RITQTNode, int)}. A decoder holds its own
+     * probabilities, so a single instance can decode any number of images, one at a time, and
+     * {@link Decoder#decodeInto(byte[], int[])} decodes pixels without allocating.
+     */
+    public static class Decoder {
+
+        private final short[] splitProbabilities = new short[(MAX_DEPTH + 1) * 2];
+
+        private final short[] sameProbabilities = new short[MAX_DEPTH + 1];
+
+        private final short[] colorProbabilities = new short[COLOR_CONTEXTS * 256];
+
+        private byte[] data;
+
+        private int position, range, code, previous;
+
+        /** The number of nodes that may still be decoded into a tree. **/
+        private long nodesRemaining;
+
+        /**
+         * Decodes encoded data into a QuadTree data structure.
+         *
+         * @throws LoaderException.MalformedTreeException Thrown when the data does not begin with a valid header or is truncated
+         */
+        public RITQTNode decode(byte[] data) throws LoaderException.MalformedTreeException {
+            return decode(data, Long.MAX_VALUE);
+        }
+
+        /**
+         * Decodes encoded data into a QuadTree data structure of at most the provided number of nodes.
+         *
+         * @throws LoaderException.MalformedTreeException Thrown when the data does not begin with a valid header, is
+         * truncated, or describes more nodes than the limit
+         */
+        public RITQTNode decode(byte[] data, long maxNodes) throws LoaderException.MalformedTreeException {
+            int dimension = start(data);
+            nodesRemaining = maxNodes;
+            RITQTNode root = decodeNode(0, Integer.numberOfTrailingZeros(dimension), 0);
+            finish();
+            return root;
+        }
+
+        /**
+         * Decodes encoded data directly into a row-major pixel buffer, which must hold at least the uncompressed size of
+         * the image. No tree is built and nothing is allocated.
+         *
+         * @return The side length of the decoded image
+         * @throws LoaderException.MalformedTreeException Thrown when the data does not begin with a valid header or is truncated
+         */
+        public int decodeInto(byte[] data, int[] pixels) throws LoaderException.MalformedTreeException {
+            int dimension = start(data);
+            if (pixels.length < dimension * dimension) {
+                throw new IllegalArgumentException("Pixel buffer holds " + pixels.length + " of " + dimension * dimension + " pixels");
+            }
+
+            decodeBlock(pixels, dimension, 0, 0, dimension, 0, Integer.numberOfTrailingZeros(dimension), 0);
+            finish();
+            return dimension;
+        }
+
+        /**
+         * Validates the header, resets all probabilities, and reads the initial code. Provides the image side length.
+         */
+        private int start(byte[] data) throws LoaderException.MalformedTreeException {
+            int dimension = (int) Math.sqrt(uncompressedSize(data));
+
+            Arrays.fill(splitProbabilities, (short) (PROBABILITY_ONE / 2));
+            Arrays.fill(sameProbabilities, (short) (PROBABILITY_ONE / 2));
+            Arrays.fill(colorProbabilities, (short) (PROBABILITY_ONE / 2));
+
+            this.data = data;
+            this.position = HEADER_LENGTH;
+            this.range = -1;
+            this.code = 0;
+            this.previous = 0;
+            for (int i = 0; i < 5; ++ i) {
+                code = code << 8 | next();
+            }
+
+            return dimension;
+        }
+
+        /**
+         * Checks that decoding did not read beyond the end of the data.
+         */
+        private void finish() throws LoaderException.MalformedTreeException {
+            if (data.length < position) {
+                throw new LoaderException.MalformedTreeException("Truncated entropy coded data: " + (position - data.length) + " bytes missing");
+            }
+            data = null;
+        }
+
+        private RITQTNode decodeNode(int depth, int maxDepth, int previousSplit) throws LoaderException.MalformedTreeException {
+            if (-- nodesRemaining < 0) {
+                data = null;
+                throw new LoaderException.MalformedTreeException("Entropy coded data describes more nodes than the limit");
+            }
+            if (depth < maxDepth && decodeBit(splitProbabilities, depth * 2 + previousSplit) == 1) {
+                RITQTNode ul = decodeNode(depth + 1, maxDepth, 0);
+                RITQTNode ur = decodeNode(depth + 1, maxDepth, ul.getVal() < 0 ? 1 : 0);
+                RITQTNode ll = decodeNode(depth + 1, maxDepth, ur.getVal() < 0 ? 1 : 0);
+                RITQTNode lr = decodeNode(depth + 1, maxDepth, ll.getVal() < 0 ? 1 : 0);
+                return new RITQTNode(-1, ul, ur, ll, lr);
+            }
+            return new RITQTNode(decodeLeaf(depth));
+        }
+
+        /**
+         * Recursively decodes the node covering (row, col, size) into the pixel buffer. Provides 1 when the node was
+         * split, so that its next sibling can select its structure probability.
+         */
+        private int decodeBlock(int[] pixels, int dimension, int row, int col, int size, int depth, int maxDepth, int previousSplit) {
+            if (depth < maxDepth && decodeBit(splitProbabilities, depth * 2 + previousSplit) == 1) {
+                int subDim = size / 2;
+                int split = decodeBlock(pixels, dimension, row, col, subDim, depth + 1, maxDepth, 0);
+                split = decodeBlock(pixels, dimension, row, col + subDim, subDim, depth + 1, maxDepth, split);
+                split = decodeBlock(pixels, dimension, row + subDim, col, subDim, depth + 1, maxDepth, split);
+                decodeBlock(pixels, dimension, row + subDim, col + subDim, subDim, depth + 1, maxDepth, split);
+                return 1;
+            }
+
+            int val = decodeLeaf(depth);
+            for (int r = row; r < row + size; ++ r) {
+                Arrays.fill(pixels, r * dimension + col, r * dimension + col + size, val);
+            }
+            return 0;
+        }
+
+        private int decodeLeaf(int depth) {
+            if (decodeBit(sameProbabilities, depth) == 0) {
+                // The color is coded in the bit tree selected by the previous color
+                int base = (previous >>> 5) * 256;
+                int node = 1;
+                while (node < 256) {
+                    node = node << 1 | decodeBit(colorProbabilities, base + node);
+                }
+                previous = node - 256;
+            }
+            return previous;
+        }
+
+        private int decodeBit(short[] probabilities, int index) {
+            int probability = probabilities[index];
+            int bound = (range >>> PROBABILITY_BITS) * probability;
+            int bit;
+
+            if (Integer.compareUnsigned(code, bound) < 0) {
+                range = bound;
+                probabilities[index] = (short) (probability + ((PROBABILITY_ONE - probability) >>> ADAPTATION_SHIFT));
+                bit = 0;
+            } else {
+                code -= bound;
+                range -= bound;
+                probabilities[index] = (short) (probability - (probability >>> ADAPTATION_SHIFT));
+                bit = 1;
+            }
+
+            while (Integer.compareUnsigned(range, TOP) < 0) {
+                range <<= 8;
+                code = code << 8 | next();
+            }
+            return bit;
+        }
+
+        /**
+         * Provides the next byte of the data. Truncated data is read as if padded with zeros, and counted so that
+         * {@link Decoder#finish()} can report it.
+         */
+        private int next() {
+            int b = position < data.length ? data[position] & 0xFF : 0;
+            position ++;
+            return b;
+        }
+    }
+
+    /**
+     * The Encoder class range codes a tree using the same model as {@link Decoder}.
+     */
+    private static class Encoder {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        private final short[] splitProbabilities = new short[(MAX_DEPTH + 1) * 2];
+
+        private final short[] sameProbabilities = new short[MAX_DEPTH + 1];
+
+        private final short[] colorProbabilities = new short[COLOR_CONTEXTS * 256];
+
+        private long low;
+
+        private int range = -1, cache, cacheSize = 1, previous;
+
+        private Encoder() {
+            Arrays.fill(splitProbabilities, (short) (PROBABILITY_ONE / 2));
+            Arrays.fill(sameProbabilities, (short) (PROBABILITY_ONE / 2));
+            Arrays.fill(colorProbabilities, (short) (PROBABILITY_ONE / 2));
+        }
+
+        private void encodeNode(RITQTNode node, int depth, int maxDepth, int previousSplit) {
+            boolean split = node.getVal() < 0;
+
+            if (depth < maxDepth) {
+                encodeBit(splitProbabilities, depth * 2 + previousSplit, split ? 1 : 0);
+            }
+
+            if (split) {
+                encodeNode(node.getUpperLeft(),  depth + 1, maxDepth, 0);
+                encodeNode(node.getUpperRight(), depth + 1, maxDepth, node.getUpperLeft().getVal() < 0 ? 1 : 0);
+                encodeNode(node.getLowerLeft(),  depth + 1, maxDepth, node.getUpperRight().getVal() < 0 ? 1 : 0);
+                encodeNode(node.getLowerRight(), depth + 1, maxDepth, node.getLowerLeft().getVal() < 0 ? 1 : 0);
+            } else {
+                int val = node.getVal();
+                encodeBit(sameProbabilities, depth, val == previous ? 1 : 0);
+
+                if (val != previous) {
+                    int base = (previous >>> 5) * 256;
+                    int tree = 1;
+                    for (int shift = 7; 0 <= shift; -- shift) {
+                        int bit = val >>> shift & 1;
+                        encodeBit(colorProbabilities, base + tree, bit);
+                        tree = tree << 1 | bit;
+                    }
+                    previous = val;
+                }
+            }
+        }
+
+        private void encodeBit(short[] probabilities, int index, int bit) {
+            int probability = probabilities[index];
+            int bound = (range >>> PROBABILITY_BITS) * probability;
+
+            if (bit == 0) {
+                range = bound;
+                probabilities[index] = (short) (probability + ((PROBABILITY_ONE - probability) >>> ADAPTATION_SHIFT));
+            } else {
+                low += bound & 0xFFFFFFFFL;
+                range -= bound;
+                probabilities[index] = (short) (probability - (probability >>> ADAPTATION_SHIFT));
+            }
+
+            while (Integer.compareUnsigned(range, TOP) < 0) {
+                range <<= 8;
+                shiftLow();
+            }
+        }
+
+        /**
+         * Writes the top byte of low, propagating a pending carry through any cached 0xFF bytes.
+         */
+        private void shiftLow() {
+            if (low < 0xFF000000L || low > 0xFFFFFFFFL) {
+                int carry = (int) (low >>> 32);
+                int temp = cache;
+                do {
+                    out.write(temp + carry);
+                    temp = 0xFF;
+                } while (-- cacheSize != 0);
+                cache = (int) (low >>> 24) & 0xFF;
+            }
+            cacheSize ++;
+            low = (low & 0x00FFFFFFL) << 8;
+        }
+
+        private void flush() {
+            for (int i = 0; i < 5; ++ i) {
+                shiftLow();
+            }
+        }
+    }
+}
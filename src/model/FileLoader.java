@@ -1,14 +1,16 @@
 package model;
 
-import gui.Display;
-import gui.RITGUI;
-
 import java.io.*;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The FileLoader class provides methods to read and write file data.
@@ -17,15 +19,43 @@ import java.util.Map;
  */
 public class FileLoader {
 
+    /** The listener that handles exceptions caught by the secure methods. **/
+    private static volatile LoaderListener listener = LoaderListener.EXIT;
+
+    /**
+     * Replaces the listener that handles exceptions caught by the secure methods, which by default exits the program.
+     */
+    public static void setListener(LoaderListener listener) {
+        FileLoader.listener = listener;
+    }
+
     /**
      * Attempts to load the contents of a file at the provided path into a list of integers. This method is used to call
-     * {@link FileLoader#loadFileContents(String)} with attention to thrown exceptions.
+     * {@link FileLoader#loadFileContents(String, byte[])} with attention to thrown exceptions.
      */
     public static List<Integer> secureLoadFileContents(String path) {
+        return secureLoadFileContents(path, null);
+    }
+
+    /**
+     * Attempts to parse the contents of a file that have already been read, for example with
+     * {@link FileLoader#secureLoadBytes(String)}, into a list of integers. The contents are checked exactly as they would
+     * be by {@link FileLoader#secureLoadFileContents(String)}, and the path is used only to identify the format and the
+     * file in messages.
+     */
+    public static List<Integer> secureParseFileContents(byte[] contents, String path) {
+        return secureLoadFileContents(path, contents);
+    }
+
+    /**
+     * Attempts to load the contents of a file, or to parse contents that have already been read when they are provided,
+     * with attention to thrown exceptions.
+     */
+    private static List<Integer> secureLoadFileContents(String path, byte[] contents) {
         try {
             // Attempt to load the file from the uncompressed image directory
 
-            List<Integer> lineValues = FileLoader.loadFileContents(path);
+            List<Integer> lineValues = FileLoader.loadFileContents(path, contents);
             double dimension = Math.sqrt(lineValues.size());
             if (!isFileCompressed(path) && Math.floor(dimension) != dimension) {
                 // Do not check dimension when loading compressed files
@@ -38,30 +68,18 @@ public class FileLoader {
 
             f.printStackTrace();
             System.out.println("File does not exist: " + path);
-            if (!RITGUI.active) {
-                System.exit(-1);
-            } else {
-                Display.postException(f.getMessage());
-            }
-        } catch (IOException | LoaderException.IntegralColorException | LoaderException.UnreadablePathException | LoaderException.FileDimensionException e) {
-            // Handle generic IOException, unreadable files, nonsquare files, and color value not in valid range
+            listener.exceptionCaught(f.getMessage());
+        } catch (IOException | LoaderException.IntegralColorException | LoaderException.UnreadablePathException | LoaderException.FileDimensionException | LoaderException.CorruptArchiveException | LoaderException.MalformedImageException e) {
+            // Handle generic IOException, unreadable files, nonsquare files, color value not in valid range, corrupt archives, and malformed binary images
             // All LoaderException extensions can be handled in the same way because they override printStackTrace
 
             e.printStackTrace();
-            if (!RITGUI.active) {
-                System.exit(-1);
-            } else {
-                Display.postException(e.getMessage());
-            }
+            listener.exceptionCaught(e.getMessage());
         } catch (NumberFormatException n) {
             // Handle non-integral color values (NumberFormatException thrown when parsing lines as an integer)
 
             System.out.println("Exception loading file: " + path + "\nFile contains a non-integral value");
-            if (!RITGUI.active) {
-                System.exit(-1);
-            } else {
-                Display.postException(n.getMessage());
-            }
+            listener.exceptionCaught(n.getMessage());
         }
 
         // An empty list is returned if an exception is caught
@@ -75,27 +93,46 @@ public class FileLoader {
      * parameter may itself point to a subdirectory following the directoryHeader, but can otherwise simply be the name
      * and extension of the file to be read.</p>
      *
+     * @param contents The contents of the file when they have already been read, or null to read the file
      * @throws LoaderException.IntegralColorException Thrown when a color value is not in the range [0, 255]
      * @throws NumberFormatException Thrown when a file contains a non-integral value
      * @throws LoaderException.UnreadablePathException Thrown when the provided path cannot be read
+     * @throws LoaderException.CorruptArchiveException Thrown when the path is an archive entry that cannot be read
+     * @throws LoaderException.MalformedImageException Thrown when the path is a binary image that cannot be decoded
      */
-    private static List<Integer> loadFileContents(String path) throws IOException, LoaderException.IntegralColorException, NumberFormatException, LoaderException.UnreadablePathException {
+    private static List<Integer> loadFileContents(String path, byte[] contents) throws IOException, LoaderException.IntegralColorException, NumberFormatException, LoaderException.UnreadablePathException, LoaderException.CorruptArchiveException, LoaderException.MalformedImageException {
 
         File file = new File(path);
 
         List<Integer> lineValues = new ArrayList<>();
 
-        if(file.exists() && !file.isDirectory()) {
+        if(contents != null || isArchiveEntry(path) || (file.exists() && !file.isDirectory())) {
+
+            // Open a reader in the file, in the bytes of an archive entry, or in contents that have already been read
+            if (contents == null && isArchiveEntry(path)) {
+                contents = loadArchiveEntry(path);
+            }
+
+            if (BinaryImage.isBinaryImage(path)) {
+                // Binary images hold one byte per pixel, so there are no lines to parse
+                int[] pixels = contents != null ? BinaryImage.decode(ByteBuffer.wrap(contents), path) : BinaryImage.read(path);
+                for (int pixel : pixels) {
+                    lineValues.add(pixel);
+                }
+                return lineValues;
+            }
 
-            // Open a reader in the file
-            BufferedReader reader = new BufferedReader(new FileReader(file));
+            BufferedReader reader = contents != null
+                    ? new BufferedReader(new InputStreamReader(new ByteArrayInputStream(contents)))
+                    : new BufferedReader(new FileReader(file));
 
             String line;
+            boolean compressed = isFileCompressed(path);
 
             while ((line = reader.readLine()) != null) {
                 int value = Integer.parseInt(line);
 
-                if (!isFileCompressed(path) && (value < 0 || 255 < value)) {
+                if (!compressed && (value < 0 || 255 < value)) {
                     // Do not check colors when loading compressed files
 
                     throw new LoaderException.IntegralColorException(value);
@@ -121,15 +158,11 @@ public class FileLoader {
     public static void secureWriteFileContents(List<?> lineValues, String path) {
         try {
             writeFileContents(lineValues, path);
-        } catch (LoaderException.FileCreationException | IOException | LoaderException.UnreadablePathException e) {
+        } catch (LoaderException.FileCreationException | IOException | LoaderException.UnreadablePathException | LoaderException.IntegralColorException e) {
             // Handle nonexistent file, unreadable file, and failure to create file
 
             e.printStackTrace();
-            if(!RITGUI.active) {
-                System.exit(-1);
-            } else {
-                Display.postException(e.getMessage());
-            }
+            listener.exceptionCaught(e.getMessage());
         }
     }
 
@@ -139,10 +172,14 @@ public class FileLoader {
      * <p>Each object in lineValues will be written to its own line in an existent file. If the file does not exist,
      * this method will attempt to create it.</p>
      *
+     * <p>Paths of binary images are written with {@link BinaryImage#write(int[], int, String)} instead, so each value
+     * must be a color.</p>
+     *
      * @throws LoaderException.FileCreationException Thrown when a file cannot be created at the provided path
      * @throws LoaderException.UnreadablePathException Thrown when the file at the provided path is a directory
+     * @throws LoaderException.IntegralColorException Thrown when a value written to a binary image is not a color
      */
-    private static void writeFileContents(List<?> lineValues, String path) throws LoaderException.FileCreationException, IOException, LoaderException.UnreadablePathException {
+    private static void writeFileContents(List<?> lineValues, String path) throws LoaderException.FileCreationException, IOException, LoaderException.UnreadablePathException, LoaderException.IntegralColorException {
         File file = new File(path);
 
         if (!file.exists()) {
@@ -155,7 +192,14 @@ public class FileLoader {
             }
         }
 
-        if (!file.isDirectory()) {
+        if (!file.isDirectory() && BinaryImage.isBinaryImage(path)) {
+            // Binary images are written as one byte per pixel
+            int[] pixels = new int[lineValues.size()];
+            for (int i = 0; i < pixels.length; ++ i) {
+                pixels[i] = Integer.parseInt(lineValues.get(i).toString());
+            }
+            BinaryImage.write(pixels, (int) Math.sqrt(pixels.length), path);
+        } else if (!file.isDirectory()) {
             // Cannot write text to a directory
             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file)));
 
@@ -171,12 +215,319 @@ public class FileLoader {
         }
     }
 
+    /**
+     * Attempts to load the contents of a binary file at the provided path, with attention to any thrown exceptions.
+     *
+     * @return The bytes of the file, or an empty array if an exception is caught
+     */
+    public static byte[] secureLoadBytes(String path) {
+        try {
+            if (isArchiveEntry(path)) {
+                return loadArchiveEntry(path);
+            }
+
+            File file = new File(path);
+            if (!file.exists() || file.isDirectory()) {
+                throw new LoaderException.UnreadablePathException(path);
+            }
+
+            return Files.readAllBytes(file.toPath());
+        } catch (IOException | LoaderException.UnreadablePathException | LoaderException.CorruptArchiveException e) {
+            // Handle unreadable files and corrupt archives
+
+            e.printStackTrace();
+            listener.exceptionCaught(e.getMessage());
+        }
+
+        return new byte[0];
+    }
+
+    /**
+     * Writes an array of bytes to a binary file at the provided path, with attention to any thrown exceptions. If the file
+     * does not exist, this method will attempt to create it.
+     */
+    public static void secureWriteBytes(byte[] bytes, String path) {
+        try {
+            File file = new File(path);
+
+            if (!file.exists() && !file.createNewFile()) {
+                throw new LoaderException.FileCreationException(file.getPath());
+            }
+            if (file.isDirectory()) {
+                throw new LoaderException.UnreadablePathException("Invalid path " + file.getPath() + " is a directory not a file");
+            }
+
+            Files.write(file.toPath(), bytes);
+        } catch (LoaderException.FileCreationException | IOException | LoaderException.UnreadablePathException e) {
+            // Handle nonexistent file, unreadable file, and failure to create file
+
+            e.printStackTrace();
+            listener.exceptionCaught(e.getMessage());
+        }
+    }
+
+    /**
+     * Attempts to read the pixels of a binary image at the provided path with {@link BinaryImage#read(String)}, with
+     * attention to any thrown exceptions. The pixels are not boxed into a list.
+     *
+     * @return The pixels of the image padded to a power of two square, or an empty array if an exception is caught
+     */
+    public static int[] secureLoadPixels(String path) {
+        try {
+            return isArchiveEntry(path) ? BinaryImage.decode(ByteBuffer.wrap(loadArchiveEntry(path)), path) : BinaryImage.read(path);
+        } catch (IOException | LoaderException.UnreadablePathException | LoaderException.MalformedImageException | LoaderException.CorruptArchiveException e) {
+            // Handle unreadable files, malformed images, and corrupt archives
+
+            e.printStackTrace();
+            listener.exceptionCaught(e.getMessage());
+        }
+
+        return new int[0];
+    }
+
+    /**
+     * Writes a square of row-major pixels to a binary image at the provided path with
+     * {@link BinaryImage#write(int[], int, String)}, with attention to any thrown exceptions.
+     */
+    public static void secureWritePixels(int[] pixels, int dimension, String path) {
+        try {
+            if (new File(path).isDirectory()) {
+                throw new LoaderException.UnreadablePathException("Invalid path " + path + " is a directory not a file");
+            }
+            BinaryImage.write(pixels, dimension, path);
+        } catch (IOException | LoaderException.UnreadablePathException | LoaderException.IntegralColorException e) {
+            // Handle unwritable files and invalid colors
+
+            e.printStackTrace();
+            listener.exceptionCaught(e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a QuadTree data structure to a compressed file at the provided path, with attention to any thrown exceptions.
+     * The preorder values of the tree are written directly, so no list of lines is built.
+     */
+    public static void secureWriteTree(int uncompressedSize, RITQTNode root, String path) {
+        try {
+            writeTree(uncompressedSize, root, path);
+        } catch (LoaderException.FileCreationException | IOException | LoaderException.UnreadablePathException e) {
+            // Handle nonexistent file, unreadable file, and failure to create file
+
+            e.printStackTrace();
+            listener.exceptionCaught(e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the uncompressed size of an image followed by the preorder values of its QuadTree data structure, each to its
+     * own line in a file specified by the provided path. If the file does not exist, this method will attempt to create it.
+     *
+     * <p>Paths with the shared format extension are written with
+     * {@link QuadTree#sharedPreorder(RITQTNode, Appendable, String)}, so that shared subtrees are written once.</p>
+     *
+     * @throws LoaderException.FileCreationException Thrown when a file cannot be created at the provided path
+     * @throws LoaderException.UnreadablePathException Thrown when the file at the provided path is a directory
+     */
+    private static void writeTree(int uncompressedSize, RITQTNode root, String path) throws LoaderException.FileCreationException, IOException, LoaderException.UnreadablePathException {
+        File file = new File(path);
+
+        if (!file.exists() && !file.createNewFile()) {
+            throw new LoaderException.FileCreationException(file.getPath());
+        }
+
+        if (!file.isDirectory()) {
+            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file)))) {
+                writer.write(Integer.toString(uncompressedSize));
+                writer.newLine();
+                if (isSharedFormat(path)) {
+                    QuadTree.sharedPreorder(root, writer, System.lineSeparator());
+                } else {
+                    QuadTree.preorder(root, writer, System.lineSeparator());
+                }
+            }
+        } else {
+            throw new LoaderException.UnreadablePathException("Invalid path " + file.getPath() + " is a directory not a file");
+        }
+    }
+
+    /**
+     * Attempts to load the compressed file at the provided path into an image, parsing it in the format chosen by its
+     * extension: entropy coded files with {@link EntropyCodec#decode(byte[])}, shared files with
+     * {@link QuadTree#fromSharedContents(List)}, and plain files with {@link QuadTree#fromCompressedContents(List)}.
+     *
+     * @return The image, or null if an exception is caught
+     */
+    public static CompressedImage secureLoadCompressed(String path) {
+        try {
+            if (isEntropyFormat(path)) {
+                byte[] bytes = secureLoadBytes(path);
+                if (bytes.length == 0) {
+                    return null;
+                }
+                return new CompressedImage(EntropyCodec.decode(bytes), (int) Math.sqrt(EntropyCodec.uncompressedSize(bytes)));
+            }
+
+            List<Integer> lineValues = secureLoadFileContents(path);
+            if (lineValues.isEmpty()) {
+                return null;
+            }
+            int dimension = (int) Math.sqrt(lineValues.remove(0));
+            RITQTNode root = isSharedFormat(path) ? QuadTree.fromSharedContents(lineValues) : QuadTree.fromCompressedContents(lineValues);
+            return new CompressedImage(root, dimension);
+        } catch (LoaderException.MalformedTreeException e) {
+            // Handle invalid entropy coded contents and invalid shared references
+
+            e.printStackTrace();
+            listener.exceptionCaught(e.getMessage());
+        } catch (IndexOutOfBoundsException e) {
+            // Handle a plain preorder that ends before its tree is complete
+
+            System.out.println("Exception loading file: " + path + "\nFile ends before its tree is complete");
+            listener.exceptionCaught(e.getMessage());
+        }
+
+        return null;
+    }
+
+    /**
+     * Writes a QuadTree data structure to a compressed file at the provided path in the format chosen by its extension,
+     * with {@link FileLoader#secureWriteBytes(byte[], String)} for the entropy coded format and with
+     * {@link FileLoader#secureWriteTree(int, RITQTNode, String)} otherwise.
+     */
+    public static void secureWriteCompressed(int uncompressedSize, RITQTNode root, String path) {
+        if (isEntropyFormat(path)) {
+            secureWriteBytes(EntropyCodec.encode(root, uncompressedSize), path);
+        } else {
+            secureWriteTree(uncompressedSize, root, path);
+        }
+    }
+
+    /**
+     * Provides the path of the file beside the file at the provided path to which its new contents are written before
+     * {@link FileLoader#moveIntoPlace(String, String)} replaces it. The file name keeps its extension, so the partial
+     * file is written in the same format.
+     */
+    public static String partialPath(String path) {
+        File file = new File(path).getAbsoluteFile();
+        return new File(file.getParentFile(), PARTIAL_PREFIX + file.getName()).getPath();
+    }
+
+    /**
+     * Moves a completely written file over the file at the destination path, atomically when the file system allows it,
+     * so that the destination holds either its earlier contents or its new contents and never a partial file.
+     */
+    public static void moveIntoPlace(String partial, String destination) throws IOException {
+        try {
+            Files.move(new File(partial).toPath(), new File(destination).toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(new File(partial).toPath(), new File(destination).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** The prefix of the name of a partial file, which hides it in directory listings. **/
+    private static final String PARTIAL_PREFIX = ".partial-";
+
+    /**
+     * Loads the bytes of an entry in an archive, given a path of the form archive.rita!entry. Archives are opened once
+     * and remain mapped while they are unchanged, so that later entries of the same archive are read without opening a
+     * file.
+     *
+     * @throws LoaderException.UnreadablePathException Thrown when the archive or the entry does not exist
+     * @throws LoaderException.CorruptArchiveException Thrown when the archive or the entry cannot be read
+     */
+    public static byte[] loadArchiveEntry(String path) throws IOException, LoaderException.UnreadablePathException, LoaderException.CorruptArchiveException {
+        int separator = path.indexOf(ARCHIVE_EXTENSION + ENTRY_SEPARATOR) + ARCHIVE_EXTENSION.length();
+        try {
+            return openArchive(path.substring(0, separator)).read(path.substring(separator + ENTRY_SEPARATOR.length()));
+        } catch (LoaderException.UnreadablePathException | LoaderException.CorruptArchiveException e) {
+            throw e;
+        } catch (LoaderException e) {
+            throw new LoaderException.CorruptArchiveException(path, e.getMessage());
+        }
+    }
+
+    /**
+     * Provides the open archive at the provided path, opening it when it has not yet been opened. An archive whose
+     * modification time or length has changed since it was opened has been rewritten, so it is closed and opened again
+     * rather than read from a stale mapping.
+     */
+    public static ImageArchive openArchive(String path) throws IOException, LoaderException {
+        // The file is checked before it is opened, so that a rewrite while it is opened is seen by the next call
+        File file = new File(path);
+        long modified = file.lastModified(), length = file.length();
+        synchronized (openArchives) {
+            OpenArchive open = openArchives.get(path);
+            if (open != null && open.modified() == modified && open.length() == length) {
+                return open.archive();
+            }
+            if (open != null) {
+                openArchives.remove(path);
+                open.archive().close();
+            }
+
+            ImageArchive archive = ImageArchive.open(path);
+            openArchives.put(path, new OpenArchive(archive, modified, length));
+            return archive;
+        }
+    }
+
+    /**
+     * The OpenArchive record is an open archive and the modification time and length of its file when it was opened.
+     */
+    private record OpenArchive(ImageArchive archive, long modified, long length) {
+    }
+
+    /**
+     * Returns true when the path names an entry in an archive, in the form archive.rita!entry.
+     */
+    public static boolean isArchiveEntry(String path) {
+        return path.contains(ARCHIVE_EXTENSION + ENTRY_SEPARATOR);
+    }
+
+    /**
+     * Returns true when the path represents an archive of images written by {@link ImageArchive}.
+     */
+    public static boolean isArchive(String path) {
+        return path.endsWith(ARCHIVE_EXTENSION);
+    }
+
+    /** The archives that have been opened to read entries, by path. **/
+    private static final Map<String, OpenArchive> openArchives = new HashMap<>();
+
+    /** The file extension for archives of images **/
+    private static final String ARCHIVE_EXTENSION = ".rita";
+
+    /** The separator between the path of an archive and the name of an entry within it **/
+    public static final String ENTRY_SEPARATOR = "!";
+
     /** Stores file paths alongside boolean values representing whether or not they represent compressed images. **/
-    private static final Map<String, Boolean> compressionReference = new HashMap<>();
+    private static final Map<String, Boolean> compressionReference = new ConcurrentHashMap<>();
 
     /** The file extension for compressed files **/
     private static final String COMP_EXTENSION = ".rit";
 
+    /** The file extension for compressed files in the shared format **/
+    private static final String SHARED_EXTENSION = ".ritd";
+
+    /** The file extension for compressed files in the entropy coded format **/
+    private static final String ENTROPY_EXTENSION = ".rite";
+
+    /**
+     * Returns true when the path represents a binary compressed file in the entropy coded format written by
+     * {@link EntropyCodec}. Such files must be loaded with {@link FileLoader#secureLoadBytes(String)}.
+     */
+    public static boolean isEntropyFormat(String path) {
+        return path.endsWith(ENTROPY_EXTENSION);
+    }
+
+    /**
+     * Returns true when the path represents a compressed file in the shared format written by
+     * {@link QuadTree#sharedPreorder(RITQTNode, Appendable, String)}.
+     */
+    public static boolean isSharedFormat(String path) {
+        return path.endsWith(SHARED_EXTENSION);
+    }
+
     /**
      * Evaluates the compression of a file based on its path. Returns true when the path represents a compressed file.
      */
@@ -185,7 +536,7 @@ public class FileLoader {
             // Avoid startsWith call when path has already been checked
             return compressionReference.get(path);
         } else {
-            if(path.startsWith(COMP_EXTENSION, path.length() - COMP_EXTENSION.length())) {
+            if(path.startsWith(COMP_EXTENSION, path.length() - COMP_EXTENSION.length()) || isSharedFormat(path)) {
                 compressionReference.put(path, true);
                 return true;
             } else {
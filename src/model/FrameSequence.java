@@ -0,0 +1,574 @@
+package model;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The FrameSequence class stores a sequence of slowly changing frames of the same dimension in a single file, writing
+ * most frames as the difference from the frame before them rather than as a whole image.
+ *
+ * <p>A sequence begins with the four bytes "RITS", a version byte, and the image side length as a four byte integer,
+ * followed by the frames. Keyframes are written with {@link EntropyCodec} and depend on no other frame. Every other
+ * frame is a delta: the preorder of the current tree, compared structurally with the tree of the previous frame, in
+ * which each node is one of</p>
+ * <ul>
+ *     <li>SAME: the square is unchanged from the previous frame</li>
+ *     <li>SPLIT: the square changed in part, and its four quadrants follow</li>
+ *     <li>LEAF: the square changed to the single color in the following byte</li>
+ * </ul>
+ * <p>so a delta holds only the subtrees that changed and the path from the root to each of them. A trailing index lists
+ * the offset, length, and kind of every frame, and the sequence ends with the offset of the index and the four bytes
+ * "RITS" once more.</p>
+ *
+ * <p>Frames may be decoded as trees, which share every unchanged subtree with the previous frame, or played back into a
+ * reusable pixel buffer by a {@link Player}, which repaints only the squares that changed. Seeking decodes the nearest
+ * keyframe at or before the requested frame and applies the deltas after it.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class FrameSequence implements Closeable {
+
+    /** The bytes that begin and end every sequence. **/
+    private static final byte[] MAGIC = { 'R', 'I', 'T', 'S' };
+
+    /** The version of the format written by this class. **/
+    private static final int VERSION = 1;
+
+    /** The length of the header, and of the trailer, which holds the index offset and the magic bytes. **/
+    private static final int HEADER_LENGTH = MAGIC.length + 1 + Integer.BYTES, TRAILER_LENGTH = Long.BYTES + MAGIC.length;
+
+    /** The kinds of frames. **/
+    private static final byte KEYFRAME = 0, DELTA = 1;
+
+    /** The kinds of delta nodes. **/
+    private static final byte SAME = 0, SPLIT = 1, LEAF = 2;
+
+    /** The number of frames from one keyframe to the next used when none is provided. **/
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 30;
+
+    /** The sequence mapped in full, or null when it is too large to be mapped at once and frames are mapped separately. **/
+    private final ByteBuffer mapped;
+
+    private final FileChannel channel;
+
+    private final String path;
+
+    private final int dimension;
+
+    /** The offset, length, and kind of each frame. **/
+    private final long[] offsets;
+
+    private final int[] lengths;
+
+    private final byte[] kinds;
+
+    private FrameSequence(String path, FileChannel channel, ByteBuffer mapped, int dimension, long[] offsets, int[] lengths, byte[] kinds) {
+        this.path = path;
+        this.channel = channel;
+        this.mapped = mapped;
+        this.dimension = dimension;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.kinds = kinds;
+    }
+
+    /**
+     * Opens and maps the sequence at the provided path, reading its index.
+     *
+     * @throws LoaderException.UnreadablePathException Thrown when the provided path cannot be read
+     * @throws LoaderException.CorruptSequenceException Thrown when the file is not a valid sequence
+     */
+    public static FrameSequence open(String path) throws IOException, LoaderException {
+        File file = new File(path);
+        if (!file.exists() || file.isDirectory()) {
+            throw new LoaderException.UnreadablePathException(path);
+        }
+
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_LENGTH + Integer.BYTES + TRAILER_LENGTH) {
+                throw new LoaderException.CorruptSequenceException(path, "file is too short");
+            }
+
+            ByteBuffer mapped = size <= Integer.MAX_VALUE ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+
+            ByteBuffer trailer = region(channel, mapped, size - TRAILER_LENGTH, TRAILER_LENGTH);
+            long indexOffset = trailer.getLong(0);
+            ByteBuffer header = region(channel, mapped, 0, HEADER_LENGTH);
+            if (!hasMagic(trailer, Long.BYTES) || !hasMagic(header, 0)) {
+                throw new LoaderException.CorruptSequenceException(path, "missing sequence header");
+            }
+            if (header.get(MAGIC.length) != VERSION) {
+                throw new LoaderException.CorruptSequenceException(path, "unsupported version " + header.get(MAGIC.length));
+            }
+            int dimension = header.getInt(MAGIC.length + 1);
+            if (dimension <= 0 || (dimension & (dimension - 1)) != 0) {
+                throw new LoaderException.CorruptSequenceException(path, "dimension " + dimension + " is not a power of two");
+            }
+            if (indexOffset < HEADER_LENGTH || size - TRAILER_LENGTH < indexOffset) {
+                throw new LoaderException.CorruptSequenceException(path, "index offset " + indexOffset + " is out of bounds");
+            }
+
+            // Read the index
+            ByteBuffer index = region(channel, mapped, indexOffset, (int) (size - TRAILER_LENGTH - indexOffset));
+            try {
+                int count = index.getInt();
+                if (count < 0 || index.remaining() / (Long.BYTES + Integer.BYTES + 1) < count) {
+                    throw new LoaderException.CorruptSequenceException(path, "invalid frame count " + count);
+                }
+
+                long[] offsets = new long[count];
+                int[] lengths = new int[count];
+                byte[] kinds = new byte[count];
+                for (int i = 0; i < count; ++ i) {
+                    offsets[i] = index.getLong();
+                    lengths[i] = index.getInt();
+                    kinds[i] = index.get();
+
+                    if (offsets[i] < HEADER_LENGTH || lengths[i] < 0 || indexOffset < offsets[i] + lengths[i]) {
+                        throw new LoaderException.CorruptSequenceException(path, "frame " + i + " is out of bounds");
+                    }
+                    if (kinds[i] != KEYFRAME && (kinds[i] != DELTA || i == 0)) {
+                        throw new LoaderException.CorruptSequenceException(path, "frame " + i + " has invalid kind " + kinds[i]);
+                    }
+                }
+
+                return new FrameSequence(path, channel, mapped, dimension, offsets, lengths, kinds);
+            } catch (RuntimeException e) {
+                throw new LoaderException.CorruptSequenceException(path, "truncated index");
+            }
+        } catch (IOException | LoaderException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a sequence at the provided path to which frames of the provided dimension are appended, with a keyframe
+     * every keyframeInterval frames.
+     */
+    public static Writer create(String path, int dimension, int keyframeInterval) throws IOException {
+        if (dimension <= 0 || (dimension & (dimension - 1)) != 0) {
+            throw new IllegalArgumentException("Image dimension " + dimension + " is not a power of two");
+        }
+        if (keyframeInterval < 1) {
+            throw new IllegalArgumentException("Keyframe interval " + keyframeInterval + " is not positive");
+        }
+        return new Writer(path, dimension, keyframeInterval);
+    }
+
+    /**
+     * Provides the delta of a frame from the frame before it, comparing their trees structurally.
+     */
+    public static byte[] delta(RITQTNode previous, RITQTNode current) {
+        DeltaBuffer out = new DeltaBuffer();
+        if (delta(previous, current, out)) {
+            out.write(SAME);
+        }
+        return Arrays.copyOf(out.bytes, out.size);
+    }
+
+    /**
+     * Recursively writes the delta of a subtree from the subtree covering the same square of the previous frame.
+     * Returns true, without writing anything, when the square is unchanged.
+     */
+    private static boolean delta(RITQTNode previous, RITQTNode current, DeltaBuffer out) {
+        if (previous == current) {
+            return true;
+        }
+
+        if (0 <= current.getVal()) {
+            if (previous.getVal() == current.getVal()) {
+                return true;
+            }
+            out.write(LEAF);
+            out.write(current.getVal());
+            return false;
+        }
+
+        // A previous leaf covers each quadrant of the current split node in full
+        boolean leaf = 0 <= previous.getVal();
+        RITQTNode[] quadrants = { current.getUpperLeft(), current.getUpperRight(), current.getLowerLeft(), current.getLowerRight() };
+        RITQTNode[] previousQuadrants = leaf ? new RITQTNode[] { previous, previous, previous, previous }
+                : new RITQTNode[] { previous.getUpperLeft(), previous.getUpperRight(), previous.getLowerLeft(), previous.getLowerRight() };
+
+        // The split is written first and withdrawn if every quadrant turns out to be unchanged
+        int start = out.size;
+        out.write(SPLIT);
+        boolean same = true;
+        for (int i = 0; i < 4; ++ i) {
+            if (delta(previousQuadrants[i], quadrants[i], out)) {
+                out.write(SAME);
+            } else {
+                same = false;
+            }
+        }
+
+        if (same) {
+            out.size = start;
+        }
+        return same;
+    }
+
+    /**
+     * The DeltaBuffer class is a growable array of bytes from which the most recent bytes can be withdrawn in constant
+     * time.
+     */
+    private static class DeltaBuffer {
+
+        private byte[] bytes = new byte[64];
+
+        private int size;
+
+        private void write(int b) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, size * 2);
+            }
+            bytes[size ++] = (byte) b;
+        }
+    }
+
+    /**
+     * Applies a delta to the tree of the previous frame, providing the tree of the current frame. Unchanged subtrees
+     * are shared with the previous tree rather than copied.
+     *
+     * @throws LoaderException.MalformedTreeException Thrown when the delta is malformed or does not fit the image
+     */
+    public static RITQTNode applyDelta(RITQTNode previous, int dimension, ByteBuffer delta) throws LoaderException.MalformedTreeException {
+        try {
+            int[] cursor = { delta.position() };
+            RITQTNode root = applyDelta(previous, dimension, delta, cursor);
+            if (cursor[0] != delta.limit()) {
+                throw new LoaderException.MalformedTreeException("Trailing bytes after frame delta");
+            }
+            return root;
+        } catch (IndexOutOfBoundsException e) {
+            throw new LoaderException.MalformedTreeException("Truncated frame delta");
+        }
+    }
+
+    private static RITQTNode applyDelta(RITQTNode previous, int size, ByteBuffer delta, int[] cursor) throws LoaderException.MalformedTreeException {
+        byte kind = delta.get(cursor[0] ++);
+        if (kind == SAME) {
+            return previous;
+        } else if (kind == LEAF) {
+            return new RITQTNode(delta.get(cursor[0] ++) & 0xFF);
+        } else if (kind != SPLIT || size == 1) {
+            throw new LoaderException.MalformedTreeException("Invalid frame delta node " + kind + " of size " + size);
+        }
+
+        boolean leaf = 0 <= previous.getVal();
+        int subDim = size / 2;
+        return QuadTree.join(
+                applyDelta(leaf ? previous : previous.getUpperLeft(),  subDim, delta, cursor),
+                applyDelta(leaf ? previous : previous.getUpperRight(), subDim, delta, cursor),
+                applyDelta(leaf ? previous : previous.getLowerLeft(),  subDim, delta, cursor),
+                applyDelta(leaf ? previous : previous.getLowerRight(), subDim, delta, cursor));
+    }
+
+    /**
+     * Provides the tree of a frame, decoded from the nearest keyframe at or before it.
+     *
+     * @throws LoaderException.MalformedTreeException Thrown when a frame is malformed
+     */
+    public RITQTNode tree(int frame) throws IOException, LoaderException.MalformedTreeException {
+        checkFrame(frame);
+
+        int keyframe = keyframeBefore(frame);
+        RITQTNode root = EntropyCodec.decode(keyframeBytes(keyframe, null));
+        for (int i = keyframe + 1; i <= frame; ++ i) {
+            root = applyDelta(root, dimension, view(i));
+        }
+        return root;
+    }
+
+    /**
+     * Provides a player that decodes this sequence into its own pixel buffer.
+     */
+    public Player player() {
+        return new Player();
+    }
+
+    /**
+     * Provides the nearest keyframe at or before a frame.
+     */
+    public int keyframeBefore(int frame) {
+        checkFrame(frame);
+        while (kinds[frame] != KEYFRAME) {
+            frame --;
+        }
+        return frame;
+    }
+
+    /**
+     * Returns true when a frame is a keyframe.
+     */
+    public boolean isKeyframe(int frame) {
+        checkFrame(frame);
+        return kinds[frame] == KEYFRAME;
+    }
+
+    /**
+     * Provides the number of bytes a frame occupies in the sequence.
+     */
+    public int frameLength(int frame) {
+        checkFrame(frame);
+        return lengths[frame];
+    }
+
+    /** Access the number of frames. **/
+    public int frameCount() {
+        return offsets.length;
+    }
+
+    /** Access dimension. **/
+    public int dimension() {
+        return dimension;
+    }
+
+    /** Access path. **/
+    public String path() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void checkFrame(int frame) {
+        if (frame < 0 || offsets.length <= frame) {
+            throw new IndexOutOfBoundsException("Frame " + frame + " is not in a sequence of " + offsets.length + " frames");
+        }
+    }
+
+    /**
+     * Provides a read-only view of the bytes of a frame without copying them.
+     */
+    private ByteBuffer view(int frame) throws IOException {
+        return region(channel, mapped, offsets[frame], lengths[frame]);
+    }
+
+    /**
+     * Copies the bytes of a keyframe into the provided buffer, or a new buffer when it is null or of a different length,
+     * checking that the keyframe has the dimension of the sequence.
+     *
+     * @throws LoaderException.MalformedTreeException Thrown when the keyframe has an invalid header or another dimension
+     */
+    private byte[] keyframeBytes(int frame, byte[] buffer) throws IOException, LoaderException.MalformedTreeException {
+        if (buffer == null || buffer.length != lengths[frame]) {
+            buffer = new byte[lengths[frame]];
+        }
+        view(frame).get(buffer);
+
+        if (EntropyCodec.uncompressedSize(buffer) != dimension * dimension) {
+            throw new LoaderException.MalformedTreeException("Keyframe " + frame + " does not match the sequence dimension " + dimension);
+        }
+        return buffer;
+    }
+
+    /**
+     * Provides a region of the sequence, from the full mapping when there is one and otherwise by mapping the region.
+     */
+    private static ByteBuffer region(FileChannel channel, ByteBuffer mapped, long offset, int length) throws IOException {
+        if (mapped != null) {
+            return mapped.slice((int) offset, length);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+
+    private static boolean hasMagic(ByteBuffer buffer, int offset) {
+        for (int i = 0; i < MAGIC.length; ++ i) {
+            if (buffer.get(offset + i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The Writer class appends frames to a new sequence, holding the tree of the last frame to compare the next one with.
+     * The index is written when the writer is closed.
+     */
+    public static class Writer implements Closeable {
+
+        private final DataOutputStream out;
+
+        private final int dimension, keyframeInterval;
+
+        /** The offset, length, and kind of each frame written. **/
+        private long[] offsets = new long[16];
+
+        private int[] lengths = new int[16];
+
+        private byte[] kinds = new byte[16];
+
+        private int count;
+
+        private long offset = HEADER_LENGTH;
+
+        private RITQTNode previous;
+
+        private Writer(String path, int dimension, int keyframeInterval) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16));
+            this.dimension = dimension;
+            this.keyframeInterval = keyframeInterval;
+
+            out.write(MAGIC);
+            out.write(VERSION);
+            out.writeInt(dimension);
+        }
+
+        /**
+         * Appends a frame, as a keyframe when the interval since the last keyframe has passed and otherwise as a delta.
+         *
+         * @return True when the frame was written as a keyframe
+         */
+        public boolean append(RITQTNode root) throws IOException {
+            boolean keyframe = count % keyframeInterval == 0;
+            byte[] bytes = keyframe ? EntropyCodec.encode(root, dimension * dimension) : delta(previous, root);
+
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+                lengths = Arrays.copyOf(lengths, count * 2);
+                kinds = Arrays.copyOf(kinds, count * 2);
+            }
+            offsets[count] = offset;
+            lengths[count] = bytes.length;
+            kinds[count] = keyframe ? KEYFRAME : DELTA;
+            count ++;
+
+            out.write(bytes);
+            offset += bytes.length;
+            previous = root;
+            return keyframe;
+        }
+
+        /** Access the number of frames written. **/
+        public int frameCount() {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (DataOutputStream out = this.out) {
+                // The index and trailer follow the frames
+                out.writeInt(count);
+                for (int i = 0; i < count; ++ i) {
+                    out.writeLong(offsets[i]);
+                    out.writeInt(lengths[i]);
+                    out.write(kinds[i]);
+                }
+                out.writeLong(offset);
+                out.write(MAGIC);
+            }
+        }
+    }
+
+    /**
+     * The Player class decodes the frames of a sequence, one at a time, into a single row-major pixel buffer. Keyframes
+     * are decoded with a reused {@link EntropyCodec.Decoder}, and deltas repaint only the squares that changed without
+     * allocating.
+     */
+    public class Player {
+
+        private final int[] pixels = new int[dimension * dimension];
+
+        private final EntropyCodec.Decoder decoder = new EntropyCodec.Decoder();
+
+        private final PixelKernels kernels = PixelKernels.preferred();
+
+        /** The bytes of the last keyframe decoded, reused by the next keyframe of equal length. **/
+        private byte[] keyframe;
+
+        /** The frame held by the pixel buffer, or -1 before the first frame. **/
+        private int frame = -1;
+
+        private Player() {
+        }
+
+        /**
+         * Decodes the next frame into the pixel buffer.
+         *
+         * @return False when the last frame has already been decoded
+         * @throws LoaderException.MalformedTreeException Thrown when the frame is malformed
+         */
+        public boolean next() throws IOException, LoaderException.MalformedTreeException {
+            if (frame + 1 == offsets.length) {
+                return false;
+            }
+            decode(frame + 1);
+            return true;
+        }
+
+        /**
+         * Decodes a frame into the pixel buffer, starting from the nearest keyframe at or before it unless the frame is
+         * later than the one the buffer already holds.
+         *
+         * @throws LoaderException.MalformedTreeException Thrown when a frame is malformed
+         */
+        public void seek(int target) throws IOException, LoaderException.MalformedTreeException {
+            int keyframe = keyframeBefore(target);
+            int from = frame < keyframe || target < frame ? keyframe : frame + 1;
+            for (int i = from; i <= target; ++ i) {
+                decode(i);
+            }
+        }
+
+        private void decode(int target) throws IOException, LoaderException.MalformedTreeException {
+            if (kinds[target] == KEYFRAME) {
+                keyframe = keyframeBytes(target, keyframe);
+                decoder.decodeInto(keyframe, pixels);
+            } else {
+                ByteBuffer delta = view(target);
+                try {
+                    int[] cursor = { 0 };
+                    paint(delta, cursor, 0, 0, dimension);
+                    if (cursor[0] != delta.limit()) {
+                        throw new LoaderException.MalformedTreeException("Trailing bytes after the delta of frame " + target);
+                    }
+                } catch (IndexOutOfBoundsException e) {
+                    throw new LoaderException.MalformedTreeException("Truncated delta of frame " + target);
+                }
+            }
+            frame = target;
+        }
+
+        /**
+         * Recursively repaints the square (row, col, size) of the pixel buffer from the delta at the cursor.
+         */
+        private void paint(ByteBuffer delta, int[] cursor, int row, int col, int size) throws LoaderException.MalformedTreeException {
+            byte kind = delta.get(cursor[0] ++);
+            if (kind == LEAF) {
+                kernels.fill(pixels, dimension, row, col, size, delta.get(cursor[0] ++) & 0xFF);
+            } else if (kind == SPLIT && size > 1) {
+                int subDim = size / 2;
+                paint(delta, cursor, row,          col,          subDim);
+                paint(delta, cursor, row,          col + subDim, subDim);
+                paint(delta, cursor, row + subDim, col,          subDim);
+                paint(delta, cursor, row + subDim, col + subDim, subDim);
+            } else if (kind != SAME) {
+                throw new LoaderException.MalformedTreeException("Invalid frame delta node " + kind + " of size " + size);
+            }
+        }
+
+        /** Access the pixel buffer, which holds the current frame in row-major order. **/
+        public int[] pixels() {
+            return pixels;
+        }
+
+        /** Access the current frame, or -1 before the first frame. **/
+        public int frame() {
+            return frame;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package model;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * The ImageArchive class packs many image files into a single archive file, so that each image can be read without
+ * opening a file of its own.
+ *
+ * <p>An archive begins with the four bytes "RITA" and a version byte, followed by the unmodified bytes of every member
+ * file. A trailing index lists the name, offset, length, image dimension, and CRC32 checksum of each member, and the
+ * archive ends with the offset of the index and the four bytes "RITA" once more. Members may be in any of the image
+ * formats read by {@link FileLoader}, which is chosen by the extension of their names.</p>
+ *
+ * <p>An open archive is memory-mapped and its index is loaded into a hash table, so a member is found by name in
+ * constant time and read without any system call. Members are verified against their checksums as they are read. Open
+ * archives may be read from any number of threads.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class ImageArchive implements Closeable {
+
+    /** The bytes that begin and end every archive. **/
+    private static final byte[] MAGIC = { 'R', 'I', 'T', 'A' };
+
+    /** The version of the format written by this class. **/
+    private static final int VERSION = 1;
+
+    /** The length of the header and of the trailer, which holds the index offset and the magic bytes. **/
+    private static final int HEADER_LENGTH = MAGIC.length + 1, TRAILER_LENGTH = Long.BYTES + MAGIC.length;
+
+    /** The archive mapped in full, or null when it is too large to be mapped at once and members are mapped separately. **/
+    private final ByteBuffer mapped;
+
+    private final FileChannel channel;
+
+    private final String path;
+
+    /** The members of the archive by name, and in the order they were written. **/
+    private final Map<String, Entry> entries;
+
+    private final List<Entry> ordered;
+
+    private ImageArchive(String path, FileChannel channel, ByteBuffer mapped, List<Entry> ordered) {
+        this.path = path;
+        this.channel = channel;
+        this.mapped = mapped;
+        this.ordered = Collections.unmodifiableList(ordered);
+        this.entries = new HashMap<>(ordered.size() * 2);
+        for (Entry entry : ordered) {
+            entries.put(entry.name, entry);
+        }
+    }
+
+    /**
+     * Opens and maps the archive at the provided path, reading its index.
+     *
+     * @throws LoaderException.UnreadablePathException Thrown when the provided path cannot be read
+     * @throws LoaderException.CorruptArchiveException Thrown when the file is not a valid archive
+     */
+    public static ImageArchive open(String path) throws IOException, LoaderException {
+        File file = new File(path);
+        if (!file.exists() || file.isDirectory()) {
+            throw new LoaderException.UnreadablePathException(path);
+        }
+
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_LENGTH + Integer.BYTES + TRAILER_LENGTH) {
+                throw new LoaderException.CorruptArchiveException(path, "file is too short");
+            }
+
+            ByteBuffer mapped = size <= Integer.MAX_VALUE ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+
+            ByteBuffer trailer = region(channel, mapped, size - TRAILER_LENGTH, TRAILER_LENGTH);
+            long indexOffset = trailer.getLong(0);
+            ByteBuffer header = region(channel, mapped, 0, HEADER_LENGTH);
+            if (!hasMagic(trailer, Long.BYTES) || !hasMagic(header, 0)) {
+                throw new LoaderException.CorruptArchiveException(path, "missing archive header");
+            }
+            if (header.get(MAGIC.length) != VERSION) {
+                throw new LoaderException.CorruptArchiveException(path, "unsupported version " + header.get(MAGIC.length));
+            }
+            if (indexOffset < HEADER_LENGTH || size - TRAILER_LENGTH < indexOffset) {
+                throw new LoaderException.CorruptArchiveException(path, "index offset " + indexOffset + " is out of bounds");
+            }
+
+            // Read the index
+            ByteBuffer index = region(channel, mapped, indexOffset, (int) (size - TRAILER_LENGTH - indexOffset));
+            List<Entry> ordered = new ArrayList<>();
+            try {
+                int count = index.getInt();
+                for (int i = 0; i < count; ++ i) {
+                    byte[] name = new byte[index.getShort() & 0xFFFF];
+                    index.get(name);
+
+                    Entry entry = new Entry(new String(name, StandardCharsets.UTF_8), index.getLong(), index.getInt(), index.getInt(), index.getInt());
+                    if (entry.offset < HEADER_LENGTH || indexOffset < entry.offset + entry.length || entry.length < 0) {
+                        throw new LoaderException.CorruptArchiveException(path, "entry " + entry.name + " is out of bounds");
+                    }
+                    ordered.add(entry);
+                }
+            } catch (RuntimeException e) {
+                throw new LoaderException.CorruptArchiveException(path, "truncated index");
+            }
+
+            return new ImageArchive(path, channel, mapped, ordered);
+        } catch (IOException | LoaderException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes an archive to the provided path holding each of the provided member files under its name. Members are
+     * written in the iteration order of the map.
+     *
+     * @param members The path of each member file by the name it is given in the archive
+     * @throws LoaderException.UnreadablePathException Thrown when a member file cannot be read
+     * @throws LoaderException.CorruptArchiveException Thrown when a member name is invalid or a member is not an image
+     */
+    public static void create(String path, Map<String, String> members) throws IOException, LoaderException {
+        List<Entry> ordered = new ArrayList<>();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16))) {
+            out.write(MAGIC);
+            out.write(VERSION);
+            long offset = HEADER_LENGTH;
+
+            for (Map.Entry<String, String> member : members.entrySet()) {
+                String name = member.getKey();
+                if (name.isEmpty() || name.contains(FileLoader.ENTRY_SEPARATOR) || 0xFFFF < name.getBytes(StandardCharsets.UTF_8).length) {
+                    throw new LoaderException.CorruptArchiveException(path, "invalid entry name " + name);
+                }
+
+                File file = new File(member.getValue());
+                if (!file.exists() || file.isDirectory()) {
+                    throw new LoaderException.UnreadablePathException(member.getValue());
+                }
+                byte[] bytes = Files.readAllBytes(file.toPath());
+
+                CRC32 crc = new CRC32();
+                crc.update(bytes);
+                ordered.add(new Entry(name, offset, bytes.length, dimensionOf(name, bytes), (int) crc.getValue()));
+
+                out.write(bytes);
+                offset += bytes.length;
+            }
+
+            // The index and trailer follow the members
+            out.writeInt(ordered.size());
+            for (Entry entry : ordered) {
+                byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(name.length);
+                out.write(name);
+                out.writeLong(entry.offset);
+                out.writeInt(entry.length);
+                out.writeInt(entry.dimension);
+                out.writeInt(entry.checksum);
+            }
+            out.writeLong(offset);
+            out.write(MAGIC);
+        }
+    }
+
+    /**
+     * Provides the member with the provided name, or null when there is no such member.
+     */
+    public Entry entry(String name) {
+        return entries.get(name);
+    }
+
+    /** Access ordered entries. **/
+    public List<Entry> entries() {
+        return ordered;
+    }
+
+    /** Access path. **/
+    public String path() {
+        return path;
+    }
+
+    /**
+     * Provides a read-only view of the bytes of a member without copying them. The bytes are not verified.
+     */
+    public ByteBuffer view(Entry entry) throws IOException {
+        return region(channel, mapped, entry.offset, entry.length);
+    }
+
+    /**
+     * Reads the bytes of the member with the provided name, verifying them against the checksum in the index.
+     *
+     * @throws LoaderException.UnreadablePathException Thrown when the archive has no member with the provided name
+     * @throws LoaderException.CorruptArchiveException Thrown when the bytes of the member do not match its checksum
+     */
+    public byte[] read(String name) throws IOException, LoaderException {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            throw new LoaderException.UnreadablePathException(path + FileLoader.ENTRY_SEPARATOR + name);
+        }
+
+        byte[] bytes = new byte[entry.length];
+        view(entry).get(bytes);
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        if ((int) crc.getValue() != entry.checksum) {
+            throw new LoaderException.CorruptArchiveException(path, "checksum mismatch for entry " + name);
+        }
+        return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Provides a region of the archive, from the full mapping when there is one and otherwise by mapping the region.
+     */
+    private static ByteBuffer region(FileChannel channel, ByteBuffer mapped, long offset, int length) throws IOException {
+        if (mapped != null) {
+            return mapped.slice((int) offset, length);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+
+    private static boolean hasMagic(ByteBuffer buffer, int offset) {
+        for (int i = 0; i < MAGIC.length; ++ i) {
+            if (buffer.get(offset + i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Provides the side length of the image held by a member file, from its size header or its number of values.
+     *
+     * @throws LoaderException.CorruptArchiveException Thrown when the member is not an image
+     */
+    private static int dimensionOf(String name, byte[] bytes) throws LoaderException {
+        try {
+            if (FileLoader.isEntropyFormat(name)) {
+                return (int) Math.sqrt(EntropyCodec.uncompressedSize(bytes));
+            }
+            if (BinaryImage.isBinaryImage(name)) {
+                // Binary images are padded to a power of two square when they are decoded
+                return (int) Math.sqrt(BinaryImage.decode(ByteBuffer.wrap(bytes), name).length);
+            }
+
+            String text = new String(bytes, StandardCharsets.US_ASCII);
+            if (name.endsWith(".txt")) {
+                // Uncompressed images have no size header
+                return (int) Math.sqrt(text.lines().count());
+            }
+            int end = text.indexOf('\n');
+            return (int) Math.sqrt(Integer.parseInt((end < 0 ? text : text.substring(0, end)).trim()));
+        } catch (NumberFormatException | LoaderException.MalformedTreeException | LoaderException.MalformedImageException e) {
+            throw new LoaderException.CorruptArchiveException(name, "member is not an image: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The Entry class describes a single member of an archive.
+     */
+    public static final class Entry {
+
+        private final String name;
+
+        private final long offset;
+
+        private final int length, dimension, checksum;
+
+        private Entry(String name, long offset, int length, int dimension, int checksum) {
+            this.name = name;
+            this.offset = offset;
+            this.length = length;
+            this.dimension = dimension;
+            this.checksum = checksum;
+        }
+
+        /** Access name. **/
+        public String name() {
+            return name;
+        }
+
+        /** Access offset. **/
+        public long offset() {
+            return offset;
+        }
+
+        /** Access length. **/
+        public int length() {
+            return length;
+        }
+
+        /** Access dimension. **/
+        public int dimension() {
+            return dimension;
+        }
+
+        /** Access checksum. **/
+        public int checksum() {
+            return checksum;
+        }
+    }
+}
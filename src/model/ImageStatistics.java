@@ -0,0 +1,247 @@
+package model;
+
+import java.util.List;
+
+/**
+ * The ImageStatistics class accumulates area-weighted statistics about the colors of an image: a histogram, the mean,
+ * the variance, and the minimum and maximum colors.
+ *
+ * <p>Statistics are accumulated from regions of a single color using {@link ImageStatistics#add(int, long)}, so any
+ * representation that can enumerate its leaves can be summarized in time proportional to its number of leaves. Methods
+ * are provided to summarize a tree of {@link RITQTNode} instances and the preorder contents of a compressed image file
+ * directly, alongside summaries of the four quadrants of the image.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class ImageStatistics {
+
+    /** The area covered by each color value [0, 255]. **/
+    private final long[] histogram = new long[256];
+
+    /** The total area and the area-weighted sums of colors and squared colors. **/
+    private long area, sum, sumSquares;
+
+    /** Summaries of the upper left, upper right, lower left, and lower right quadrants, when available. **/
+    private ImageStatistics[] quadrants;
+
+    /**
+     * Summarizes a QuadTree data structure representing an image with the provided side length.
+     */
+    public static ImageStatistics of(RITQTNode root, int dimension) {
+        ImageStatistics statistics = new ImageStatistics();
+
+        if (dimension < 2) {
+            statistics.addTree(root, dimension);
+            return statistics;
+        }
+
+        // A leaf root covers all four quadrants with one color
+        RITQTNode[] children = 0 <= root.getVal()
+                ? new RITQTNode[] { root, root, root, root }
+                : new RITQTNode[] { root.getUpperLeft(), root.getUpperRight(), root.getLowerLeft(), root.getLowerRight() };
+
+        statistics.quadrants = new ImageStatistics[4];
+        for (int q = 0; q < 4; ++ q) {
+            statistics.quadrants[q] = new ImageStatistics();
+            statistics.quadrants[q].addTree(children[q], dimension / 2);
+            statistics.merge(statistics.quadrants[q]);
+        }
+
+        return statistics;
+    }
+
+    /**
+     * Summarizes the preorder contents of a compressed image file without building a tree. The list must not include
+     * the uncompressed size that begins a compressed file.
+     *
+     * @param dimension The side length of the image
+     */
+    public static ImageStatistics ofPreorder(List<Integer> preorder, int dimension) {
+        ImageStatistics statistics = new ImageStatistics();
+        int[] cursor = { 0 };
+
+        if (dimension < 2 || 0 <= preorder.get(0)) {
+            statistics.addPreorder(preorder, cursor, dimension);
+            statistics.quadrants = dimension < 2 ? null : new ImageStatistics[] {
+                    statistics.scaled(4), statistics.scaled(4), statistics.scaled(4), statistics.scaled(4)
+            };
+            return statistics;
+        }
+
+        // Skip the split value of the root, then summarize each quadrant in preorder
+        cursor[0] ++;
+        statistics.quadrants = new ImageStatistics[4];
+        for (int q = 0; q < 4; ++ q) {
+            statistics.quadrants[q] = new ImageStatistics();
+            statistics.quadrants[q].addPreorder(preorder, cursor, dimension / 2);
+            statistics.merge(statistics.quadrants[q]);
+        }
+
+        return statistics;
+    }
+
+    /**
+     * Adds a region of a single color covering the provided area.
+     */
+    public void add(int value, long area) {
+        histogram[value] += area;
+        this.area += area;
+        this.sum += value * area;
+        this.sumSquares += (long) value * value * area;
+    }
+
+    /**
+     * Adds every region summarized by another instance.
+     */
+    public void merge(ImageStatistics other) {
+        for (int value = 0; value < 256; ++ value) {
+            histogram[value] += other.histogram[value];
+        }
+        area += other.area;
+        sum += other.sum;
+        sumSquares += other.sumSquares;
+    }
+
+    /**
+     * Recursively adds every leaf of a tree covering a square with the provided side length.
+     */
+    private void addTree(RITQTNode root, int dimension) {
+        if (0 <= root.getVal()) {
+            add(root.getVal(), (long) dimension * dimension);
+        } else {
+            int subDim = dimension / 2;
+
+            addTree(root.getUpperLeft(),  subDim);
+            addTree(root.getUpperRight(), subDim);
+            addTree(root.getLowerLeft(),  subDim);
+            addTree(root.getLowerRight(), subDim);
+        }
+    }
+
+    /**
+     * Recursively adds every leaf of a preorder subtree, beginning at the cursor position, that covers a square with the
+     * provided side length. The cursor is advanced past the subtree.
+     */
+    private void addPreorder(List<Integer> preorder, int[] cursor, int dimension) {
+        int value = preorder.get(cursor[0] ++);
+
+        if (0 <= value) {
+            add(value, (long) dimension * dimension);
+        } else {
+            int subDim = dimension / 2;
+            for (int q = 0; q < 4; ++ q) {
+                addPreorder(preorder, cursor, subDim);
+            }
+        }
+    }
+
+    /**
+     * Provides a copy of these statistics with every area divided by the provided divisor. This is used to summarize the
+     * quadrants of an image made of a single color.
+     */
+    private ImageStatistics scaled(int divisor) {
+        ImageStatistics statistics = new ImageStatistics();
+        for (int value = 0; value < 256; ++ value) {
+            if (histogram[value] != 0) {
+                statistics.add(value, histogram[value] / divisor);
+            }
+        }
+        return statistics;
+    }
+
+    /** Access a copy of histogram. **/
+    public long[] histogram() {
+        return histogram.clone();
+    }
+
+    /** Access area. **/
+    public long area() {
+        return area;
+    }
+
+    /**
+     * Provides the summaries of the upper left, upper right, lower left, and lower right quadrants of the image, or null
+     * when the image is a single pixel.
+     */
+    public ImageStatistics[] quadrants() {
+        return quadrants == null ? null : quadrants.clone();
+    }
+
+    /**
+     * Provides the area-weighted mean color.
+     */
+    public double mean() {
+        return area == 0 ? 0 : (double) sum / area;
+    }
+
+    /**
+     * Provides the area-weighted population variance of the colors.
+     */
+    public double variance() {
+        double mean = mean();
+        return area == 0 ? 0 : Math.max(0, (double) sumSquares / area - mean * mean);
+    }
+
+    /**
+     * Provides the area-weighted standard deviation of the colors.
+     */
+    public double standardDeviation() {
+        return Math.sqrt(variance());
+    }
+
+    /**
+     * Provides the smallest color value present, or -1 when no regions have been added.
+     */
+    public int min() {
+        for (int value = 0; value < 256; ++ value) {
+            if (histogram[value] != 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Provides the largest color value present, or -1 when no regions have been added.
+     */
+    public int max() {
+        for (int value = 255; 0 <= value; -- value) {
+            if (histogram[value] != 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Provides a line summarizing the area, mean, standard deviation, and range of the colors.
+     */
+    public String summary() {
+        return "area " + area + ", mean " + mean() + ", standard deviation " + standardDeviation() + ", min " + min() + ", max " + max();
+    }
+
+    /**
+     * Provides a report of several lines: the summary of the image, the summary of each quadrant when available, and the
+     * area of each color that is present.
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder("Image: ").append(summary()).append(System.lineSeparator());
+
+        if (quadrants != null) {
+            String[] names = { "Upper left", "Upper right", "Lower left", "Lower right" };
+            for (int q = 0; q < 4; ++ q) {
+                report.append(names[q]).append(": ").append(quadrants[q].summary()).append(System.lineSeparator());
+            }
+        }
+
+        // Print the area of each color that is present
+        report.append("Histogram:").append(System.lineSeparator());
+        for (int value = 0; value < histogram.length; ++ value) {
+            if (histogram[value] != 0) {
+                report.append(value).append(": ").append(histogram[value]).append(System.lineSeparator());
+            }
+        }
+
+        return report.toString();
+    }
+}
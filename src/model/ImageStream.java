@@ -0,0 +1,362 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The ImageStream class compresses and uncompresses images read from one stream and written to another, so that the
+ * command line programs can be placed in shell pipelines without temporary files. Since streams have no file names, the
+ * format of each side is provided explicitly rather than chosen by extension.
+ *
+ * <p>Images are processed in horizontal bands whose height is {@link BandCompressor#DEFAULT_TILE_SIZE}. When the side
+ * length of an uncompressed source is known in advance, from the header of a PGM image or as provided for a text image,
+ * the tree of each square tile of a band is built as soon as the band has been read and the band is then reused, so
+ * memory holds one band of pixels and the compressed trees of the tiles rather than the whole image. Uncompressed
+ * output is likewise extracted from the tree and written one band at a time.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class ImageStream {
+
+    /**
+     * The Format enum lists the formats that may be read from or written to a stream, by their file extensions.
+     */
+    public enum Format {
+
+        /** Uncompressed text, one color value per line in row-major order. **/
+        TXT(false),
+
+        /** Uncompressed binary PGM (P5). **/
+        PGM(false),
+
+        /** Compressed text in the plain preorder format. **/
+        RIT(true),
+
+        /** Compressed text in the shared format. **/
+        RITD(true),
+
+        /** Compressed binary in the entropy coded format. **/
+        RITE(true);
+
+        private final boolean compressed;
+
+        Format(boolean compressed) {
+            this.compressed = compressed;
+        }
+
+        /**
+         * Provides the format named by a file extension, with or without its leading period.
+         *
+         * @throws IllegalArgumentException Thrown when no format has the provided name
+         */
+        public static Format of(String name) {
+            String extension = name.startsWith(".") ? name.substring(1) : name;
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(extension)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Unknown stream format: " + name);
+        }
+
+        /** Access compressed. **/
+        public boolean isCompressed() {
+            return compressed;
+        }
+    }
+
+    /** The size of the buffers placed around streams. **/
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The largest color of an image with one byte per pixel. **/
+    private static final int MAX_COLOR = 255;
+
+    /**
+     * Compresses an uncompressed image read from a stream into a compressed image written to another stream. Neither
+     * stream is closed.
+     *
+     * @param dimension The side length of a text image when it is known in advance, or 0 to read the whole image before
+     *                  compressing it. The side length of a PGM image is read from its header.
+     * @return The side length of the image
+     * @throws LoaderException.FileDimensionException Thrown when the number of values is not a perfect square
+     * @throws LoaderException.IntegralColorException Thrown when a color value is not in the range [0, 255]
+     * @throws LoaderException.MalformedTreeException Thrown when a value is not integral, the stream ends early, or the
+     * side length of a text image is not a power of two
+     * @throws LoaderException.MalformedImageException Thrown when the header of a PGM image is invalid
+     */
+    public static int compress(InputStream in, Format from, OutputStream out, Format to, int dimension) throws IOException, LoaderException {
+        if (from.isCompressed() || !to.isCompressed()) {
+            throw new IllegalArgumentException("Compression reads an uncompressed format and writes a compressed format");
+        }
+
+        CompressedImage image;
+        if (from == Format.PGM) {
+            image = readPgm(new BufferedInputStream(in, BUFFER_SIZE));
+        } else if (0 < dimension) {
+            image = readText(new Tokenizer(in), dimension);
+        } else {
+            image = CompressedImage.fromUncompressed(in);
+        }
+
+        writeCompressed(image, out, to);
+        return image.dimension();
+    }
+
+    /**
+     * Uncompresses a compressed image read from a stream into an uncompressed image written to another stream. Neither
+     * stream is closed.
+     *
+     * @return The side length of the image
+     * @throws LoaderException.FileDimensionException Thrown when the size header is not a perfect square
+     * @throws LoaderException.IntegralColorException Thrown when a leaf value is not within the range [0, 255]
+     * @throws LoaderException.MalformedTreeException Thrown when the contents do not describe a valid QuadTree
+     */
+    public static int uncompress(InputStream in, Format from, OutputStream out, Format to) throws IOException, LoaderException {
+        if (!from.isCompressed() || to.isCompressed()) {
+            throw new IllegalArgumentException("Uncompression reads a compressed format and writes an uncompressed format");
+        }
+
+        CompressedImage image;
+        if (from == Format.RITE) {
+            byte[] data = in.readAllBytes();
+            if (!EntropyCodec.isEncoded(data)) {
+                throw new LoaderException.MalformedTreeException("Missing entropy coded header");
+            }
+            image = CompressedImage.fromCompressed(data);
+        } else {
+            // Both text formats are parsed by the shared format parser, of which the plain format is a subset
+            image = CompressedImage.fromCompressed(in);
+        }
+
+        writeUncompressed(image, out, to);
+        return image.dimension();
+    }
+
+    /**
+     * Reads a text image of a known side length in bands, building the tree of each tile as soon as its band is read.
+     */
+    private static CompressedImage readText(Tokenizer tokenizer, int dimension) throws IOException, LoaderException {
+        if ((dimension & (dimension - 1)) != 0) {
+            throw new LoaderException.MalformedTreeException("Image dimension " + dimension + " is not a power of two");
+        }
+
+        Bands bands = new Bands(dimension);
+        for (int bandRow = 0; bandRow < bands.tiles; ++ bandRow) {
+            for (int i = 0; i < bands.band.length; ++ i) {
+                if (!tokenizer.next()) {
+                    throw new LoaderException.MalformedTreeException("Stream ended after " + tokenizer.line + " of " + (long) dimension * dimension + " values");
+                }
+                if (tokenizer.value < 0 || MAX_COLOR < tokenizer.value) {
+                    throw new LoaderException.IntegralColorException(tokenizer.value);
+                }
+                bands.band[i] = (int) tokenizer.value;
+            }
+            bands.build(bandRow);
+        }
+
+        if (tokenizer.next()) {
+            throw new LoaderException.MalformedTreeException("Stream holds more than " + (long) dimension * dimension + " values");
+        }
+        return new CompressedImage(bands.join(), dimension);
+    }
+
+    /**
+     * Reads a binary PGM image in bands, padding it with black to a power of two square and rescaling its samples to
+     * the range [0, 255] as {@link BinaryImage} does.
+     */
+    private static CompressedImage readPgm(InputStream in) throws IOException, LoaderException {
+        if (!"P5".equals(token(in))) {
+            throw new LoaderException.MalformedImageException("stream", "not a binary PGM (P5) image");
+        }
+        int width = number(in, "width"), height = number(in, "height"), maxColor = number(in, "maximum color");
+        if (width < 1 || height < 1) {
+            throw new LoaderException.MalformedImageException("stream", "invalid size " + width + "x" + height);
+        }
+        if (maxColor < 1 || MAX_COLOR < maxColor) {
+            throw new LoaderException.MalformedImageException("stream", "maximum color " + maxColor + " is not one byte per pixel");
+        }
+
+        int dimension = Integer.highestOneBit(Math.max(width, height));
+        dimension = dimension < Math.max(width, height) ? dimension * 2 : dimension;
+        if (dimension <= 0 || Integer.MAX_VALUE / dimension < dimension) {
+            // Checked before the row and bands are allocated, as the header may declare any size
+            throw new LoaderException.MalformedImageException("stream", "padded dimension of " + width + "x" + height + " is too large");
+        }
+
+        Bands bands = new Bands(dimension);
+        byte[] row = new byte[width];
+        for (int bandRow = 0; bandRow < bands.tiles; ++ bandRow) {
+            Arrays.fill(bands.band, 0);
+            for (int r = 0; r < bands.tileSize; ++ r) {
+                int imageRow = bandRow * bands.tileSize + r;
+                if (height <= imageRow) {
+                    break;
+                }
+                if (in.readNBytes(row, 0, width) != width) {
+                    throw new LoaderException.MalformedImageException("stream", "ended at row " + imageRow + " of " + height);
+                }
+                for (int c = 0; c < width; ++ c) {
+                    bands.band[r * dimension + c] = BinaryImage.scale(row[c] & 0xFF, maxColor, "stream");
+                }
+            }
+            bands.build(bandRow);
+        }
+
+        return new CompressedImage(bands.join(), dimension);
+    }
+
+    /**
+     * Reads the next whitespace-separated token of a PGM header, skipping comments, and consumes the single whitespace
+     * character that ends it.
+     */
+    private static String token(InputStream in) throws IOException, LoaderException.MalformedImageException {
+        StringBuilder token = new StringBuilder();
+
+        for (int b = in.read(); b != -1; b = in.read()) {
+            if (b == '#' && token.length() == 0) {
+                // Comments run to the end of the line
+                for (b = in.read(); b != -1 && b != '\n'; b = in.read()) {
+                    // Skip the comment
+                }
+            } else if (Character.isWhitespace(b)) {
+                if (token.length() > 0) {
+                    return token.toString();
+                }
+            } else {
+                token.append((char) b);
+            }
+        }
+
+        throw new LoaderException.MalformedImageException("stream", "header ends early");
+    }
+
+    /**
+     * Reads the next positive number of a PGM header.
+     */
+    private static int number(InputStream in, String name) throws IOException, LoaderException.MalformedImageException {
+        String token = token(in);
+        try {
+            return Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            throw new LoaderException.MalformedImageException("stream", "non-integral " + name + ": " + token);
+        }
+    }
+
+    /**
+     * The Bands class holds one band of pixels and the trees of every tile read so far, and joins the tiles into a single
+     * tree once the image has been read.
+     */
+    private static class Bands {
+
+        private final int dimension, tileSize, tiles;
+
+        private final int[] band;
+
+        /** The tree of each tile, in row-major order. **/
+        private final RITQTNode[] trees;
+
+        private Bands(int dimension) {
+            this.dimension = dimension;
+            this.tileSize = Math.min(BandCompressor.DEFAULT_TILE_SIZE, dimension);
+            this.tiles = dimension / tileSize;
+            this.band = new int[tileSize * dimension];
+            this.trees = new RITQTNode[tiles * tiles];
+        }
+
+        /**
+         * Builds the tree of each tile of the band that has just been read.
+         */
+        private void build(int bandRow) {
+            for (int col = 0; col < tiles; ++ col) {
+                trees[bandRow * tiles + col] = QuadTree.fromPixels(band, dimension, 0, col * tileSize, tileSize);
+            }
+        }
+
+        /**
+         * Joins the trees of the tiles upward, four at a time, into the tree of the whole image.
+         */
+        private RITQTNode join() {
+            RITQTNode[] level = trees;
+            for (int side = tiles; side > 1; side /= 2) {
+                RITQTNode[] above = new RITQTNode[side * side / 4];
+                for (int row = 0; row < side; row += 2) {
+                    for (int col = 0; col < side; col += 2) {
+                        above[row / 2 * (side / 2) + col / 2] = QuadTree.join(
+                                level[row * side + col], level[row * side + col + 1],
+                                level[(row + 1) * side + col], level[(row + 1) * side + col + 1]);
+                    }
+                }
+                level = above;
+            }
+            return level[0];
+        }
+    }
+
+    /**
+     * Writes an image in a compressed format, as {@link CompressedImage#encode(String)} would for a file of that format.
+     */
+    private static void writeCompressed(CompressedImage image, OutputStream out, Format to) throws IOException {
+        if (to == Format.RITE) {
+            out.write(EntropyCodec.encode(image.root(), image.uncompressedSize()));
+            out.flush();
+            return;
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.US_ASCII), BUFFER_SIZE);
+        writer.write(Integer.toString(image.uncompressedSize()));
+        writer.write(System.lineSeparator());
+        if (to == Format.RITD) {
+            // Identical subtrees are only written once when they are the same instance
+            QuadTree.sharedPreorder(new NodeCache().intern(image.root()), writer, System.lineSeparator());
+        } else {
+            QuadTree.preorder(image.root(), writer, System.lineSeparator());
+        }
+        writer.flush();
+    }
+
+    /**
+     * Writes an image in an uncompressed format one band at a time, extracting each band from the tree as it is written.
+     */
+    private static void writeUncompressed(CompressedImage image, OutputStream out, Format to) throws IOException {
+        int dimension = image.dimension(), bandHeight = Math.min(BandCompressor.DEFAULT_TILE_SIZE, dimension);
+        OutputStream buffered = new BufferedOutputStream(out, BUFFER_SIZE);
+        byte[] separator = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+        if (to == Format.PGM) {
+            buffered.write(("P5\n" + dimension + " " + dimension + "\n" + MAX_COLOR + "\n").getBytes(StandardCharsets.US_ASCII));
+        }
+
+        byte[] row = new byte[to == Format.PGM ? dimension : dimension * (3 + separator.length)];
+        for (int bandRow = 0; bandRow < dimension; bandRow += bandHeight) {
+            for (int[] values : QuadTree.extractRegion(image.root(), dimension, bandRow, 0, bandHeight, dimension)) {
+                int length = 0;
+                for (int value : values) {
+                    if (to == Format.PGM) {
+                        row[length ++] = (byte) value;
+                    } else {
+                        // Write the digits of the value without building a string
+                        if (100 <= value) {
+                            row[length ++] = (byte) ('0' + value / 100);
+                        }
+                        if (10 <= value) {
+                            row[length ++] = (byte) ('0' + value / 10 % 10);
+                        }
+                        row[length ++] = (byte) ('0' + value % 10);
+                        System.arraycopy(separator, 0, row, length, separator.length);
+                        length += separator.length;
+                    }
+                }
+                buffered.write(row, 0, length);
+            }
+        }
+        buffered.flush();
+    }
+}
@@ -0,0 +1,22 @@
+package model;
+
+/**
+ * The Leaf record describes one leaf of a QuadTree data structure as the square of the image it covers and its color.
+ * The column is the x coordinate and the row is the y coordinate of the upper left pixel of the square.
+ *
+ * @param row The row of the upper left pixel of the square
+ * @param col The column of the upper left pixel of the square
+ * @param size The side length of the square
+ * @param value The color of every pixel in the square
+ *
+ * @author Samuel Henderson
+ */
+public record Leaf(int row, int col, int size, int value) {
+
+    /**
+     * Provides the number of pixels covered by this leaf.
+     */
+    public long area() {
+        return (long) size * size;
+    }
+}
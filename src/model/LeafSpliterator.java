@@ -0,0 +1,140 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * The LeafSpliterator class traverses the leaves of a QuadTree data structure in preorder, which is the order of
+ * {@link QuadTree#preorder(RITQTNode)} and of Z-order over the image.
+ *
+ * <p>Subtrees waiting to be visited are kept on a stack of parallel arrays, so the traversal itself allocates nothing
+ * per leaf. Splitting divides work along quadrant boundaries: the pending subtrees at the top of the stack, which come
+ * first in preorder, are handed to the new spliterator until they cover about half of the remaining area, and a single
+ * pending split node is first replaced by its four quadrants. Since the tree is not inspected below the pending
+ * subtrees, the area they cover is used as the estimate of the number of leaves remaining.</p>
+ *
+ * @author Samuel Henderson
+ */
+class LeafSpliterator implements Spliterator<Leaf> {
+
+    /** The pending subtrees and the squares they cover. The subtree to visit next is at the top of the stack. **/
+    private RITQTNode[] nodes;
+
+    private int[] rows, cols, sizes;
+
+    /** The number of pending subtrees. **/
+    private int depth;
+
+    /** The number of pixels covered by the pending subtrees. **/
+    private long area;
+
+    LeafSpliterator(RITQTNode root, int dimension) {
+        this(new RITQTNode[16], new int[16], new int[16], new int[16], 0);
+        push(root, 0, 0, dimension);
+    }
+
+    private LeafSpliterator(RITQTNode[] nodes, int[] rows, int[] cols, int[] sizes, int depth) {
+        this.nodes = nodes;
+        this.rows = rows;
+        this.cols = cols;
+        this.sizes = sizes;
+        this.depth = depth;
+        for (int i = 0; i < depth; ++ i) {
+            area += (long) sizes[i] * sizes[i];
+        }
+    }
+
+    private void push(RITQTNode node, int row, int col, int size) {
+        if (depth == nodes.length) {
+            nodes = Arrays.copyOf(nodes, depth * 2);
+            rows = Arrays.copyOf(rows, depth * 2);
+            cols = Arrays.copyOf(cols, depth * 2);
+            sizes = Arrays.copyOf(sizes, depth * 2);
+        }
+        nodes[depth] = node;
+        rows[depth] = row;
+        cols[depth] = col;
+        sizes[depth] = size;
+        depth ++;
+        area += (long) size * size;
+    }
+
+    /**
+     * Replaces the split node at the top of the stack with its four quadrants, the upper left quadrant on top.
+     */
+    private void expand() {
+        depth --;
+        RITQTNode node = nodes[depth];
+        int row = rows[depth], col = cols[depth], subDim = sizes[depth] / 2;
+        area -= (long) sizes[depth] * sizes[depth];
+        nodes[depth] = null;
+
+        push(node.getLowerRight(), row + subDim, col + subDim, subDim);
+        push(node.getLowerLeft(),  row + subDim, col,          subDim);
+        push(node.getUpperRight(), row,          col + subDim, subDim);
+        push(node.getUpperLeft(),  row,          col,          subDim);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Leaf> action) {
+        while (depth > 0) {
+            int top = depth - 1;
+            if (0 <= nodes[top].getVal()) {
+                Leaf leaf = new Leaf(rows[top], cols[top], sizes[top], nodes[top].getVal());
+                area -= (long) sizes[top] * sizes[top];
+                nodes[top] = null;
+                depth --;
+                action.accept(leaf);
+                return true;
+            }
+            expand();
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Leaf> action) {
+        while (tryAdvance(action)) {
+            // Visit every remaining leaf
+        }
+    }
+
+    @Override
+    public Spliterator<Leaf> trySplit() {
+        if (depth == 1 && nodes[0].getVal() < 0) {
+            expand();
+        }
+        if (depth < 2) {
+            return null;
+        }
+
+        // Hand over the subtrees that come first until they cover half of the area, keeping at least one
+        long prefixArea = 0;
+        int split = depth;
+        while (split > 1 && prefixArea * 2 < area) {
+            split --;
+            prefixArea += (long) sizes[split] * sizes[split];
+        }
+
+        int count = depth - split;
+        LeafSpliterator prefix = new LeafSpliterator(
+                Arrays.copyOfRange(nodes, split, split + Math.max(16, count)), Arrays.copyOfRange(rows, split, split + Math.max(16, count)),
+                Arrays.copyOfRange(cols, split, split + Math.max(16, count)), Arrays.copyOfRange(sizes, split, split + Math.max(16, count)), count);
+
+        Arrays.fill(nodes, split, depth, null);
+        depth = split;
+        area -= prefixArea;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return area;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | NONNULL | IMMUTABLE;
+    }
+}
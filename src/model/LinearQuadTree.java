@@ -0,0 +1,424 @@
+package model;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The LinearQuadTree class represents an image by the leaves of its QuadTree alone, without any nodes or pointers. Each
+ * leaf is stored as its locational code, its level, and its color, in three parallel arrays sorted by code.
+ *
+ * <p>The locational code of a square is the Morton (Z-order) code of its upper left pixel, which interleaves the bits
+ * of the row and column with the row bit above the column bit at each position. Z-order visits the quadrants of every
+ * square in the order upper left, upper right, lower left, lower right, so the leaves sorted by code are the leaves of
+ * the QuadTree in preorder, and the leaf of side 2^level with code c covers exactly the codes [c, c + 4^level). A pixel
+ * is therefore found by a binary search for the last leaf whose code does not exceed its own, and any interval of
+ * codes is covered by a contiguous run of leaves.</p>
+ *
+ * <p>Linear trees are encoded compactly by {@link LinearQuadTree#encode()}: consecutive leaves of a complete image are
+ * adjacent, so each code is written as its difference from the end of the previous leaf, which is almost always a
+ * single zero byte, followed by one byte for the level and one for the color.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class LinearQuadTree {
+
+    /** The bytes that begin every encoded linear tree. **/
+    private static final byte[] MAGIC = { 'R', 'I', 'T', 'L' };
+
+    /** The version of the encoding written by this class. **/
+    private static final int VERSION = 1;
+
+    /** The side length of the image. **/
+    private final int dimension;
+
+    /** The locational code, level, and color of each leaf, sorted by code. **/
+    private final long[] codes;
+
+    private final byte[] levels, colors;
+
+    private LinearQuadTree(int dimension, long[] codes, byte[] levels, byte[] colors) {
+        this.dimension = dimension;
+        this.codes = codes;
+        this.levels = levels;
+        this.colors = colors;
+    }
+
+    /**
+     * The Builder class accumulates leaves in order of their codes, growing its arrays as needed.
+     */
+    private static class Builder {
+
+        private long[] codes = new long[16];
+
+        private byte[] levels = new byte[16], colors = new byte[16];
+
+        private int size;
+
+        private void add(long code, int level, int color) {
+            if (size == codes.length) {
+                codes = Arrays.copyOf(codes, size * 2);
+                levels = Arrays.copyOf(levels, size * 2);
+                colors = Arrays.copyOf(colors, size * 2);
+            }
+            codes[size] = code;
+            levels[size] = (byte) level;
+            colors[size] = (byte) color;
+            size ++;
+        }
+
+        private LinearQuadTree build(int dimension) {
+            return new LinearQuadTree(dimension, Arrays.copyOf(codes, size), Arrays.copyOf(levels, size), Arrays.copyOf(colors, size));
+        }
+    }
+
+    /**
+     * Provides the linear tree of a QuadTree data structure representing an image with the provided side length.
+     */
+    public static LinearQuadTree fromTree(RITQTNode root, int dimension) {
+        checkDimension(dimension);
+        Builder builder = new Builder();
+        fromTree(root, builder, 0, Integer.numberOfTrailingZeros(dimension));
+        return builder.build(dimension);
+    }
+
+    /**
+     * Recursively adds the leaves of a subtree whose square begins at the provided code, in preorder.
+     */
+    private static void fromTree(RITQTNode root, Builder builder, long code, int level) {
+        if (0 <= root.getVal()) {
+            builder.add(code, level, root.getVal());
+        } else {
+            // Each quadrant covers a quarter of the codes of its parent, in Z-order
+            long quarter = 1L << (2 * (level - 1));
+            fromTree(root.getUpperLeft(),  builder, code,               level - 1);
+            fromTree(root.getUpperRight(), builder, code + quarter,     level - 1);
+            fromTree(root.getLowerLeft(),  builder, code + 2 * quarter, level - 1);
+            fromTree(root.getLowerRight(), builder, code + 3 * quarter, level - 1);
+        }
+    }
+
+    /**
+     * Provides the linear tree of a row-major pixel array without building any nodes. Quadrants are tested for
+     * uniformity through a {@link MinMaxPyramid}.
+     */
+    public static LinearQuadTree fromPixels(int[] pixels, int dimension) {
+        MinMaxPyramid pyramid = MinMaxPyramid.of(pixels, dimension);
+        Builder builder = new Builder();
+        fromPixels(pyramid, builder, 0, 0, dimension);
+        return builder.build(dimension);
+    }
+
+    /**
+     * Recursively adds the leaves of the square (row, col, size) in Z-order.
+     */
+    private static void fromPixels(MinMaxPyramid pyramid, Builder builder, int row, int col, int size) {
+        if (pyramid.isUniform(row, col, size)) {
+            builder.add(mortonCode(row, col), Integer.numberOfTrailingZeros(size), pyramid.minimum(row, col, size));
+        } else {
+            int subDim = size / 2;
+            fromPixels(pyramid, builder, row,          col,          subDim);
+            fromPixels(pyramid, builder, row,          col + subDim, subDim);
+            fromPixels(pyramid, builder, row + subDim, col,          subDim);
+            fromPixels(pyramid, builder, row + subDim, col + subDim, subDim);
+        }
+    }
+
+    /**
+     * Provides the QuadTree data structure represented by this linear tree.
+     *
+     * @throws LoaderException.MalformedTreeException Thrown when the leaves do not cover the image exactly once
+     */
+    public RITQTNode toTree() throws LoaderException.MalformedTreeException {
+        int[] cursor = { 0 };
+        RITQTNode root = toTree(cursor, 0, Integer.numberOfTrailingZeros(dimension));
+        if (cursor[0] != codes.length) {
+            throw new LoaderException.MalformedTreeException("Leaf " + cursor[0] + " lies outside of the image");
+        }
+        return root;
+    }
+
+    /**
+     * Recursively builds the subtree of the square of the provided level beginning at the provided code from the leaves
+     * beginning at the cursor.
+     */
+    private RITQTNode toTree(int[] cursor, long code, int level) throws LoaderException.MalformedTreeException {
+        int i = cursor[0];
+        if (i == codes.length || codes[i] < code) {
+            throw new LoaderException.MalformedTreeException("No leaf covers code " + code);
+        }
+
+        if (codes[i] == code && levels[i] == level) {
+            cursor[0] ++;
+            return new RITQTNode(color(i));
+        }
+        if (level == 0 || (codes[i] == code && level < levels[i])) {
+            throw new LoaderException.MalformedTreeException("Leaf " + i + " does not align with the square of code " + code);
+        }
+
+        long quarter = 1L << (2 * (level - 1));
+        return new RITQTNode(-1,
+                toTree(cursor, code,               level - 1), toTree(cursor, code + quarter,     level - 1),
+                toTree(cursor, code + 2 * quarter, level - 1), toTree(cursor, code + 3 * quarter, level - 1));
+    }
+
+    /**
+     * Provides the index of the leaf covering the provided code, or -1 when no leaf covers it.
+     */
+    public int find(long code) {
+        int index = Arrays.binarySearch(codes, code);
+        if (index < 0) {
+            // The leaf that begins before the code is the only one that may cover it
+            index = -index - 2;
+        }
+        return 0 <= index && code < end(index) ? index : -1;
+    }
+
+    /**
+     * Provides the color of the pixel at (row, col), found by binary search.
+     *
+     * @throws IllegalArgumentException Thrown when the pixel is outside of the image or not covered by a leaf
+     */
+    public int valueAt(int row, int col) {
+        if (row < 0 || col < 0 || dimension <= row || dimension <= col) {
+            throw new IllegalArgumentException("Pixel (" + row + ", " + col + ") is outside of the " + dimension + "x" + dimension + " image");
+        }
+
+        int index = find(mortonCode(row, col));
+        if (index < 0) {
+            throw new IllegalArgumentException("Pixel (" + row + ", " + col + ") is not covered by a leaf");
+        }
+        return color(index);
+    }
+
+    /**
+     * Visits, in order of their codes, every leaf that covers any code in the interval [from, to).
+     */
+    public void scan(long from, long to, LeafConsumer consumer) {
+        int index = Arrays.binarySearch(codes, from);
+        index = index < 0 ? Math.max(0, -index - 2) : index;
+
+        for (; index < codes.length && codes[index] < to; ++ index) {
+            if (from < end(index)) {
+                consumer.accept(codes[index], levels[index], color(index));
+            }
+        }
+    }
+
+    /**
+     * Converts a rectangular region of the image into a grid of pixel color values. Every pixel of the region lies
+     * between the codes of its upper left and lower right pixels, so only the leaves of that interval are visited.
+     */
+    public int[][] extractRegion(int row, int col, int height, int width) {
+        if (row < 0 || col < 0 || height < 0 || width < 0 || dimension < row + height || dimension < col + width) {
+            throw new IllegalArgumentException("Region (" + row + ", " + col + ", " + height + "x" + width + ") is outside of the " + dimension + "x" + dimension + " image");
+        }
+
+        int[][] pixelGrid = new int[height][width];
+        if (height == 0 || width == 0) {
+            return pixelGrid;
+        }
+
+        scan(mortonCode(row, col), mortonCode(row + height - 1, col + width - 1) + 1, (code, level, color) -> {
+            // Fill the intersection of the leaf and the region
+            int size = 1 << level, leafRow = row(code), leafCol = column(code);
+            for (int r = Math.max(row, leafRow); r < Math.min(row + height, leafRow + size); ++ r) {
+                int from = Math.max(col, leafCol), to = Math.min(col + width, leafCol + size);
+                if (from < to) {
+                    Arrays.fill(pixelGrid[r - row], from - col, to - col, color);
+                }
+            }
+        });
+
+        return pixelGrid;
+    }
+
+    /**
+     * Encodes this linear tree as the magic bytes, a version byte, the dimension and number of leaves, and then for each
+     * leaf the difference between its code and the end of the previous leaf as a variable-length integer, its level,
+     * and its color.
+     */
+    public byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(codes.length * 3 + 16);
+        out.writeBytes(MAGIC);
+        out.write(VERSION);
+        out.writeBytes(ByteBuffer.allocate(2 * Integer.BYTES).putInt(dimension).putInt(codes.length).array());
+
+        long expected = 0;
+        for (int i = 0; i < codes.length; ++ i) {
+            // Seven bits of the gap are written per byte, with the high bit set on every byte but the last
+            for (long gap = codes[i] - expected; ; gap >>>= 7) {
+                if (gap < 0x80) {
+                    out.write((int) gap);
+                    break;
+                }
+                out.write((int) (gap & 0x7F) | 0x80);
+            }
+            out.write(levels[i]);
+            out.write(colors[i]);
+            expected = end(i);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a linear tree encoded by {@link LinearQuadTree#encode()}.
+     *
+     * @throws LoaderException.MalformedTreeException Thrown when the data is not an encoded linear tree, or its leaves
+     * overlap, are misaligned, or lie outside of the image
+     */
+    public static LinearQuadTree decode(byte[] data) throws LoaderException.MalformedTreeException {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            in.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || in.get() != VERSION) {
+                throw new LoaderException.MalformedTreeException("Not an encoded linear quadtree");
+            }
+
+            int dimension = in.getInt(), count = in.getInt();
+            checkDimension(dimension);
+            int maxLevel = Integer.numberOfTrailingZeros(dimension);
+            if (count < 0 || in.remaining() / 3 < count) {
+                throw new LoaderException.MalformedTreeException("Invalid leaf count " + count);
+            }
+
+            long[] codes = new long[count];
+            byte[] levels = new byte[count], colors = new byte[count];
+            long expected = 0, limit = (long) dimension * dimension;
+            for (int i = 0; i < count; ++ i) {
+                long gap = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = in.get();
+                    if (63 <= shift) {
+                        throw new LoaderException.MalformedTreeException("Code gap of leaf " + i + " is too long");
+                    }
+                    gap |= (long) (b & 0x7F) << shift;
+                    if (b >= 0) {
+                        break;
+                    }
+                }
+
+                codes[i] = expected + gap;
+                levels[i] = in.get();
+                colors[i] = in.get();
+                if (levels[i] < 0 || maxLevel < levels[i] || (codes[i] & ((1L << (2 * levels[i])) - 1)) != 0) {
+                    throw new LoaderException.MalformedTreeException("Leaf " + i + " of level " + levels[i] + " is misaligned");
+                }
+
+                expected = codes[i] + (1L << (2 * levels[i]));
+                if (gap < 0 || limit < expected) {
+                    throw new LoaderException.MalformedTreeException("Leaf " + i + " lies outside of the image");
+                }
+            }
+
+            if (in.hasRemaining()) {
+                throw new LoaderException.MalformedTreeException("Trailing bytes after " + count + " leaves");
+            }
+            return new LinearQuadTree(dimension, codes, levels, colors);
+        } catch (IllegalArgumentException e) {
+            throw new LoaderException.MalformedTreeException(e.getMessage());
+        } catch (RuntimeException e) {
+            throw new LoaderException.MalformedTreeException("Truncated linear quadtree");
+        }
+    }
+
+    /**
+     * Provides the Morton code of the pixel at (row, col), interleaving the bits of the row above those of the column.
+     */
+    public static long mortonCode(int row, int col) {
+        return spread(row) << 1 | spread(col);
+    }
+
+    /**
+     * Provides the row of the pixel with the provided Morton code.
+     */
+    public static int row(long code) {
+        return compact(code >>> 1);
+    }
+
+    /**
+     * Provides the column of the pixel with the provided Morton code.
+     */
+    public static int column(long code) {
+        return compact(code);
+    }
+
+    /**
+     * Spreads the bits of a non-negative integer apart, so that bit i moves to bit 2i.
+     */
+    private static long spread(int value) {
+        long x = value & 0xFFFFFFFFL;
+        x = (x | x << 16) & 0x0000FFFF0000FFFFL;
+        x = (x | x << 8)  & 0x00FF00FF00FF00FFL;
+        x = (x | x << 4)  & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | x << 2)  & 0x3333333333333333L;
+        x = (x | x << 1)  & 0x5555555555555555L;
+        return x;
+    }
+
+    /**
+     * Gathers the even bits of a code together, reversing {@link LinearQuadTree#spread(int)}.
+     */
+    private static int compact(long code) {
+        long x = code & 0x5555555555555555L;
+        x = (x | x >>> 1)  & 0x3333333333333333L;
+        x = (x | x >>> 2)  & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | x >>> 4)  & 0x00FF00FF00FF00FFL;
+        x = (x | x >>> 8)  & 0x0000FFFF0000FFFFL;
+        x = (x | x >>> 16) & 0x00000000FFFFFFFFL;
+        return (int) x;
+    }
+
+    private static void checkDimension(int dimension) {
+        if (dimension <= 0 || (dimension & (dimension - 1)) != 0) {
+            throw new IllegalArgumentException("Image dimension " + dimension + " is not a power of two");
+        }
+    }
+
+    /**
+     * Provides the first code after the square of a leaf.
+     */
+    private long end(int index) {
+        return codes[index] + (1L << (2 * levels[index]));
+    }
+
+    private int color(int index) {
+        return colors[index] & 0xFF;
+    }
+
+    /**
+     * Provides the number of leaves.
+     */
+    public int size() {
+        return codes.length;
+    }
+
+    /** Access the locational code of a leaf. **/
+    public long code(int index) {
+        return codes[index];
+    }
+
+    /** Access the level of a leaf, which is the base 2 logarithm of its side length. **/
+    public int level(int index) {
+        return levels[index];
+    }
+
+    /** Access the color of a leaf. **/
+    public int value(int index) {
+        return color(index);
+    }
+
+    /** Access dimension. **/
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * A consumer of the leaves visited by a scan.
+     */
+    public interface LeafConsumer {
+        void accept(long code, int level, int color);
+    }
+}
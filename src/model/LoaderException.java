@@ -63,6 +63,46 @@ public class LoaderException extends Exception {
         }
     }
 
+    /**
+     * MalformedTreeExceptions should be thrown when the contents of a compressed file do not form a valid QuadTree.
+     */
+    public static class MalformedTreeException extends LoaderException {
+
+        public MalformedTreeException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * CorruptArchiveExceptions should be thrown when an archive of images or one of its members cannot be read.
+     */
+    public static class CorruptArchiveException extends LoaderException {
+
+        public CorruptArchiveException(String path, String reason) {
+            super("Corrupt archive " + path + ": " + reason);
+        }
+    }
+
+    /**
+     * CorruptSequenceExceptions should be thrown when a sequence of frames or its index cannot be read.
+     */
+    public static class CorruptSequenceException extends LoaderException {
+
+        public CorruptSequenceException(String path, String reason) {
+            super("Corrupt sequence " + path + ": " + reason);
+        }
+    }
+
+    /**
+     * MalformedImageExceptions should be thrown when a binary image file has an invalid header or too few pixels.
+     */
+    public static class MalformedImageException extends LoaderException {
+
+        public MalformedImageException(String path, String reason) {
+            super("Malformed image " + path + ": " + reason);
+        }
+    }
+
     /**
      * DirectoryCreationExceptions should be thrown during erroneous directory creations.
      */
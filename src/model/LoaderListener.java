@@ -0,0 +1,23 @@
+package model;
+
+/**
+ * The LoaderListener interface receives the exceptions caught by the secure methods of {@link FileLoader}, after they
+ * have been printed, so that the model does not depend on how a program reports errors.
+ *
+ * <p>Command line programs use {@link LoaderListener#EXIT}, which is the default. Graphical programs replace it with
+ * {@link FileLoader#setListener(LoaderListener)} to display the message and continue running.</p>
+ *
+ * @author Samuel Henderson
+ */
+@FunctionalInterface
+public interface LoaderListener {
+
+    /** The listener used by command line programs, which exits as soon as an exception is caught. **/
+    LoaderListener EXIT = message -> System.exit(-1);
+
+    /**
+     * Handles the message of an exception caught by {@link FileLoader}. The secure method that caught the exception
+     * returns an empty result when this method returns.
+     */
+    void exceptionCaught(String message);
+}
@@ -0,0 +1,268 @@
+package model;
+
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * The LossyCompressor class builds QuadTree data structures that merge a quadrant into a single leaf of its mean color
+ * whenever its pixels are close enough to that mean, rather than only when they are exactly equal.
+ *
+ * <p>Closeness is measured by a {@link Criterion}: the largest deviation of any pixel from the rounded mean, or the
+ * variance of the pixels. A tolerance of 0 under either criterion merges only uniform quadrants, so the result is the
+ * lossless tree. The sums of the colors and squared colors of every aligned square are computed once, bottom-up, along
+ * with a {@link MinMaxPyramid}, so each quadrant is tested with a few lookups and the cost of building a tree is
+ * proportional to its size.</p>
+ *
+ * <p>A tree can also be built to fit a size budget, searching for the smallest tolerance whose tree is no larger than
+ * the budget. Raising the tolerance only merges more quadrants, so the size of the tree never grows as the tolerance
+ * rises.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class LossyCompressor {
+
+    /** The largest color value, which is the peak signal of the PSNR. **/
+    private static final int MAX_COLOR = 255;
+
+    /** The number of halvings of the tolerance range when searching for a variance tolerance. **/
+    private static final int VARIANCE_SEARCH_STEPS = 32;
+
+    /**
+     * The Criterion enum enumerates the measures of how far the pixels of a quadrant are from its mean color.
+     */
+    public enum Criterion {
+
+        /** The largest absolute difference between a pixel and the rounded mean color. **/
+        DEVIATION(MAX_COLOR),
+
+        /** The population variance of the pixels. **/
+        VARIANCE(MAX_COLOR * MAX_COLOR / 4.0);
+
+        /** The tolerance at which every quadrant is merged, so that the tree is a single leaf. **/
+        private final double maxTolerance;
+
+        Criterion(double maxTolerance) {
+            this.maxTolerance = maxTolerance;
+        }
+    }
+
+    /**
+     * The Result class holds a tree built to fit a size budget, the tolerance at which it was built, and its size.
+     */
+    public static class Result {
+
+        private final RITQTNode root;
+
+        private final double tolerance;
+
+        private final long size;
+
+        private Result(RITQTNode root, double tolerance, long size) {
+            this.root = root;
+            this.tolerance = tolerance;
+            this.size = size;
+        }
+
+        /** Access root. **/
+        public RITQTNode root() {
+            return root;
+        }
+
+        /** Access tolerance. **/
+        public double tolerance() {
+            return tolerance;
+        }
+
+        /** Access size. **/
+        public long size() {
+            return size;
+        }
+    }
+
+    /** The side length of the image. **/
+    private final int dimension;
+
+    /** The pixels of the image in row-major order. **/
+    private final int[] pixels;
+
+    /** The minimum and maximum color of every aligned square. **/
+    private final MinMaxPyramid pyramid;
+
+    /** The sums of colors and of squared colors of every aligned square of each level above the pixels. **/
+    private final long[][] sums, squares;
+
+    private LossyCompressor(int[] pixels, int dimension) {
+        this.dimension = dimension;
+        this.pixels = pixels;
+        this.pyramid = MinMaxPyramid.of(pixels, dimension);
+
+        int levels = Integer.numberOfTrailingZeros(dimension) + 1;
+        this.sums = new long[levels][];
+        this.squares = new long[levels][];
+
+        for (int level = 1; level < levels; ++ level) {
+            int side = dimension >> level, lowerSide = side * 2;
+            sums[level] = new long[side * side];
+            squares[level] = new long[side * side];
+
+            for (int row = 0; row < side; ++ row) {
+                for (int col = 0; col < side; ++ col) {
+                    long sum = 0, square = 0;
+                    for (int i = 0; i < 4; ++ i) {
+                        int index = (2 * row + i / 2) * lowerSide + 2 * col + i % 2;
+                        sum += level == 1 ? pixels[index] : sums[level - 1][index];
+                        square += level == 1 ? (long) pixels[index] * pixels[index] : squares[level - 1][index];
+                    }
+                    sums[level][row * side + col] = sum;
+                    squares[level][row * side + col] = square;
+                }
+            }
+        }
+    }
+
+    /**
+     * Provides a compressor of a row-major pixel array, which must not be modified while the compressor is in use.
+     *
+     * @throws IllegalArgumentException Thrown when the dimension is not a power of two or does not match the array
+     */
+    public static LossyCompressor of(int[] pixels, int dimension) {
+        return new LossyCompressor(pixels, dimension);
+    }
+
+    /**
+     * Provides a compressor of a list of integral values that has been retrieved from an uncompressed image file.
+     */
+    public static LossyCompressor of(List<Integer> lineValues) {
+        int[] pixels = new int[lineValues.size()];
+        for (int i = 0; i < pixels.length; ++ i) {
+            pixels[i] = lineValues.get(i);
+        }
+        return of(pixels, (int) Math.sqrt(pixels.length));
+    }
+
+    /**
+     * Provides the tree in which every quadrant within the tolerance under the criterion is merged into a leaf of its
+     * rounded mean color.
+     */
+    public RITQTNode compress(Criterion criterion, double tolerance) {
+        return compress(criterion, tolerance, 0, 0, dimension);
+    }
+
+    /**
+     * Recursively builds the tree of the square (row, col, size).
+     */
+    private RITQTNode compress(Criterion criterion, double tolerance, int row, int col, int size) {
+        int min = pyramid.minimum(row, col, size), max = pyramid.maximum(row, col, size);
+        if (min == max) {
+            return new RITQTNode(min);
+        }
+
+        long area = (long) size * size, sum = sum(row, col, size);
+        int mean = (int) Math.round((double) sum / area);
+        double distance = criterion == Criterion.DEVIATION
+                ? Math.max(max - mean, mean - min)
+                : (double) squares(row, col, size) / area - ((double) sum / area) * ((double) sum / area);
+
+        if (distance <= tolerance) {
+            return new RITQTNode(mean);
+        }
+
+        int subDim = size / 2;
+        return QuadTree.join(
+                compress(criterion, tolerance, row,          col,          subDim),
+                compress(criterion, tolerance, row,          col + subDim, subDim),
+                compress(criterion, tolerance, row + subDim, col,          subDim),
+                compress(criterion, tolerance, row + subDim, col + subDim, subDim)
+        );
+    }
+
+    /**
+     * Provides the tree of the smallest tolerance under the criterion whose size, as measured by the provided function,
+     * is within the budget. When no tolerance meets the budget, the tree of a single leaf is provided.
+     *
+     * <p>Deviations of integral colors from an integral mean are integral, so every integral deviation tolerance is
+     * searched. Variances are not, so the variance tolerance is found to within a small fraction of its range.</p>
+     *
+     * @param sizeOf The size of a tree in the format in which it will be written, in bytes
+     */
+    public Result compressToSize(Criterion criterion, long budget, ToLongFunction<RITQTNode> sizeOf) {
+        // The lossless tree needs no search when it already fits
+        RITQTNode best = compress(criterion, 0);
+        long bestSize = sizeOf.applyAsLong(best);
+        if (bestSize <= budget) {
+            return new Result(best, 0, bestSize);
+        }
+
+        double low = 0, high = criterion.maxTolerance;
+        best = compress(criterion, high);
+        bestSize = sizeOf.applyAsLong(best);
+        if (budget < bestSize) {
+            return new Result(best, high, bestSize);
+        }
+
+        // The tree of the high tolerance always fits and that of the low tolerance never does
+        int step = 0;
+        while (criterion == Criterion.DEVIATION ? 1 < high - low : step ++ < VARIANCE_SEARCH_STEPS) {
+            double middle = criterion == Criterion.DEVIATION ? Math.floor((low + high) / 2) : (low + high) / 2;
+            RITQTNode tree = compress(criterion, middle);
+            long size = sizeOf.applyAsLong(tree);
+
+            if (size <= budget) {
+                high = middle;
+                best = tree;
+                bestSize = size;
+            } else {
+                low = middle;
+            }
+        }
+
+        return new Result(best, high, bestSize);
+    }
+
+    /**
+     * Provides the peak signal-to-noise ratio in decibels of the image represented by a tree against the pixels of this
+     * compressor. Each leaf contributes its squared error from the sums of its square, so no pixels are extracted. An
+     * identical image has an infinite ratio.
+     */
+    public double psnr(RITQTNode root) {
+        double meanSquaredError = (double) squaredError(root, 0, 0, dimension) / ((long) dimension * dimension);
+        return meanSquaredError == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(MAX_COLOR * MAX_COLOR / meanSquaredError);
+    }
+
+    /**
+     * Recursively provides the sum of squared differences between the pixels of the square (row, col, size) and the
+     * colors of the tree.
+     */
+    private long squaredError(RITQTNode root, int row, int col, int size) {
+        if (0 <= root.getVal()) {
+            // The sum of (p - c)^2 over the square is the sum of p^2, less 2c times the sum of p, plus the area times c^2
+            long val = root.getVal();
+            return squares(row, col, size) - 2 * val * sum(row, col, size) + (long) size * size * val * val;
+        }
+
+        int subDim = size / 2;
+        return squaredError(root.getUpperLeft(),  row,          col,          subDim)
+             + squaredError(root.getUpperRight(), row,          col + subDim, subDim)
+             + squaredError(root.getLowerLeft(),  row + subDim, col,          subDim)
+             + squaredError(root.getLowerRight(), row + subDim, col + subDim, subDim);
+    }
+
+    private long sum(int row, int col, int size) {
+        int level = Integer.numberOfTrailingZeros(size);
+        return level == 0 ? pixels[row * dimension + col] : sums[level][(row >> level) * (dimension >> level) + (col >> level)];
+    }
+
+    private long squares(int row, int col, int size) {
+        int level = Integer.numberOfTrailingZeros(size);
+        if (level == 0) {
+            long val = pixels[row * dimension + col];
+            return val * val;
+        }
+        return squares[level][(row >> level) * (dimension >> level) + (col >> level)];
+    }
+
+    /** Access dimension. **/
+    public int dimension() {
+        return dimension;
+    }
+}
@@ -0,0 +1,115 @@
+package model;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * The MinMaxPyramid class holds the minimum and maximum color of every aligned square of an image whose side length is
+ * a power of two, so that any quadrant visited while building a QuadTree can be tested for uniformity with one lookup.
+ *
+ * <p>Level 0 of the pyramid is the pixels themselves. Each level above holds one minimum and one maximum per square of
+ * twice the side length of the level below, formed from the four squares beneath it, up to the single square that
+ * covers the whole image. The pyramid holds a third more values than the image. Rows of large levels are built in
+ * parallel, since each square depends only on the level below.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class MinMaxPyramid {
+
+    /** The number of squares a level must hold before its rows are built in parallel. **/
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+    /** The side length of the image. **/
+    private final int dimension;
+
+    /** The minimum and maximum color of each square of each level, in row-major order. **/
+    private final int[][] min, max;
+
+    private MinMaxPyramid(int[] pixels, int dimension) {
+        int levels = Integer.numberOfTrailingZeros(dimension) + 1;
+
+        this.dimension = dimension;
+        this.min = new int[levels][];
+        this.max = new int[levels][];
+
+        // The pixels are both the minimum and maximum of the squares of a single pixel
+        min[0] = pixels;
+        max[0] = pixels;
+
+        for (int level = 1; level < levels; ++ level) {
+            int side = dimension >> level;
+            int[] lowerMin = min[level - 1], lowerMax = max[level - 1], levelMin = new int[side * side], levelMax = new int[side * side];
+
+            IntStream rows = IntStream.range(0, side);
+            (side * side < PARALLEL_THRESHOLD ? rows : rows.parallel()).forEach(row -> {
+                int upper = 2 * row * 2 * side, lower = upper + 2 * side;
+                for (int col = 0; col < side; ++ col) {
+                    int c = 2 * col;
+                    levelMin[row * side + col] = Math.min(Math.min(lowerMin[upper + c], lowerMin[upper + c + 1]), Math.min(lowerMin[lower + c], lowerMin[lower + c + 1]));
+                    levelMax[row * side + col] = Math.max(Math.max(lowerMax[upper + c], lowerMax[upper + c + 1]), Math.max(lowerMax[lower + c], lowerMax[lower + c + 1]));
+                }
+            });
+
+            min[level] = levelMin;
+            max[level] = levelMax;
+        }
+    }
+
+    /**
+     * Provides the pyramid of a row-major pixel array. The array is held by the pyramid as its lowest level, so it must
+     * not be modified while the pyramid is in use.
+     *
+     * @throws IllegalArgumentException Thrown when the dimension is not a power of two or does not match the array
+     */
+    public static MinMaxPyramid of(int[] pixels, int dimension) {
+        if (dimension <= 0 || (dimension & (dimension - 1)) != 0 || pixels.length != dimension * dimension) {
+            throw new IllegalArgumentException("A pyramid requires a square image whose side length is a power of two");
+        }
+        return new MinMaxPyramid(pixels, dimension);
+    }
+
+    /**
+     * Provides the pyramid of a list of integral values that has been retrieved from an uncompressed image file.
+     */
+    public static MinMaxPyramid of(List<Integer> lineValues) {
+        int[] pixels = new int[lineValues.size()];
+        for (int i = 0; i < pixels.length; ++ i) {
+            pixels[i] = lineValues.get(i);
+        }
+        return of(pixels, (int) Math.sqrt(pixels.length));
+    }
+
+    /**
+     * Determines whether every pixel of the aligned square of the provided side length whose upper left corner is at
+     * (row, col) has the same color.
+     */
+    public boolean isUniform(int row, int col, int size) {
+        return minimum(row, col, size) == maximum(row, col, size);
+    }
+
+    /**
+     * Provides the minimum color of the aligned square of the provided side length whose upper left corner is at
+     * (row, col).
+     */
+    public int minimum(int row, int col, int size) {
+        return lookup(min, row, col, size);
+    }
+
+    /**
+     * Provides the maximum color of the aligned square of the provided side length whose upper left corner is at
+     * (row, col).
+     */
+    public int maximum(int row, int col, int size) {
+        return lookup(max, row, col, size);
+    }
+
+    private int lookup(int[][] levels, int row, int col, int size) {
+        int level = Integer.numberOfTrailingZeros(size);
+        return levels[level][(row >> level) * (dimension >> level) + (col >> level)];
+    }
+
+    /** Access dimension. **/
+    public int dimension() {
+        return dimension;
+    }
+}
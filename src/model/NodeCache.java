@@ -0,0 +1,104 @@
+package model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The NodeCache class hash-conses {@link RITQTNode} instances, so that structurally identical subtrees are represented
+ * by a single shared instance. Trees built through a cache are directed acyclic graphs rather than trees, which is
+ * invisible to any method that only reads nodes, such as {@link QuadTree#extract(RITQTNode, int)}.
+ *
+ * <p>Every node provided by a cache has children that were also provided by the same cache, so two split nodes are
+ * structurally identical exactly when their children are the same instances. Lookups therefore compare children by
+ * identity and never traverse a subtree.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class NodeCache {
+
+    /** The shared leaf for each color value [0, 255]. **/
+    private final RITQTNode[] leaves = new RITQTNode[256];
+
+    /** The shared split node for each distinct combination of children. **/
+    private final Map<Children, RITQTNode> splits = new HashMap<>();
+
+    /**
+     * Provides the shared leaf of the provided color.
+     */
+    public RITQTNode leaf(int val) {
+        if (leaves[val] == null) {
+            leaves[val] = new RITQTNode(val);
+        }
+        return leaves[val];
+    }
+
+    /**
+     * Provides the shared node with the provided quadrants, which must have been provided by this cache. Four leaves of
+     * the same color are merged into that leaf.
+     */
+    public RITQTNode split(RITQTNode ul, RITQTNode ur, RITQTNode ll, RITQTNode lr) {
+        if (0 <= ul.getVal() && ul == ur && ul == ll && ul == lr) {
+            // Shared leaves of the same color are the same instance
+            return ul;
+        }
+
+        return splits.computeIfAbsent(new Children(ul, ur, ll, lr), children -> new RITQTNode(-1, ul, ur, ll, lr));
+    }
+
+    /**
+     * Provides a copy of a tree in which every structurally identical subtree is shared. The copy is built bottom-up
+     * from the nodes of this cache.
+     */
+    public RITQTNode intern(RITQTNode root) {
+        if (0 <= root.getVal()) {
+            return leaf(root.getVal());
+        } else {
+            return split(intern(root.getUpperLeft()), intern(root.getUpperRight()), intern(root.getLowerLeft()), intern(root.getLowerRight()));
+        }
+    }
+
+    /**
+     * Provides the number of distinct nodes held by this cache.
+     */
+    public int size() {
+        int size = splits.size();
+        for (RITQTNode leaf : leaves) {
+            if (leaf != null) {
+                size ++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * The Children class is the key of a split node, comparing its four quadrants by identity.
+     */
+    private static final class Children {
+
+        private final RITQTNode ul, ur, ll, lr;
+
+        private final int hash;
+
+        private Children(RITQTNode ul, RITQTNode ur, RITQTNode ll, RITQTNode lr) {
+            this.ul = ul;
+            this.ur = ur;
+            this.ll = ll;
+            this.lr = lr;
+            this.hash = ((System.identityHashCode(ul) * 31 + System.identityHashCode(ur)) * 31 + System.identityHashCode(ll)) * 31 + System.identityHashCode(lr);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Children)) {
+                return false;
+            }
+            Children children = (Children) other;
+            return ul == children.ul && ur == children.ur && ll == children.ll && lr == children.lr;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
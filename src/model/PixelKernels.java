@@ -0,0 +1,86 @@
+package model;
+
+/**
+ * The PixelKernels class provides the innermost loops over square blocks of a flat row-major pixel buffer: testing
+ * whether every pixel of a block has one color, and filling a block with one color.
+ *
+ * <p>The scalar kernels are always available. When the jdk.incubator.vector module has been added to the virtual
+ * machine (with --add-modules jdk.incubator.vector), {@link PixelKernels#preferred()} provides kernels that process
+ * several pixels of a row with each instruction. Otherwise it provides the scalar kernels, so the module is never
+ * required.</p>
+ *
+ * @author Samuel Henderson
+ */
+public abstract class PixelKernels {
+
+    /** The name of the class of the vector kernels, which is only loaded when the vector module is present. **/
+    private static final String VECTOR_KERNELS = "model.VectorPixelKernels";
+
+    /** The scalar kernels. **/
+    private static final PixelKernels SCALAR = new PixelKernels() {
+
+        @Override
+        public boolean isUniform(int[] pixels, int stride, int row, int col, int size) {
+            int val = pixels[row * stride + col];
+            for (int r = row; r < row + size; ++ r) {
+                for (int i = r * stride + col; i < r * stride + col + size; ++ i) {
+                    if (pixels[i] != val) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void fill(int[] pixels, int stride, int row, int col, int size, int val) {
+            for (int r = row; r < row + size; ++ r) {
+                for (int i = r * stride + col; i < r * stride + col + size; ++ i) {
+                    pixels[i] = val;
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "scalar";
+        }
+    };
+
+    /** The fastest kernels available to this virtual machine. **/
+    private static final PixelKernels PREFERRED = loadPreferred();
+
+    /**
+     * Provides the vector kernels when the vector module can be loaded, and the scalar kernels otherwise.
+     */
+    private static PixelKernels loadPreferred() {
+        try {
+            return (PixelKernels) Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // The vector module is not present
+            return SCALAR;
+        }
+    }
+
+    /**
+     * Determines whether every pixel of the square block of the provided side length whose upper left corner is at
+     * (row, col) has the same color. Rows of the buffer are separated by the provided stride.
+     */
+    public abstract boolean isUniform(int[] pixels, int stride, int row, int col, int size);
+
+    /**
+     * Fills the square block of the provided side length whose upper left corner is at (row, col) with a color. Rows of
+     * the buffer are separated by the provided stride.
+     */
+    public abstract void fill(int[] pixels, int stride, int row, int col, int size, int val);
+
+    /** Access the scalar kernels. **/
+    public static PixelKernels scalar() {
+        return SCALAR;
+    }
+
+    /** Access the fastest kernels available. **/
+    public static PixelKernels preferred() {
+        return PREFERRED;
+    }
+}
@@ -1,6 +1,14 @@
 package model;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The QuadTree class contains utility methods to be used with QuadTree data structures created using {@link RITQTNode}.
@@ -14,13 +22,75 @@ public class QuadTree {
 
     /**
      * Provides the root {@link RITQTNode} of a QuadTree data structure parsed from a correctly formatted list of
-     * integral values that has been retrieved from a compressed image file.
+     * integral values that has been retrieved from a compressed image file. The parsed values are removed from the list.
+     *
+     * <p>Trees are parsed exactly as written. Files that were not fully compressed can be parsed with
+     * {@link Canonicalizer#fromCompressedContents(List)} instead.</p>
      */
     public static RITQTNode fromCompressedContents(List<Integer> lineValues) {
-        if(0 <= lineValues.get(0)) {
-            return new RITQTNode(lineValues.remove(0));
+        int[] cursor = { 0 };
+        RITQTNode root = fromCompressedContents(lineValues, cursor);
+
+        // Values are removed all at once, since removing each value from the front of the list is quadratic
+        lineValues.subList(0, cursor[0]).clear();
+
+        return root;
+    }
+
+    /**
+     * Recursively parses the preorder subtree beginning at the cursor position, advancing the cursor past it. This method
+     * should only be called from {@link QuadTree#fromCompressedContents(List)}.
+     */
+    private static RITQTNode fromCompressedContents(List<Integer> lineValues, int[] cursor) {
+        int val = lineValues.get(cursor[0] ++);
+
+        if(0 <= val) {
+            return new RITQTNode(val);
         } else {
-            return new RITQTNode(lineValues.remove(0), fromCompressedContents(lineValues), fromCompressedContents(lineValues), fromCompressedContents(lineValues), fromCompressedContents(lineValues));
+            return new RITQTNode(val, fromCompressedContents(lineValues, cursor), fromCompressedContents(lineValues, cursor), fromCompressedContents(lineValues, cursor), fromCompressedContents(lineValues, cursor));
+        }
+    }
+
+    /**
+     * Provides the root {@link RITQTNode} of a QuadTree data structure parsed from the preorder contents of a compressed
+     * file in the shared format written by {@link QuadTree#sharedPreorder(RITQTNode, Appendable, String)}. Subtrees that
+     * are referenced more than once are shared by the resulting structure. The list must not include the uncompressed
+     * size that begins a compressed file.
+     *
+     * @throws LoaderException.MalformedTreeException Thrown when a reference names a subtree that has not been defined
+     */
+    public static RITQTNode fromSharedContents(List<Integer> lineValues) throws LoaderException.MalformedTreeException {
+        int[] cursor = { 0 };
+        return fromSharedContents(lineValues, cursor, new ArrayList<>());
+    }
+
+    /**
+     * Recursively parses the shared preorder subtree beginning at the cursor position, advancing the cursor past it.
+     * Split nodes are recorded in the order in which they begin, which is the order of their identifiers.
+     */
+    private static RITQTNode fromSharedContents(List<Integer> lineValues, int[] cursor, List<RITQTNode> defined) throws LoaderException.MalformedTreeException {
+        int val = lineValues.get(cursor[0] ++);
+
+        if (0 <= val) {
+            return new RITQTNode(val);
+        } else if (val == -1) {
+            // Reserve the identifier of this subtree before its quadrants are parsed
+            int id = defined.size();
+            defined.add(null);
+
+            RITQTNode node = new RITQTNode(val,
+                    fromSharedContents(lineValues, cursor, defined), fromSharedContents(lineValues, cursor, defined),
+                    fromSharedContents(lineValues, cursor, defined), fromSharedContents(lineValues, cursor, defined)
+            );
+            defined.set(id, node);
+
+            return node;
+        } else {
+            int id = -2 - val;
+            if (defined.size() <= id || defined.get(id) == null) {
+                throw new LoaderException.MalformedTreeException("Reference to undefined subtree " + id + " at value " + cursor[0]);
+            }
+            return defined.get(id);
         }
     }
 
@@ -29,6 +99,15 @@ public class QuadTree {
      * integral values that has been retrieved from an uncompressed image file.
      */
     public static RITQTNode fromUncompressedContents(List<Integer> lineValues, int row, int col, int dimension) {
+        return fromUncompressedContents(lineValues, row, col, dimension, null);
+    }
+
+    /**
+     * Provides the root {@link RITQTNode} of a QuadTree data structure parsed from a list of integral values that has been
+     * retrieved from an uncompressed image file. Nodes are provided by the cache when one is given, so structurally
+     * identical subtrees are shared as they are built.
+     */
+    public static RITQTNode fromUncompressedContents(List<Integer> lineValues, int row, int col, int dimension, NodeCache cache) {
 
         // Full dimension must remain as a constant value to access correct index in list
         int fullDim = (int) Math.sqrt(lineValues.size());
@@ -47,18 +126,84 @@ public class QuadTree {
                     // Scan the four quadrants that compose this quadrant to see if compression is possible, then
                     // add them to the new root node as subsidiaries
                     int subDim = dimension / 2;
-                    return new RITQTNode(-1,
-                            fromUncompressedContents(lineValues, row,          col,          subDim),
-                            fromUncompressedContents(lineValues, row,          col + subDim, subDim),
-                            fromUncompressedContents(lineValues, row + subDim, col,          subDim),
-                            fromUncompressedContents(lineValues, row + subDim, col + subDim, subDim)
-                    );
+                    RITQTNode ul = fromUncompressedContents(lineValues, row,          col,          subDim, cache);
+                    RITQTNode ur = fromUncompressedContents(lineValues, row,          col + subDim, subDim, cache);
+                    RITQTNode ll = fromUncompressedContents(lineValues, row + subDim, col,          subDim, cache);
+                    RITQTNode lr = fromUncompressedContents(lineValues, row + subDim, col + subDim, subDim, cache);
+
+                    return cache == null ? new RITQTNode(-1, ul, ur, ll, lr) : cache.split(ul, ur, ll, lr);
                 }
             }
         }
 
         // By this point, all values in the quadrant have been verified to be equal, so compression is possible
-        return new RITQTNode(quadrantCheck);
+        return cache == null ? new RITQTNode(quadrantCheck) : cache.leaf(quadrantCheck);
+    }
+
+    /**
+     * Provides the root {@link RITQTNode} of a QuadTree data structure built from the square of a row-major pixel array
+     * with its upper left corner at the provided row and column, scanning each quadrant from the top down as
+     * {@link QuadTree#fromUncompressedContents(List, int, int, int, NodeCache)} does. Quadrants are scanned with the
+     * provided kernels, and nodes are provided by the cache when one is given.
+     *
+     * @param stride The number of pixels in each row of the array
+     */
+    public static RITQTNode fromUncompressedPixels(int[] pixels, int stride, int row, int col, int dimension, PixelKernels kernels, NodeCache cache) {
+        if (kernels.isUniform(pixels, stride, row, col, dimension)) {
+            int val = pixels[row * stride + col];
+            return cache == null ? new RITQTNode(val) : cache.leaf(val);
+        }
+
+        int subDim = dimension / 2;
+        RITQTNode ul = fromUncompressedPixels(pixels, stride, row,          col,          subDim, kernels, cache);
+        RITQTNode ur = fromUncompressedPixels(pixels, stride, row,          col + subDim, subDim, kernels, cache);
+        RITQTNode ll = fromUncompressedPixels(pixels, stride, row + subDim, col,          subDim, kernels, cache);
+        RITQTNode lr = fromUncompressedPixels(pixels, stride, row + subDim, col + subDim, subDim, kernels, cache);
+
+        return cache == null ? new RITQTNode(-1, ul, ur, ll, lr) : cache.split(ul, ur, ll, lr);
+    }
+
+    /**
+     * Provides the root {@link RITQTNode} of a QuadTree data structure built from the square of an image at the provided
+     * row and column, descending from the square through its quadrants. Each quadrant is tested for uniformity with one
+     * lookup in the {@link MinMaxPyramid} rather than by scanning its pixels, so the cost of the descent is proportional
+     * to the size of the tree. Nodes are provided by the cache when one is given.
+     */
+    public static RITQTNode fromPyramid(MinMaxPyramid pyramid, int row, int col, int dimension, NodeCache cache) {
+        if (pyramid.isUniform(row, col, dimension)) {
+            int val = pyramid.minimum(row, col, dimension);
+            return cache == null ? new RITQTNode(val) : cache.leaf(val);
+        }
+
+        int subDim = dimension / 2;
+        RITQTNode ul = fromPyramid(pyramid, row,          col,          subDim, cache);
+        RITQTNode ur = fromPyramid(pyramid, row,          col + subDim, subDim, cache);
+        RITQTNode ll = fromPyramid(pyramid, row + subDim, col,          subDim, cache);
+        RITQTNode lr = fromPyramid(pyramid, row + subDim, col + subDim, subDim, cache);
+
+        return cache == null ? new RITQTNode(-1, ul, ur, ll, lr) : cache.split(ul, ur, ll, lr);
+    }
+
+    /**
+     * Provides the root {@link RITQTNode} of a QuadTree data structure built from the square of a row-major pixel array
+     * with its upper left corner at the provided row and column. The array may hold more columns than the square, so
+     * rows are separated by the provided stride.
+     *
+     * <p>The tree is built bottom-up, so each pixel is read once and equal quadrants are merged with
+     * {@link QuadTree#join(RITQTNode, RITQTNode, RITQTNode, RITQTNode)}.</p>
+     */
+    public static RITQTNode fromPixels(int[] pixels, int stride, int row, int col, int dimension) {
+        if (dimension == 1) {
+            return new RITQTNode(pixels[row * stride + col]);
+        }
+
+        int subDim = dimension / 2;
+        return join(
+                fromPixels(pixels, stride, row,          col,          subDim),
+                fromPixels(pixels, stride, row,          col + subDim, subDim),
+                fromPixels(pixels, stride, row + subDim, col,          subDim),
+                fromPixels(pixels, stride, row + subDim, col + subDim, subDim)
+        );
     }
 
     /**
@@ -101,14 +246,222 @@ public class QuadTree {
         }
     }
 
+    /**
+     * Fills a flat row-major pixel array with the contents of a QuadTree data structure, filling the square of each leaf
+     * with the provided kernels.
+     *
+     * @param dimension The side length of the image, which is also the stride of the array
+     */
+    public static void extract(RITQTNode root, int dimension, int[] pixels, PixelKernels kernels) {
+        extract(root, pixels, kernels, 0, 0, dimension, dimension);
+    }
+
+    /**
+     * Recursively fills the square (row, col, size) of a flat pixel array from a QuadTree data structure.
+     */
+    private static void extract(RITQTNode root, int[] pixels, PixelKernels kernels, int row, int col, int size, int stride) {
+        if (0 <= root.getVal()) {
+            kernels.fill(pixels, stride, row, col, size, root.getVal());
+        } else {
+            int subDim = size / 2;
+
+            extract(root.getUpperLeft(),  pixels, kernels, row,          col,          subDim, stride);
+            extract(root.getUpperRight(), pixels, kernels, row,          col + subDim, subDim, stride);
+            extract(root.getLowerLeft(),  pixels, kernels, row + subDim, col,          subDim, stride);
+            extract(root.getLowerRight(), pixels, kernels, row + subDim, col + subDim, subDim, stride);
+        }
+    }
+
+    /**
+     * Converts a rectangular region of a QuadTree data structure into a grid of pixel color values. Only the nodes that
+     * intersect the region are visited, so the cost is proportional to the area of the region rather than of the image.
+     * The region must lie within the image.
+     *
+     * @param dimension The side length of the image represented by the tree
+     */
+    public static int[][] extractRegion(RITQTNode root, int dimension, int row, int col, int height, int width) {
+        if (row < 0 || col < 0 || height < 0 || width < 0 || dimension < row + height || dimension < col + width) {
+            throw new IllegalArgumentException("Region (" + row + ", " + col + ", " + height + "x" + width + ") is outside of the " + dimension + "x" + dimension + " image");
+        }
+
+        int[][] pixelGrid = new int[height][width];
+        extractRegion(root, pixelGrid, 0, 0, dimension, row, col);
+
+        return pixelGrid;
+    }
+
+    /**
+     * Recursively fills the part of a region grid, whose upper left corner is at (row, col) in the image, that
+     * intersects the node covering (nodeRow, nodeCol, dimension).
+     */
+    private static void extractRegion(RITQTNode root, int[][] pixelGrid, int nodeRow, int nodeCol, int dimension, int row, int col) {
+        int height = pixelGrid.length, width = height == 0 ? 0 : pixelGrid[0].length;
+        if (row + height <= nodeRow || nodeRow + dimension <= row || col + width <= nodeCol || nodeCol + dimension <= col) {
+            return;
+        }
+
+        if (0 <= root.getVal()) {
+            // Fill the intersection of the leaf and the region
+            for (int r = Math.max(row, nodeRow); r < Math.min(row + height, nodeRow + dimension); ++ r) {
+                Arrays.fill(pixelGrid[r - row], Math.max(col, nodeCol) - col, Math.min(col + width, nodeCol + dimension) - col, root.getVal());
+            }
+        } else {
+            int subDim = dimension / 2;
+
+            extractRegion(root.getUpperLeft(),  pixelGrid, nodeRow,          nodeCol,          subDim, row, col);
+            extractRegion(root.getUpperRight(), pixelGrid, nodeRow,          nodeCol + subDim, subDim, row, col);
+            extractRegion(root.getLowerLeft(),  pixelGrid, nodeRow + subDim, nodeCol,          subDim, row, col);
+            extractRegion(root.getLowerRight(), pixelGrid, nodeRow + subDim, nodeCol + subDim, subDim, row, col);
+        }
+    }
+
+    /**
+     * Provides a node representing four quadrants. When all four quadrants are leaves of the same color they are merged
+     * into a single leaf, so trees assembled with this method remain fully compressed.
+     */
+    public static RITQTNode join(RITQTNode ul, RITQTNode ur, RITQTNode ll, RITQTNode lr) {
+        int val = ul.getVal();
+        if (0 <= val && val == ur.getVal() && val == ll.getVal() && val == lr.getVal()) {
+            // Reuse an existing leaf rather than allocating a new one
+            return ul;
+        } else {
+            return new RITQTNode(-1, ul, ur, ll, lr);
+        }
+    }
+
+    /**
+     * Provides a QuadTree data structure with every color value replaced by the result of the provided operator. Sibling
+     * leaves that become equal are merged, and subtrees whose colors are unchanged are reused rather than copied.
+     */
+    public static RITQTNode map(RITQTNode root, IntUnaryOperator operator) {
+        if (0 <= root.getVal()) {
+            int val = operator.applyAsInt(root.getVal());
+            return val == root.getVal() ? root : new RITQTNode(val);
+        } else {
+            RITQTNode ul = map(root.getUpperLeft(), operator), ur = map(root.getUpperRight(), operator),
+                    ll = map(root.getLowerLeft(), operator), lr = map(root.getLowerRight(), operator);
+
+            if (ul == root.getUpperLeft() && ur == root.getUpperRight() && ll == root.getLowerLeft() && lr == root.getLowerRight()) {
+                return root;
+            } else {
+                return join(ul, ur, ll, lr);
+            }
+        }
+    }
+
+    /**
+     * Provides the average color value of the region represented by a QuadTree data structure. Each node contributes
+     * according to the area it covers, so no pixel values need to be extracted.
+     */
+    public static double average(RITQTNode root) {
+        if (0 <= root.getVal()) {
+            return root.getVal();
+        } else {
+            // The four quadrants of a node always cover equal areas
+            return (average(root.getUpperLeft()) + average(root.getUpperRight()) + average(root.getLowerLeft()) + average(root.getLowerRight())) / 4;
+        }
+    }
+
+    /**
+     * Provides the leaves of a QuadTree data structure as a stream, in preorder. Parallel streams divide the tree along
+     * quadrant boundaries, so custom analyses can be written as stream operations rather than recursive methods.
+     *
+     * @param dimension The side length of the image represented by the tree
+     */
+    public static Stream<Leaf> leaves(RITQTNode root, int dimension) {
+        return StreamSupport.stream(new LeafSpliterator(root, dimension), false);
+    }
+
     /**
      * Traverses a QuadTree data structure in preorder starting from a provided root {@link RITQTNode}.
      */
     public static String preorder(RITQTNode root) {
-        if(0 <= root.getVal()) {
-            return root.getVal() + " ";
+        StringBuilder builder = new StringBuilder();
+        preorder(root, builder, " ");
+        return builder.toString();
+    }
+
+    /**
+     * Appends the preorder traversal of a QuadTree data structure to a destination, following each value with the
+     * provided separator. Values are appended directly, so no intermediate Strings are built for subtrees.
+     */
+    public static void preorder(RITQTNode root, Appendable destination, String separator) throws IOException {
+        destination.append(Integer.toString(root.getVal())).append(separator);
+
+        if(root.getVal() < 0) {
+            preorder(root.getUpperLeft(),  destination, separator);
+            preorder(root.getUpperRight(), destination, separator);
+            preorder(root.getLowerLeft(),  destination, separator);
+            preorder(root.getLowerRight(), destination, separator);
+        }
+    }
+
+    /**
+     * Appends the preorder traversal of a QuadTree data structure to a StringBuilder, which cannot throw an
+     * {@link IOException}.
+     */
+    private static void preorder(RITQTNode root, StringBuilder builder, String separator) {
+        builder.append(root.getVal()).append(separator);
+
+        if(root.getVal() < 0) {
+            preorder(root.getUpperLeft(),  builder, separator);
+            preorder(root.getUpperRight(), builder, separator);
+            preorder(root.getLowerLeft(),  builder, separator);
+            preorder(root.getLowerRight(), builder, separator);
+        }
+    }
+
+    /**
+     * Appends the preorder traversal of a QuadTree data structure to a destination in the shared format, following each
+     * value with the provided separator.
+     *
+     * <p>Each distinct split node is written in full the first time it is visited and is assigned the next identifier,
+     * starting from 0. Every later visit of the same instance is written as the single value -2 - identifier. Leaves are
+     * always written as their color. Trees built with a {@link NodeCache} share every structurally identical subtree, so
+     * each distinct subtree is written once.</p>
+     */
+    public static void sharedPreorder(RITQTNode root, Appendable destination, String separator) throws IOException {
+        sharedPreorder(root, destination, separator, new IdentityHashMap<>());
+    }
+
+    /**
+     * Recursively appends the shared preorder of a subtree, recording the identifiers of the split nodes written so far.
+     */
+    private static void sharedPreorder(RITQTNode root, Appendable destination, String separator, Map<RITQTNode, Integer> ids) throws IOException {
+        if (0 <= root.getVal()) {
+            destination.append(Integer.toString(root.getVal())).append(separator);
+            return;
+        }
+
+        Integer id = ids.get(root);
+        if (id != null) {
+            destination.append(Integer.toString(-2 - id)).append(separator);
         } else {
-            return root.getVal() + " " + preorder(root.getUpperLeft()) + preorder(root.getUpperRight()) + preorder(root.getLowerLeft()) + preorder(root.getLowerRight());
+            ids.put(root, ids.size());
+            destination.append(Integer.toString(root.getVal())).append(separator);
+
+            sharedPreorder(root.getUpperLeft(),  destination, separator, ids);
+            sharedPreorder(root.getUpperRight(), destination, separator, ids);
+            sharedPreorder(root.getLowerLeft(),  destination, separator, ids);
+            sharedPreorder(root.getLowerRight(), destination, separator, ids);
         }
     }
+
+    // A leaf represents the same color in each of its four quadrants when it must be traversed alongside a split node
+
+    static RITQTNode upperLeftOf(RITQTNode node) {
+        return 0 <= node.getVal() ? node : node.getUpperLeft();
+    }
+
+    static RITQTNode upperRightOf(RITQTNode node) {
+        return 0 <= node.getVal() ? node : node.getUpperRight();
+    }
+
+    static RITQTNode lowerLeftOf(RITQTNode node) {
+        return 0 <= node.getVal() ? node : node.getLowerLeft();
+    }
+
+    static RITQTNode lowerRightOf(RITQTNode node) {
+        return 0 <= node.getVal() ? node : node.getLowerRight();
+    }
 }
@@ -0,0 +1,108 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The RITValidator class checks that compressed image files are well formed without building a QuadTree.
+ *
+ * <p>A file is read once as a stream of bytes using constant memory. The size header must be the square of a power of
+ * two, every value must be a color [0, 255] or the split value -1, the preorder must describe exactly one complete
+ * QuadTree with no trailing values, and no split may occur in a region of a single pixel.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class RITValidator {
+
+    /**
+     * Validates the compressed file at the provided path, which may be an entry in an archive.
+     *
+     * @return The number of nodes in the QuadTree described by the file
+     * @throws LoaderException.UnreadablePathException Thrown when the provided path cannot be read
+     * @throws LoaderException.FileDimensionException Thrown when the size header is not a perfect square
+     * @throws LoaderException.IntegralColorException Thrown when a leaf value is not within the range [0, 255]
+     * @throws LoaderException.MalformedTreeException Thrown when the file does not describe a valid QuadTree
+     */
+    public static long validate(String path) throws IOException, LoaderException {
+        if (FileLoader.isArchiveEntry(path)) {
+            return validate(new ByteArrayInputStream(FileLoader.loadArchiveEntry(path)));
+        }
+
+        File file = new File(path);
+
+        if (!file.exists() || file.isDirectory()) {
+            throw new LoaderException.UnreadablePathException(path);
+        }
+
+        try (InputStream stream = new FileInputStream(file)) {
+            return validate(stream);
+        }
+    }
+
+    /**
+     * Validates compressed image contents read from a stream. The stream is not closed.
+     *
+     * @return The number of nodes in the QuadTree described by the contents
+     */
+    public static long validate(InputStream stream) throws IOException, LoaderException {
+        Tokenizer tokenizer = new Tokenizer(stream);
+
+        // Validate the size header
+        if (!tokenizer.next()) {
+            throw new LoaderException.MalformedTreeException("Empty file: missing size header");
+        }
+        long size = tokenizer.value;
+        long dimension = (long) Math.sqrt(size);
+        if (size <= 0 || dimension * dimension != size) {
+            throw new LoaderException.FileDimensionException(Math.sqrt(size));
+        }
+        if ((dimension & (dimension - 1)) != 0) {
+            throw new LoaderException.MalformedTreeException("Image dimension " + dimension + " is not a power of two");
+        }
+
+        // Depth of the tree at which a node covers a single pixel
+        int maxDepth = Long.numberOfTrailingZeros(dimension);
+
+        // The number of nodes that remain to be read at each depth of the current path through the tree
+        int[] remaining = new int[maxDepth + 1];
+        int depth = 0;
+        remaining[0] = 1;
+
+        long nodes = 0;
+        while (tokenizer.next()) {
+            long value = tokenizer.value;
+
+            if (depth < 0) {
+                throw new LoaderException.MalformedTreeException("Trailing value " + value + " after complete tree at line " + tokenizer.line);
+            }
+
+            nodes ++;
+            remaining[depth] --;
+
+            if (value == -1) {
+                if (depth == maxDepth) {
+                    throw new LoaderException.MalformedTreeException("Split of a single pixel at line " + tokenizer.line);
+                }
+
+                // Four quadrants follow a split in preorder
+                remaining[++ depth] = 4;
+            } else if (value < 0 || 255 < value) {
+                throw new LoaderException.IntegralColorException(value);
+            } else {
+                // Return to the deepest ancestor that still has quadrants to be read
+                while (0 <= depth && remaining[depth] == 0) {
+                    depth --;
+                }
+            }
+        }
+
+        if (0 <= depth) {
+            throw new LoaderException.MalformedTreeException("Incomplete tree: file ends after " + nodes + " nodes");
+        }
+
+        return nodes;
+    }
+}
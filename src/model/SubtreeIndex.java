@@ -0,0 +1,540 @@
+package model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The SubtreeIndex class records the byte offset within a compressed file of every subtree down to a fixed depth, so
+ * that subtrees can be decoded independently of the values written before them.
+ *
+ * <p>A compressed file is a preorder, so without an index each subtree can only be found by decoding every subtree
+ * before it. With an index, the subtrees at the indexed depth can be decoded on separate threads with
+ * {@link SubtreeIndex#decodeParallel(ByteBuffer)}, or only when they are first visited with
+ * {@link SubtreeIndex#decodeLazy(ByteBuffer)}, so that a region of a large image can be extracted from a
+ * memory-mapped file without decoding the rest of it.</p>
+ *
+ * <p>Indexes are written beside the compressed file they describe, at its path followed by {@link #EXTENSION}, so the
+ * compressed file itself is unchanged and remains readable by every other tool. An index begins with the four bytes
+ * "RITX" and a version byte, followed by the length, modification time, and size header of the compressed file, the
+ * dimension of the image, the indexed depth, and for each depth from 0 the offset of each of its aligned squares in
+ * row-major order. Squares that lie within a leaf of a shallower depth have the offset -1. Plain compressed files of at
+ * most 2 GB may be indexed.</p>
+ *
+ * <p>An index is only used when the length, modification time, and size header of the compressed file all match it, so
+ * an index left behind by an earlier file of the same length is rejected rather than trusted. These are checked without
+ * reading the rest of the file, so that extracting a region stays independent of the size of the file. A file
+ * rewritten within the resolution of its modification time is instead caught as its subtrees are decoded, since every
+ * subtree must end exactly where the index says the next begins.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class SubtreeIndex {
+
+    /** The extension added to the path of a compressed file to form the path of its index. **/
+    public static final String EXTENSION = ".idx";
+
+    /** The default and largest depth of an index. An index of depth d holds (4^(d + 1) - 1) / 3 offsets. **/
+    public static final int DEFAULT_DEPTH = 4, MAX_DEPTH = 8;
+
+    /** The bytes that begin every index. **/
+    private static final byte[] MAGIC = { 'R', 'I', 'T', 'X' };
+
+    /** The version of the format written by this class. **/
+    private static final int VERSION = 3;
+
+    /** The length and modification time of the compressed file, which identify an index that no longer matches its file. **/
+    private final long sourceLength, modified;
+
+    /** The size header of the compressed file. **/
+    private final int size;
+
+    private final int dimension, depth;
+
+    /** The offset of each aligned square of each depth, or -1 when the square lies within a shallower leaf. **/
+    private final long[][] offsets;
+
+    /** The number of subtrees decoded lazily so far. **/
+    private final AtomicInteger loaded = new AtomicInteger();
+
+    private SubtreeIndex(long sourceLength, long modified, int size, int dimension, int depth, long[][] offsets) {
+        this.sourceLength = sourceLength;
+        this.modified = modified;
+        this.size = size;
+        this.dimension = dimension;
+        this.depth = depth;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Provides the path of the index of the compressed file at the provided path.
+     */
+    public static String indexPath(String source) {
+        return source + EXTENSION;
+    }
+
+    /**
+     * Maps the compressed file at the provided path into memory.
+     *
+     * @throws LoaderException.UnreadablePathException Thrown when the path does not name a readable file
+     * @throws LoaderException.MalformedTreeException Thrown when the file is larger than 2 GB
+     */
+    public static ByteBuffer map(String path) throws IOException, LoaderException {
+        File file = new File(path);
+        if (!file.isFile()) {
+            throw new LoaderException.UnreadablePathException(path);
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (Integer.MAX_VALUE < channel.size()) {
+                throw new LoaderException.MalformedTreeException("Compressed file exceeds " + Integer.MAX_VALUE + " bytes: " + path);
+            }
+            // A mapping remains valid after its channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Provides the modification time in milliseconds of the compressed file at the provided path.
+     */
+    private static long modified(String path) throws IOException {
+        return Files.getLastModifiedTime(Path.of(path)).toMillis();
+    }
+
+    /**
+     * Builds the index of a compressed file in the plain format last modified at the provided time, decoding every
+     * value once without building any nodes. The depth is limited by {@link #MAX_DEPTH} and by the depth of single
+     * pixels.
+     *
+     * @throws LoaderException.MalformedTreeException Thrown when the contents do not describe a valid QuadTree
+     */
+    private static SubtreeIndex build(ByteBuffer contents, long modified, int depth) throws LoaderException.MalformedTreeException {
+        int[] position = { 0 };
+        int size = value(contents, position);
+        int dimension = (int) Math.sqrt(size);
+        if (size <= 0 || dimension * dimension != size || (dimension & (dimension - 1)) != 0) {
+            throw new LoaderException.MalformedTreeException("Uncompressed size " + size + " is not the square of a power of two");
+        }
+
+        depth = Math.max(0, Math.min(depth, Math.min(MAX_DEPTH, Integer.numberOfTrailingZeros(dimension))));
+        long[][] offsets = new long[depth + 1][];
+        for (int level = 0; level <= depth; ++ level) {
+            offsets[level] = new long[1 << (2 * level)];
+            Arrays.fill(offsets[level], -1);
+        }
+
+        index(contents, position, offsets, 0, 0, 0, dimension);
+        if (position[0] != contents.limit()) {
+            throw new LoaderException.MalformedTreeException("Trailing values after complete tree at byte " + position[0]);
+        }
+
+        return new SubtreeIndex(contents.limit(), modified, size, dimension, depth, offsets);
+    }
+
+    /**
+     * Builds the index of the compressed file at the provided path.
+     *
+     * @throws LoaderException.UnreadablePathException Thrown when the path does not name a readable file
+     * @throws LoaderException.MalformedTreeException Thrown when the file does not describe a valid QuadTree
+     */
+    public static SubtreeIndex build(String path, int depth) throws IOException, LoaderException {
+        // The time is read first, so that a file modified while it is indexed no longer matches the index
+        long modified = modified(path);
+        return build(map(path), modified, depth);
+    }
+
+    /**
+     * Recursively records the offset of the subtree at the position and of its quadrants, advancing past it. Squares
+     * are identified by their row and column among the squares of their depth.
+     */
+    private static void index(ByteBuffer contents, int[] position, long[][] offsets, int level, int row, int col, int size) throws LoaderException.MalformedTreeException {
+        if (level < offsets.length) {
+            offsets[level][(row << level) + col] = position[0];
+        }
+
+        int val = value(contents, position);
+        if (val == -1) {
+            if (size == 1) {
+                throw new LoaderException.MalformedTreeException("Split of a single pixel at byte " + position[0]);
+            }
+            index(contents, position, offsets, level + 1, 2 * row,     2 * col,     size / 2);
+            index(contents, position, offsets, level + 1, 2 * row,     2 * col + 1, size / 2);
+            index(contents, position, offsets, level + 1, 2 * row + 1, 2 * col,     size / 2);
+            index(contents, position, offsets, level + 1, 2 * row + 1, 2 * col + 1, size / 2);
+        } else if (val < 0 || 255 < val) {
+            throw new LoaderException.MalformedTreeException("Color " + val + " is not within the range [0, 255] at byte " + position[0]);
+        }
+    }
+
+    /**
+     * Writes this index to the provided path.
+     */
+    public void write(String path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(sourceLength);
+            out.writeLong(modified);
+            out.writeInt(size);
+            out.writeInt(dimension);
+            out.writeInt(depth);
+            for (long[] level : offsets) {
+                for (long offset : level) {
+                    out.writeLong(offset);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the index of the compressed file at the provided path, which must describe the provided contents of the
+     * file. The length, modification time, and size header of the file are compared with those recorded in the index.
+     *
+     * @throws LoaderException.UnreadablePathException Thrown when the compressed file has no readable index
+     * @throws LoaderException.MalformedTreeException Thrown when the index file is not an index or no longer matches the
+     * compressed file
+     */
+    public static SubtreeIndex read(String sourcePath, ByteBuffer source) throws IOException, LoaderException {
+        String path = indexPath(sourcePath);
+        File file = new File(path);
+        if (!file.isFile()) {
+            throw new LoaderException.UnreadablePathException(path);
+        }
+
+        ByteBuffer contents = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            contents.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || contents.get() != VERSION) {
+                throw new LoaderException.MalformedTreeException("Not a subtree index: " + path);
+            }
+
+            long length = contents.getLong(), modified = contents.getLong();
+            int size = contents.getInt(), dimension = contents.getInt(), depth = contents.getInt();
+            long sourceLength = source.limit();
+            if (length != sourceLength) {
+                throw new LoaderException.MalformedTreeException("Subtree index " + path + " describes a file of " + length + " bytes, not " + sourceLength);
+            }
+            if (modified != modified(sourcePath)) {
+                throw new LoaderException.MalformedTreeException("Subtree index " + path + " describes a file with a different modification time");
+            }
+            if (size != value(source, new int[] { 0 })) {
+                throw new LoaderException.MalformedTreeException("Subtree index " + path + " describes a file with a different size header");
+            }
+            if ((long) dimension * dimension != size || depth < 0 || MAX_DEPTH < depth || Integer.numberOfTrailingZeros(dimension) < depth) {
+                throw new LoaderException.MalformedTreeException("Subtree index " + path + " has invalid dimension " + dimension + " or depth " + depth);
+            }
+
+            long[][] offsets = new long[depth + 1][];
+            for (int level = 0; level <= depth; ++ level) {
+                offsets[level] = new long[1 << (2 * level)];
+                for (int i = 0; i < offsets[level].length; ++ i) {
+                    offsets[level][i] = contents.getLong();
+                    if (offsets[level][i] < -1 || sourceLength <= offsets[level][i]) {
+                        throw new LoaderException.MalformedTreeException("Subtree index " + path + " has an offset out of bounds");
+                    }
+                }
+            }
+
+            return new SubtreeIndex(length, modified, size, dimension, depth, offsets);
+        } catch (RuntimeException e) {
+            throw new LoaderException.MalformedTreeException("Truncated subtree index: " + path);
+        }
+    }
+
+    /**
+     * Decodes the tree of the compressed file described by this index. The subtrees of the indexed depth are decoded
+     * in parallel on the common fork join pool, and joined into the tree. Every subtree must end exactly where the next
+     * subtree in preorder begins, and the last must end at the end of the contents, so an index whose offsets do not
+     * describe the contents is rejected.
+     *
+     * @throws LoaderException.MalformedTreeException Thrown when the contents do not describe a valid QuadTree or do not
+     * match this index
+     */
+    public RITQTNode decodeParallel(ByteBuffer contents) throws LoaderException.MalformedTreeException {
+        try {
+            return ForkJoinPool.commonPool().invoke(new Decode(contents, 0, 0, 0, contents.limit()));
+        } catch (IllegalStateException e) {
+            // Exceptions rethrown from another thread may be wrapped once more by the pool
+            Throwable cause = e;
+            while (cause != null && !(cause instanceof LoaderException.MalformedTreeException)) {
+                cause = cause.getCause();
+            }
+            if (cause == null) {
+                throw e;
+            }
+            throw (LoaderException.MalformedTreeException) cause;
+        }
+    }
+
+    /**
+     * The Decode class decodes the subtree of a single indexed square, forking a task for each quadrant until the
+     * indexed depth is reached. The subtree must end at the provided position.
+     */
+    private class Decode extends RecursiveTask<RITQTNode> {
+
+        private final ByteBuffer contents;
+
+        private final int level, row, col, end;
+
+        private Decode(ByteBuffer contents, int level, int row, int col, int end) {
+            this.contents = contents;
+            this.level = level;
+            this.row = row;
+            this.col = col;
+            this.end = end;
+        }
+
+        @Override
+        protected RITQTNode compute() {
+            try {
+                int[] position = { checkedOffset(level, row, col) };
+                if (level == depth) {
+                    RITQTNode node = parse(contents, position, dimension >> level);
+                    checkEnd(position, level, row, col, end);
+                    return node;
+                }
+
+                int val = value(contents, position);
+                if (val != -1) {
+                    RITQTNode node = leaf(val, position);
+                    checkEnd(position, level, row, col, end);
+                    return node;
+                }
+
+                // Each quadrant ends where the next begins, and the first begins right after the split
+                checkEnd(position, level + 1, 2 * row, 2 * col, checkedOffset(level + 1, 2 * row, 2 * col));
+                int urOffset = checkedOffset(level + 1, 2 * row, 2 * col + 1);
+                int llOffset = checkedOffset(level + 1, 2 * row + 1, 2 * col), lrOffset = checkedOffset(level + 1, 2 * row + 1, 2 * col + 1);
+
+                Decode ul = new Decode(contents, level + 1, 2 * row,     2 * col,     urOffset), ur = new Decode(contents, level + 1, 2 * row,     2 * col + 1, llOffset);
+                Decode ll = new Decode(contents, level + 1, 2 * row + 1, 2 * col, lrOffset),     lr = new Decode(contents, level + 1, 2 * row + 1, 2 * col + 1, end);
+                invokeAll(ul, ur, ll, lr);
+
+                return new RITQTNode(-1, ul.join(), ur.join(), ll.join(), lr.join());
+            } catch (LoaderException.MalformedTreeException e) {
+                // Tasks cannot throw checked exceptions, so the exception is unwrapped by decodeParallel
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Checks that the subtree, or the split, read up to the position ends where the indexed square at the provided
+     * depth, row, and column, or the content that follows it, begins.
+     */
+    private static void checkEnd(int[] position, int level, int row, int col, int end) throws LoaderException.MalformedTreeException {
+        if (position[0] != end) {
+            throw new LoaderException.MalformedTreeException("Subtree index offset " + end + " of square (" + row + ", " + col + ") at depth " + level + " does not match byte " + position[0]);
+        }
+    }
+
+    /**
+     * Provides the tree of the compressed file described by this index without decoding it. Split nodes down to the
+     * indexed depth decode their quadrants the first time any quadrant is requested, and split nodes at the indexed
+     * depth decode their whole subtree, so only the subtrees visited by a traversal are ever decoded.
+     *
+     * <p>Each decoded subtree must end where the index says the next begins, as in
+     * {@link #decodeParallel(ByteBuffer)}, so that only the subtrees visited are checked against the index. Nodes read
+     * from the provided contents whenever they are first visited, so the contents must not change while the tree is in
+     * use. Since quadrants are requested through methods that cannot throw checked exceptions, contents
+     * that do not describe a valid QuadTree cause an {@link IllegalStateException} when they are visited.</p>
+     */
+    public RITQTNode decodeLazy(ByteBuffer contents) throws LoaderException.MalformedTreeException {
+        int[] position = { checkedOffset(0, 0, 0) };
+        int val = value(contents, position);
+        if (val != -1) {
+            RITQTNode node = leaf(val, position);
+            checkEnd(position, 0, 0, 0, contents.limit());
+            return node;
+        }
+        if (0 < depth) {
+            checkEnd(position, 1, 0, 0, checkedOffset(1, 0, 0));
+        }
+        return new LazyNode(contents, 0, 0, 0, contents.limit());
+    }
+
+    /**
+     * The LazyNode class is a split node whose quadrants are decoded the first time one of them is requested.
+     */
+    private class LazyNode extends RITQTNode {
+
+        private final ByteBuffer contents;
+
+        /** The indexed square of this node, and the position at which its subtree ends. **/
+        private final int level, row, col, end;
+
+        /** The decoded quadrants, or null before they are requested. **/
+        private volatile RITQTNode[] quadrants;
+
+        private LazyNode(ByteBuffer contents, int level, int row, int col, int end) {
+            super(-1);
+            this.contents = contents;
+            this.level = level;
+            this.row = row;
+            this.col = col;
+            this.end = end;
+        }
+
+        private RITQTNode quadrant(int index) {
+            RITQTNode[] decoded = quadrants;
+            if (decoded == null) {
+                synchronized (this) {
+                    if (quadrants == null) {
+                        quadrants = decodeQuadrants();
+                    }
+                    decoded = quadrants;
+                }
+            }
+            return decoded[index];
+        }
+
+        private RITQTNode[] decodeQuadrants() {
+            try {
+                loaded.incrementAndGet();
+                if (level == depth) {
+                    // No deeper offsets are indexed, so the whole subtree is decoded
+                    int[] position = { checkedOffset(level, row, col) };
+                    RITQTNode node = parse(contents, position, dimension >> level);
+                    checkEnd(position, level, row, col, end);
+                    return new RITQTNode[] { node.getUpperLeft(), node.getUpperRight(), node.getLowerLeft(), node.getLowerRight() };
+                }
+
+                // Each quadrant ends where the next begins, and a split is followed by its first quadrant
+                RITQTNode[] decoded = new RITQTNode[4];
+                for (int i = 0; i < 4; ++ i) {
+                    int childRow = 2 * row + i / 2, childCol = 2 * col + i % 2;
+                    int childEnd = i < 3 ? checkedOffset(level + 1, 2 * row + (i + 1) / 2, 2 * col + (i + 1) % 2) : end;
+                    int[] position = { checkedOffset(level + 1, childRow, childCol) };
+                    int val = value(contents, position);
+                    if (val != -1) {
+                        decoded[i] = leaf(val, position);
+                        checkEnd(position, level + 1, childRow, childCol, childEnd);
+                        continue;
+                    }
+                    if (level + 1 < depth) {
+                        checkEnd(position, level + 2, 2 * childRow, 2 * childCol, checkedOffset(level + 2, 2 * childRow, 2 * childCol));
+                    }
+                    decoded[i] = new LazyNode(contents, level + 1, childRow, childCol, childEnd);
+                }
+                return decoded;
+            } catch (LoaderException.MalformedTreeException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public RITQTNode getUpperLeft() {
+            return quadrant(0);
+        }
+
+        @Override
+        public RITQTNode getUpperRight() {
+            return quadrant(1);
+        }
+
+        @Override
+        public RITQTNode getLowerLeft() {
+            return quadrant(2);
+        }
+
+        @Override
+        public RITQTNode getLowerRight() {
+            return quadrant(3);
+        }
+    }
+
+    /**
+     * Provides the offset of an indexed square, which must begin a subtree.
+     */
+    private int checkedOffset(int level, int row, int col) throws LoaderException.MalformedTreeException {
+        long offset = offsets[level][(row << level) + col];
+        if (offset < 0) {
+            throw new LoaderException.MalformedTreeException("Subtree index has no offset for square (" + row + ", " + col + ") at depth " + level);
+        }
+        return (int) offset;
+    }
+
+    /**
+     * Recursively decodes the subtree of the provided side length beginning at the position, advancing past it.
+     */
+    private static RITQTNode parse(ByteBuffer contents, int[] position, int size) throws LoaderException.MalformedTreeException {
+        int val = value(contents, position);
+        if (val != -1) {
+            return leaf(val, position);
+        }
+        if (size == 1) {
+            throw new LoaderException.MalformedTreeException("Split of a single pixel at byte " + position[0]);
+        }
+
+        return new RITQTNode(-1, parse(contents, position, size / 2), parse(contents, position, size / 2),
+                parse(contents, position, size / 2), parse(contents, position, size / 2));
+    }
+
+    private static RITQTNode leaf(int val, int[] position) throws LoaderException.MalformedTreeException {
+        if (val < 0 || 255 < val) {
+            throw new LoaderException.MalformedTreeException("Color " + val + " is not within the range [0, 255] at byte " + position[0]);
+        }
+        return new RITQTNode(val);
+    }
+
+    /**
+     * Reads the value on the line beginning at the position, advancing past the line.
+     */
+    private static int value(ByteBuffer contents, int[] position) throws LoaderException.MalformedTreeException {
+        int at = position[0], limit = contents.limit();
+        if (limit <= at) {
+            throw new LoaderException.MalformedTreeException("Incomplete tree: file ends at byte " + at);
+        }
+
+        boolean negative = contents.get(at) == '-';
+        if (negative) {
+            at ++;
+        }
+
+        long value = 0;
+        int digits = 0;
+        for (byte b; at < limit && '0' <= (b = contents.get(at)) && b <= '9'; ++ at) {
+            value = value * 10 + (b - '0');
+            if (++ digits > 10 || Integer.MAX_VALUE < value) {
+                throw new LoaderException.MalformedTreeException("Value too large at byte " + position[0]);
+            }
+        }
+
+        if (at < limit && contents.get(at) == '\r') {
+            at ++;
+        }
+        if (digits == 0 || (at < limit && contents.get(at) != '\n')) {
+            throw new LoaderException.MalformedTreeException("Non-integral value at byte " + position[0]);
+        }
+
+        position[0] = Math.min(at + 1, limit);
+        return (int) (negative ? -value : value);
+    }
+
+    /** Access the number of subtrees decoded lazily so far. **/
+    public int loadedSubtrees() {
+        return loaded.get();
+    }
+
+    /** Access dimension. **/
+    public int dimension() {
+        return dimension;
+    }
+
+    /** Access depth. **/
+    public int depth() {
+        return depth;
+    }
+}
@@ -0,0 +1,85 @@
+package model;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The Tokenizer class reads one integral value per line from a stream through its own buffer, without allocating per
+ * value. It is used to read image files that are too large to be loaded into a list.
+ *
+ * @author Samuel Henderson
+ */
+class Tokenizer {
+
+    /** The size of the buffer used to read streams. **/
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InputStream stream;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    /** The position of the next unread byte in the buffer and the number of bytes in the buffer. **/
+    private int position, limit;
+
+    /** The most recently read value and its line number. **/
+    long value, line;
+
+    Tokenizer(InputStream stream) {
+        this.stream = stream;
+    }
+
+    /**
+     * Reads the next byte, refilling the buffer when it has been consumed. Returns -1 at the end of the stream.
+     */
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = stream.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position ++] & 0xFF;
+    }
+
+    /**
+     * Reads the next value. Returns false at the end of the stream.
+     *
+     * @throws LoaderException.MalformedTreeException Thrown when a line is not an integral value within the range of an
+     * integer
+     */
+    boolean next() throws IOException, LoaderException.MalformedTreeException {
+        int b = read();
+        if (b == -1) {
+            return false;
+        }
+
+        line ++;
+        boolean negative = b == '-';
+        if (negative) {
+            b = read();
+        }
+
+        long parsed = 0;
+        int digits = 0;
+        while ('0' <= b && b <= '9') {
+            // Values beyond the range of an integer are rejected, as they would be when loaded
+            if (++ digits > 10 || Integer.MAX_VALUE < parsed * 10 + (b - '0')) {
+                throw new LoaderException.MalformedTreeException("Value too large at line " + line);
+            }
+            parsed = parsed * 10 + (b - '0');
+            b = read();
+        }
+
+        if (b == '\r') {
+            b = read();
+        }
+        if (digits == 0 || (b != '\n' && b != -1)) {
+            throw new LoaderException.MalformedTreeException("Non-integral value at line " + line);
+        }
+
+        value = negative ? -parsed : parsed;
+        return true;
+    }
+}
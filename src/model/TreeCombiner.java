@@ -0,0 +1,136 @@
+package model;
+
+import java.util.function.IntBinaryOperator;
+
+/**
+ * The TreeCombiner class contains methods that combine two QuadTree data structures of the same dimension without
+ * extracting their pixel color values.
+ *
+ * <p>Both trees are traversed together. Where one tree holds a leaf and the other is split, the leaf stands in for all
+ * four quadrants, so the cost of a combination is proportional to the number of nodes rather than the number of pixels.
+ * Results are assembled with {@link QuadTree#join(RITQTNode, RITQTNode, RITQTNode, RITQTNode)} and remain fully
+ * compressed.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class TreeCombiner {
+
+    /**
+     * Provides the absolute difference of two trees. Regions where both trees hold the same color become 0.
+     */
+    public static Combination difference(RITQTNode first, RITQTNode second, int dimension) {
+        return combine(first, second, dimension, (a, b) -> Math.abs(a - b));
+    }
+
+    /**
+     * Places the top tree over the base tree. Regions of the top tree holding the transparent color show the base tree.
+     */
+    public static Combination overlay(RITQTNode base, RITQTNode top, int transparent, int dimension) {
+        return combine(base, top, dimension, (a, b) -> b == transparent ? a : b);
+    }
+
+    /**
+     * Provides the darker color of two trees in every region.
+     */
+    public static Combination minimum(RITQTNode first, RITQTNode second, int dimension) {
+        return combine(first, second, dimension, Math::min);
+    }
+
+    /**
+     * Provides the lighter color of two trees in every region.
+     */
+    public static Combination maximum(RITQTNode first, RITQTNode second, int dimension) {
+        return combine(first, second, dimension, Math::max);
+    }
+
+    /**
+     * Keeps the colors of the image tree in regions where the mask tree is nonzero. All other regions become 0.
+     */
+    public static Combination mask(RITQTNode image, RITQTNode mask, int dimension) {
+        return combine(image, mask, dimension, (a, b) -> b != 0 ? a : 0);
+    }
+
+    /**
+     * Combines two trees of the same dimension by applying an operator to the pair of colors in every region. The
+     * operator must produce color values in the range [0, 255].
+     *
+     * @param dimension The side length of the images represented by both trees
+     */
+    public static Combination combine(RITQTNode first, RITQTNode second, int dimension, IntBinaryOperator operator) {
+        Combination combination = new Combination();
+        combination.tree = combine(first, second, dimension, operator, combination);
+
+        return combination;
+    }
+
+    /**
+     * Recursively combines two nodes representing the same square region with the provided side length. This method
+     * should only be called from {@link TreeCombiner#combine(RITQTNode, RITQTNode, int, IntBinaryOperator)}.
+     */
+    private static RITQTNode combine(RITQTNode first, RITQTNode second, int dimension, IntBinaryOperator operator, Combination combination) {
+        if (first == second) {
+            // Shared subtrees are equal, so only the operator needs to be applied to their colors
+            return QuadTree.map(first, val -> operator.applyAsInt(val, val));
+        }
+
+        if (0 <= first.getVal() && 0 <= second.getVal()) {
+            if (first.getVal() != second.getVal()) {
+                combination.differingArea += (long) dimension * dimension;
+                combination.differingRegions ++;
+            }
+
+            int val = operator.applyAsInt(first.getVal(), second.getVal());
+            return val == first.getVal() ? first : val == second.getVal() ? second : new RITQTNode(val);
+        }
+
+        // A leaf represents the same color in each of the four quadrants of a split node
+        int subDim = dimension / 2;
+
+        return QuadTree.join(
+                combine(QuadTree.upperLeftOf(first),  QuadTree.upperLeftOf(second),  subDim, operator, combination),
+                combine(QuadTree.upperRightOf(first), QuadTree.upperRightOf(second), subDim, operator, combination),
+                combine(QuadTree.lowerLeftOf(first),  QuadTree.lowerLeftOf(second),  subDim, operator, combination),
+                combine(QuadTree.lowerRightOf(first), QuadTree.lowerRightOf(second), subDim, operator, combination)
+        );
+    }
+
+    /**
+     * The Combination class holds the tree produced by combining two trees alongside statistics about the regions in
+     * which the two trees differed.
+     */
+    public static class Combination {
+
+        /** The combined tree. **/
+        private RITQTNode tree;
+
+        /** The number of pixels at which the two trees held different colors. **/
+        private long differingArea;
+
+        /** The number of leaf regions at which the two trees held different colors. **/
+        private long differingRegions;
+
+        private Combination() {}
+
+        /** Access tree. **/
+        public RITQTNode tree() {
+            return tree;
+        }
+
+        /** Access differingArea. **/
+        public long differingArea() {
+            return differingArea;
+        }
+
+        /** Access differingRegions. **/
+        public long differingRegions() {
+            return differingRegions;
+        }
+
+        /**
+         * Provides the fraction [0, 1] of the image area at which the two trees differed.
+         */
+        public double differingFraction(int dimension) {
+            return (double) differingArea / ((double) dimension * dimension);
+        }
+    }
+}
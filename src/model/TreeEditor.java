@@ -0,0 +1,145 @@
+package model;
+
+/**
+ * The TreeEditor class contains methods that edit regions of a QuadTree data structure without extracting its pixel
+ * color values.
+ *
+ * <p>Edits never modify existing nodes. Only the nodes on the paths to the edited region are copied, and every subtree
+ * outside of the region is shared with the original tree, so the cost of an edit is proportional to the edited area and
+ * the depth of the tree. Copied nodes are assembled with
+ * {@link QuadTree#join(RITQTNode, RITQTNode, RITQTNode, RITQTNode)}, so quadrants that become equal are merged.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class TreeEditor {
+
+    /**
+     * Sets the color of a single pixel.
+     *
+     * @param dimension The side length of the image represented by the tree
+     * @throws LoaderException.IntegralColorException Thrown when the color is not in the range [0, 255]
+     */
+    public static RITQTNode setPixel(RITQTNode root, int dimension, int row, int col, int value) throws LoaderException.IntegralColorException {
+        return fillRect(root, dimension, row, col, 1, 1, value);
+    }
+
+    /**
+     * Fills a rectangle with a single color. Parts of the rectangle outside of the image are ignored.
+     *
+     * @param dimension The side length of the image represented by the tree
+     * @throws LoaderException.IntegralColorException Thrown when the color is not in the range [0, 255]
+     */
+    public static RITQTNode fillRect(RITQTNode root, int dimension, int row, int col, int height, int width, int value) throws LoaderException.IntegralColorException {
+        checkColor(value);
+        return fill(root, 0, 0, dimension, row, col, height, width, new RITQTNode(value));
+    }
+
+    /**
+     * Pastes a rectangular grid of pixel color values with its upper left corner at the provided row and column. Parts of
+     * the grid outside of the image are ignored.
+     *
+     * @param dimension The side length of the image represented by the tree
+     * @throws LoaderException.IntegralColorException Thrown when the grid contains a color not in the range [0, 255]
+     */
+    public static RITQTNode paste(RITQTNode root, int dimension, int row, int col, int[][] pixelGrid) throws LoaderException.IntegralColorException {
+        for (int[] gridRow : pixelGrid) {
+            for (int value : gridRow) {
+                checkColor(value);
+            }
+        }
+
+        int height = pixelGrid.length, width = height == 0 ? 0 : pixelGrid[0].length;
+        return paste(root, 0, 0, dimension, row, col, height, width, pixelGrid);
+    }
+
+    /**
+     * Recursively fills the intersection of a node covering (nodeRow, nodeCol, size) with a rectangle.
+     */
+    private static RITQTNode fill(RITQTNode node, int nodeRow, int nodeCol, int size, int row, int col, int height, int width, RITQTNode leaf) {
+        if (!intersects(nodeRow, nodeCol, size, row, col, height, width) || node.getVal() == leaf.getVal()) {
+            // Regions outside of the rectangle and regions already of the fill color are unchanged
+            return node;
+        }
+
+        if (covers(nodeRow, nodeCol, size, row, col, height, width)) {
+            return leaf;
+        }
+
+        int subDim = size / 2;
+        return rebuild(node,
+                fill(QuadTree.upperLeftOf(node),  nodeRow,          nodeCol,          subDim, row, col, height, width, leaf),
+                fill(QuadTree.upperRightOf(node), nodeRow,          nodeCol + subDim, subDim, row, col, height, width, leaf),
+                fill(QuadTree.lowerLeftOf(node),  nodeRow + subDim, nodeCol,          subDim, row, col, height, width, leaf),
+                fill(QuadTree.lowerRightOf(node), nodeRow + subDim, nodeCol + subDim, subDim, row, col, height, width, leaf)
+        );
+    }
+
+    /**
+     * Recursively pastes the part of a grid that intersects a node covering (nodeRow, nodeCol, size).
+     */
+    private static RITQTNode paste(RITQTNode node, int nodeRow, int nodeCol, int size, int row, int col, int height, int width, int[][] pixelGrid) {
+        if (!intersects(nodeRow, nodeCol, size, row, col, height, width)) {
+            return node;
+        }
+
+        if (covers(nodeRow, nodeCol, size, row, col, height, width)) {
+            // The node is replaced entirely by a subtree built from the grid
+            return build(pixelGrid, nodeRow - row, nodeCol - col, size);
+        }
+
+        int subDim = size / 2;
+        return rebuild(node,
+                paste(QuadTree.upperLeftOf(node),  nodeRow,          nodeCol,          subDim, row, col, height, width, pixelGrid),
+                paste(QuadTree.upperRightOf(node), nodeRow,          nodeCol + subDim, subDim, row, col, height, width, pixelGrid),
+                paste(QuadTree.lowerLeftOf(node),  nodeRow + subDim, nodeCol,          subDim, row, col, height, width, pixelGrid),
+                paste(QuadTree.lowerRightOf(node), nodeRow + subDim, nodeCol + subDim, subDim, row, col, height, width, pixelGrid)
+        );
+    }
+
+    /**
+     * Builds a canonical subtree bottom-up from the square of a grid with the provided side length.
+     */
+    private static RITQTNode build(int[][] pixelGrid, int gridRow, int gridCol, int size) {
+        if (size == 1) {
+            return new RITQTNode(pixelGrid[gridRow][gridCol]);
+        }
+
+        int subDim = size / 2;
+        return QuadTree.join(
+                build(pixelGrid, gridRow,          gridCol,          subDim),
+                build(pixelGrid, gridRow,          gridCol + subDim, subDim),
+                build(pixelGrid, gridRow + subDim, gridCol,          subDim),
+                build(pixelGrid, gridRow + subDim, gridCol + subDim, subDim)
+        );
+    }
+
+    /**
+     * Provides the original node when none of its quadrants changed, and otherwise joins the edited quadrants.
+     */
+    private static RITQTNode rebuild(RITQTNode node, RITQTNode ul, RITQTNode ur, RITQTNode ll, RITQTNode lr) {
+        if (node.getVal() < 0 && ul == node.getUpperLeft() && ur == node.getUpperRight() && ll == node.getLowerLeft() && lr == node.getLowerRight()) {
+            return node;
+        }
+        return QuadTree.join(ul, ur, ll, lr);
+    }
+
+    /**
+     * Returns true when a node covering (nodeRow, nodeCol, size) intersects the rectangle.
+     */
+    private static boolean intersects(int nodeRow, int nodeCol, int size, int row, int col, int height, int width) {
+        return nodeRow < row + height && row < nodeRow + size && nodeCol < col + width && col < nodeCol + size;
+    }
+
+    /**
+     * Returns true when a node covering (nodeRow, nodeCol, size) lies entirely within the rectangle.
+     */
+    private static boolean covers(int nodeRow, int nodeCol, int size, int row, int col, int height, int width) {
+        return row <= nodeRow && nodeRow + size <= row + height && col <= nodeCol && nodeCol + size <= col + width;
+    }
+
+    private static void checkColor(int value) throws LoaderException.IntegralColorException {
+        if (value < 0 || 255 < value) {
+            throw new LoaderException.IntegralColorException(value);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package model;
+
+/**
+ * The TreeTransform class contains geometric and tonal transformations of QuadTree data structures that are performed
+ * without extracting pixel color values.
+ *
+ * <p>Rotations and flips only rearrange the quadrants of each node, so the structure of the tree is preserved and all
+ * leaves are reused. Tonal transformations relabel leaves with {@link QuadTree#map(RITQTNode, java.util.function.IntUnaryOperator)},
+ * merging sibling leaves that become equal.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class TreeTransform {
+
+    /**
+     * Rotates a tree clockwise by the provided number of degrees, which must be a multiple of 90.
+     */
+    public static RITQTNode rotate(RITQTNode root, int degrees) {
+        if (degrees % 90 != 0) {
+            throw new IllegalArgumentException("Rotation must be a multiple of 90 degrees: " + degrees);
+        }
+
+        switch (Math.floorMod(degrees, 360)) {
+            case 90: return rotateClockwise(root);
+            case 180: return rotateHalf(root);
+            case 270: return rotateCounterClockwise(root);
+            default: return root;
+        }
+    }
+
+    /**
+     * Rotates a tree 90 degrees clockwise. The upper left quadrant of the result is the lower left quadrant of the tree.
+     */
+    public static RITQTNode rotateClockwise(RITQTNode root) {
+        if (0 <= root.getVal()) {
+            return root;
+        } else {
+            return new RITQTNode(-1,
+                    rotateClockwise(root.getLowerLeft()),
+                    rotateClockwise(root.getUpperLeft()),
+                    rotateClockwise(root.getLowerRight()),
+                    rotateClockwise(root.getUpperRight())
+            );
+        }
+    }
+
+    /**
+     * Rotates a tree 180 degrees. Each quadrant is exchanged with the opposite quadrant.
+     */
+    public static RITQTNode rotateHalf(RITQTNode root) {
+        if (0 <= root.getVal()) {
+            return root;
+        } else {
+            return new RITQTNode(-1,
+                    rotateHalf(root.getLowerRight()),
+                    rotateHalf(root.getLowerLeft()),
+                    rotateHalf(root.getUpperRight()),
+                    rotateHalf(root.getUpperLeft())
+            );
+        }
+    }
+
+    /**
+     * Rotates a tree 90 degrees counterclockwise. The upper left quadrant of the result is the upper right quadrant of
+     * the tree.
+     */
+    public static RITQTNode rotateCounterClockwise(RITQTNode root) {
+        if (0 <= root.getVal()) {
+            return root;
+        } else {
+            return new RITQTNode(-1,
+                    rotateCounterClockwise(root.getUpperRight()),
+                    rotateCounterClockwise(root.getLowerRight()),
+                    rotateCounterClockwise(root.getUpperLeft()),
+                    rotateCounterClockwise(root.getLowerLeft())
+            );
+        }
+    }
+
+    /**
+     * Mirrors a tree across its vertical axis, exchanging left and right.
+     */
+    public static RITQTNode flipHorizontal(RITQTNode root) {
+        if (0 <= root.getVal()) {
+            return root;
+        } else {
+            return new RITQTNode(-1,
+                    flipHorizontal(root.getUpperRight()),
+                    flipHorizontal(root.getUpperLeft()),
+                    flipHorizontal(root.getLowerRight()),
+                    flipHorizontal(root.getLowerLeft())
+            );
+        }
+    }
+
+    /**
+     * Mirrors a tree across its horizontal axis, exchanging top and bottom.
+     */
+    public static RITQTNode flipVertical(RITQTNode root) {
+        if (0 <= root.getVal()) {
+            return root;
+        } else {
+            return new RITQTNode(-1,
+                    flipVertical(root.getLowerLeft()),
+                    flipVertical(root.getLowerRight()),
+                    flipVertical(root.getUpperLeft()),
+                    flipVertical(root.getUpperRight())
+            );
+        }
+    }
+
+    /**
+     * Inverts every color value of a tree, so that 0 becomes 255 and 255 becomes 0.
+     */
+    public static RITQTNode invert(RITQTNode root) {
+        return QuadTree.map(root, val -> 255 - val);
+    }
+
+    /**
+     * Replaces every color value below the threshold with 0 and every other color value with 255.
+     */
+    public static RITQTNode threshold(RITQTNode root, int threshold) {
+        return QuadTree.map(root, val -> val < threshold ? 0 : 255);
+    }
+
+    /**
+     * Replaces every color value with its entry in a table of 256 color values.
+     *
+     * @throws LoaderException.IntegralColorException Thrown when the table contains a value not in the range [0, 255]
+     */
+    public static RITQTNode remap(RITQTNode root, int[] table) throws LoaderException.IntegralColorException {
+        if (table.length != 256) {
+            throw new IllegalArgumentException("Remap table must contain 256 values: " + table.length);
+        }
+
+        for (int value : table) {
+            if (value < 0 || 255 < value) {
+                throw new LoaderException.IntegralColorException(value);
+            }
+        }
+
+        return QuadTree.map(root, val -> table[val]);
+    }
+
+    /**
+     * Provides a remap table that linearly stretches the range [black, white] to [0, 255]. Values outside of the range
+     * are clamped, and an empty range acts as a threshold at black.
+     */
+    public static int[] levelsTable(int black, int white) {
+        int[] table = new int[256];
+        for (int val = 0; val < 256; ++ val) {
+            table[val] = white <= black ? (val < black ? 0 : 255) : clamp(Math.round((val - black) * 255.0F / (white - black)));
+        }
+        return table;
+    }
+
+    /**
+     * Provides a remap table that applies gamma correction with the provided exponent.
+     */
+    public static int[] gammaTable(double gamma) {
+        int[] table = new int[256];
+        for (int val = 0; val < 256; ++ val) {
+            table[val] = clamp((int) Math.round(255 * Math.pow(val / 255.0D, 1 / gamma)));
+        }
+        return table;
+    }
+
+    /**
+     * Restricts a value to the range [0, 255].
+     */
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
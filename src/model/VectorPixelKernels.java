@@ -0,0 +1,73 @@
+package model;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The VectorPixelKernels class implements {@link PixelKernels} with the Vector API, comparing or storing as many pixels
+ * of a row as fit in the widest vector register of the processor at once. Parts of rows narrower than a vector are
+ * handled one pixel at a time, and blocks narrower than a vector are handled by the scalar kernels.
+ *
+ * <p>This class must only be loaded through {@link PixelKernels#preferred()}, which falls back to the scalar kernels
+ * when the jdk.incubator.vector module is not present.</p>
+ *
+ * @author Samuel Henderson
+ */
+class VectorPixelKernels extends PixelKernels {
+
+    /** The widest vector of integers supported by the processor. **/
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public boolean isUniform(int[] pixels, int stride, int row, int col, int size) {
+        if (size < SPECIES.length()) {
+            return scalar().isUniform(pixels, stride, row, col, size);
+        }
+
+        int val = pixels[row * stride + col];
+        IntVector expected = IntVector.broadcast(SPECIES, val);
+        int bound = SPECIES.loopBound(size);
+
+        for (int r = row; r < row + size; ++ r) {
+            int start = r * stride + col, i = 0;
+            for (; i < bound; i += SPECIES.length()) {
+                if (IntVector.fromArray(SPECIES, pixels, start + i).compare(VectorOperators.NE, expected).anyTrue()) {
+                    return false;
+                }
+            }
+            for (; i < size; ++ i) {
+                if (pixels[start + i] != val) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void fill(int[] pixels, int stride, int row, int col, int size, int val) {
+        if (size < SPECIES.length()) {
+            scalar().fill(pixels, stride, row, col, size, val);
+            return;
+        }
+
+        IntVector color = IntVector.broadcast(SPECIES, val);
+        int bound = SPECIES.loopBound(size);
+
+        for (int r = row; r < row + size; ++ r) {
+            int start = r * stride + col, i = 0;
+            for (; i < bound; i += SPECIES.length()) {
+                color.intoArray(pixels, start + i);
+            }
+            for (; i < size; ++ i) {
+                pixels[start + i] = val;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "vector (" + SPECIES.length() + " lanes)";
+    }
+}
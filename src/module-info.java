@@ -1,4 +1,20 @@
+/**
+ * The RIT module holds the image model and the command line programs, and has no dependency on JavaFX, so that the
+ * command line programs start without loading any graphical classes. The graphical application is the separate
+ * RIT.gui module, which reports loading errors through a {@link model.LoaderListener}.
+ *
+ * <p>Since the module depends only on the JDK, the command line programs can be given a minimal runtime image with a
+ * class-data sharing archive of its own, which shortens their startup further:
+ * {@code jlink --module-path out/RIT --add-modules RIT --generate-cds-archive --output rit-runtime}, after which they
+ * are run with {@code rit-runtime/bin/java -m RIT/ptui.RITCompress ...}. On a full JDK, an archive of the application
+ * classes can instead be recorded once the module is packaged as a jar, with
+ * {@code java -XX:ArchiveClassesAtExit=rit.jsa -p rit.jar -m RIT/ptui.RITCompress ...}, and used by later runs with
+ * {@code java -XX:SharedArchiveFile=rit.jsa -p rit.jar -m RIT/ptui.RITCompress ...}.</p>
+ */
 module RIT {
-    requires transitive javafx.controls;
-    exports gui;
-}
\ No newline at end of file
+    requires transitive jdk.httpserver;
+    requires jdk.management;
+    requires static jdk.incubator.vector;
+    exports model;
+    exports ptui;
+}
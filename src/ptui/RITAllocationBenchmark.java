@@ -0,0 +1,104 @@
+package ptui;
+
+import model.CompressionContext;
+import model.FileLoader;
+import model.LoaderException;
+import model.QuadTree;
+import model.RITQTNode;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The RITAllocationBenchmark class compares the memory allocated by repeatedly compressing and uncompressing an image
+ * through {@link FileLoader} and {@link QuadTree}, as {@link RITCompress} and {@link RITUncompress} do, with the memory
+ * allocated through a reused {@link CompressionContext}.
+ *
+ * <p>Allocation is measured in bytes allocated by the calling thread per compression or uncompression, as reported by
+ * the thread management bean of the virtual machine. Every measurement is preceded by warmup iterations, which are not
+ * measured, so that the buffers of the context have grown to fit the image.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class RITAllocationBenchmark {
+
+    /** The number of unmeasured and measured operations on each file. **/
+    private static final int WARMUP_ITERATIONS = 5, MEASURED_ITERATIONS = 20;
+
+    public static void main(String[] args) throws IOException, LoaderException {
+        if (args.length == 0) {
+            System.out.println("Usage: java RITAllocationBenchmark uncompressed.txt...");
+            return;
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.out.println("Allocation measurement is not supported by this virtual machine");
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        System.out.printf("%-24s %10s %16s %16s %16s %16s%n", "Image", "Pixels", "Loader comp B/op", "Context comp B/op", "Loader unc B/op", "Context unc B/op");
+        for (String source : args) {
+            String compressed = Files.createTempFile("allocation", ".rit").toString();
+            String uncompressed = Files.createTempFile("allocation", ".txt").toString();
+            CompressionContext context = CompressionContext.current();
+
+            long loaderCompress = measure(threads, () -> {
+                List<Integer> pixels = FileLoader.secureLoadFileContents(source);
+                int size = pixels.size();
+                RITQTNode root = QuadTree.fromUncompressedContents(pixels, 0, 0, (int) Math.sqrt(size));
+                FileLoader.secureWriteFileContents(RITCompress.toWriteValues(size, root), compressed);
+            });
+            long contextCompress = measure(threads, () -> context.compressFile(source, compressed));
+
+            long loaderUncompress = measure(threads, () -> {
+                List<Integer> values = FileLoader.secureLoadFileContents(compressed);
+                int dimension = (int) Math.sqrt(values.remove(0));
+                RITQTNode root = QuadTree.fromCompressedContents(values);
+                List<String> pixels = new ArrayList<>();
+                for (int[] row : QuadTree.extract(root, dimension)) {
+                    for (int value : row) {
+                        pixels.add(value + "");
+                    }
+                }
+                FileLoader.secureWriteFileContents(pixels, uncompressed);
+            });
+            long contextUncompress = measure(threads, () -> context.uncompressFile(compressed, uncompressed));
+
+            int dimension = context.uncompressFile(compressed, uncompressed);
+            System.out.printf("%-24s %10d %16d %16d %16d %16d%n", source, dimension * dimension, loaderCompress, contextCompress, loaderUncompress, contextUncompress);
+
+            Files.delete(Paths.get(compressed));
+            Files.delete(Paths.get(uncompressed));
+        }
+    }
+
+    /**
+     * Provides the average number of bytes allocated by the calling thread during one run of an operation.
+     */
+    private static long measure(com.sun.management.ThreadMXBean threads, Operation operation) throws IOException, LoaderException {
+        for (int i = 0; i < WARMUP_ITERATIONS; ++ i) {
+            operation.run();
+        }
+
+        long thread = Thread.currentThread().threadId();
+        long start = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < MEASURED_ITERATIONS; ++ i) {
+            operation.run();
+        }
+
+        return (threads.getThreadAllocatedBytes(thread) - start) / MEASURED_ITERATIONS;
+    }
+
+    /**
+     * A single compression or uncompression, which may fail as reading or writing would.
+     */
+    private interface Operation {
+        void run() throws IOException, LoaderException;
+    }
+}
@@ -0,0 +1,159 @@
+package ptui;
+
+import model.FileLoader;
+import model.ImageArchive;
+import model.LoaderException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The RITArchive class is a command line program that packs image files into archives, lists and verifies their
+ * entries, and extracts entries back into files. Archives are handled in {@link ImageArchive}.
+ *
+ * <p>Entries of an archive may be opened by every other program as if they were files, with a path of the form
+ * archive.rita!entry.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class RITArchive {
+
+    /** The file extensions of the images that are packed when a directory is provided. **/
+    private static final List<String> IMAGE_EXTENSIONS = Arrays.asList(".txt", ".pgm", ".raw", ".rit", ".ritd", ".rite");
+
+    /**
+     * Packs files into a new archive. Files are named by their file name, and files found in a directory are named by
+     * their path relative to that directory.
+     */
+    private static void create(String archive, String[] sources) throws IOException, LoaderException {
+        Map<String, String> members = new LinkedHashMap<>();
+
+        for (String source : sources) {
+            Path path = Paths.get(source);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> walk = Files.walk(path)) {
+                    for (Path file : walk.filter(RITArchive::isImage).sorted().collect(Collectors.toList())) {
+                        addMember(members, path.relativize(file).toString().replace(File.separatorChar, '/'), file);
+                    }
+                }
+            } else {
+                addMember(members, path.getFileName().toString(), path);
+            }
+        }
+
+        ImageArchive.create(archive, members);
+        System.out.println("Packed " + members.size() + " entries into: " + new File(archive).getAbsolutePath());
+    }
+
+    private static void addMember(Map<String, String> members, String name, Path file) {
+        if (members.putIfAbsent(name, file.toString()) != null) {
+            System.out.println("Duplicate entry name: " + name);
+            System.exit(-1);
+        }
+    }
+
+    private static boolean isImage(Path file) {
+        return Files.isRegularFile(file) && IMAGE_EXTENSIONS.stream().anyMatch(file.toString()::endsWith);
+    }
+
+    /**
+     * Prints the name, dimension, and length of every entry in an archive.
+     */
+    private static void list(String archive) throws IOException, LoaderException {
+        List<ImageArchive.Entry> entries = FileLoader.openArchive(archive).entries();
+        for (ImageArchive.Entry entry : entries) {
+            System.out.println(entry.name() + "\t" + entry.dimension() + "x" + entry.dimension() + "\t" + entry.length() + " bytes");
+        }
+        System.out.println(entries.size() + " entries");
+    }
+
+    /**
+     * Reads every entry of an archive, checking each against its checksum.
+     */
+    private static void verify(String archive) throws IOException, LoaderException {
+        ImageArchive opened = FileLoader.openArchive(archive);
+        int corrupt = 0;
+
+        for (ImageArchive.Entry entry : opened.entries()) {
+            try {
+                opened.read(entry.name());
+            } catch (LoaderException.CorruptArchiveException e) {
+                System.out.println(e.getMessage());
+                corrupt ++;
+            }
+        }
+
+        System.out.println("Verified " + opened.entries().size() + " entries, " + corrupt + " corrupt");
+        if (corrupt != 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Writes the provided entries of an archive, or every entry when none are provided, to files in a directory.
+     */
+    private static void extract(String archive, String directory, String[] names) throws IOException, LoaderException {
+        ImageArchive opened = FileLoader.openArchive(archive);
+        List<String> extracted = names.length == 0
+                ? opened.entries().stream().map(ImageArchive.Entry::name).collect(Collectors.toList())
+                : Arrays.asList(names);
+
+        for (String name : extracted) {
+            Path destination = Paths.get(directory).resolve(name).normalize();
+            if (!destination.startsWith(Paths.get(directory).normalize())) {
+                // Entry names may not escape the destination directory
+                throw new LoaderException.CorruptArchiveException(archive, "entry " + name + " is outside of the destination");
+            }
+            if (destination.getParent() != null) {
+                Files.createDirectories(destination.getParent());
+            }
+            Files.write(destination, opened.read(name));
+        }
+
+        System.out.println("Extracted " + extracted.size() + " entries to: " + new File(directory).getAbsolutePath());
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            // Handle missing or invalid argument(s)
+            System.out.println("Usage: java RITArchive create archive.rita <image|directory>...");
+            System.out.println("Usage: java RITArchive list archive.rita");
+            System.out.println("Usage: java RITArchive verify archive.rita");
+            System.out.println("Usage: java RITArchive extract archive.rita directory [entries...]");
+            System.out.println("Entries are opened by other programs as archive.rita" + FileLoader.ENTRY_SEPARATOR + "entry");
+            return;
+        }
+
+        try {
+            switch (args[0]) {
+                case "create":
+                    create(args[1], Arrays.copyOfRange(args, 2, args.length));
+                    break;
+                case "list":
+                    list(args[1]);
+                    break;
+                case "verify":
+                    verify(args[1]);
+                    break;
+                case "extract":
+                    extract(args[1], args.length > 2 ? args[2] : ".", Arrays.copyOfRange(args, Math.min(3, args.length), args.length));
+                    break;
+                default:
+                    System.out.println("Unknown command: " + args[0]);
+                    System.exit(-1);
+            }
+        } catch (IOException | LoaderException e) {
+            System.out.println("Archive failed: " + e.getMessage());
+            System.exit(-1);
+        }
+    }
+}
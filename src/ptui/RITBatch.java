@@ -0,0 +1,410 @@
+package ptui;
+
+import model.CompressionContext;
+import model.EntropyCodec;
+import model.FileLoader;
+import model.LoaderException;
+import model.LoaderListener;
+import model.MinMaxPyramid;
+import model.NodeCache;
+import model.QuadTree;
+import model.RITQTNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The RITBatch class is a command line program that compresses many uncompressed image files through a pipeline of
+ * stages, each on its own thread, connected by bounded queues.
+ *
+ * <p>The stages read a file with {@link FileLoader#secureLoadBytes(String)}, parse it with
+ * {@link FileLoader#secureParseFileContents(byte[], String)}, build its QuadTree, and write it with
+ * {@link FileLoader#secureWriteTree(int, RITQTNode, String)} or {@link FileLoader#secureWriteBytes(byte[], String)}. While
+ * one file is being built, the next is being read and parsed and the previous is being written, so the disk and the
+ * processor are both kept busy. A stage whose output queue is full waits for the next stage, so at most a few files are
+ * held in memory at once.</p>
+ *
+ * <p>Files compressed into the plain format are not parsed into a list; the build stage compresses their bytes
+ * directly with the {@link CompressionContext} of its thread, which reuses its buffers from one file to the next and
+ * creates no nodes. Images that the context cannot compress, such as those whose side length is not a power of two,
+ * are parsed and built as for the other formats.</p>
+ *
+ * <p>Files found in a directory are written at their path relative to that directory, so files of the same name in
+ * different subdirectories do not overwrite each other, and a batch in which two sources would still be written to the
+ * same destination is refused before any file is compressed. A file that cannot be read, parsed, built, or written fails
+ * only its own job, which the remaining stages pass along without handling.</p>
+ *
+ * <p>After the batch, the program prints the number of files handled and failed by each stage, the fraction of the
+ * batch spent working rather than waiting (utilization), and the average and maximum number of files waiting in the
+ * queue before each stage, followed by the reason each failed file failed. The stage with the highest utilization
+ * limits the throughput of the batch.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class RITBatch {
+
+    /** The default capacity of the queues between stages. **/
+    private static final int DEFAULT_QUEUE_CAPACITY = 4;
+
+    /** The file extension for uncompressed files **/
+    private static final String UNCOMP_EXTENSION = ".txt";
+
+    /**
+     * The Job class carries a single file through the stages of the pipeline. Each stage fills in the fields that the
+     * next stage requires and releases those it has consumed.
+     */
+    private static class Job {
+
+        /** The job that is passed through every queue after the last file, so that each stage ends. **/
+        private static final Job END = new Job(null, null);
+
+        private final String source, destination;
+
+        private byte[] contents;
+
+        private List<Integer> lineValues;
+
+        private int uncompressedSize;
+
+        private RITQTNode tree;
+
+        /** The contents of the compressed file when it was compressed by a {@link CompressionContext}. **/
+        private byte[] compressed;
+
+        /** The reason the job failed, or null while it has not failed. **/
+        private String failure;
+
+        private Job(String source, String destination) {
+            this.source = source;
+            this.destination = destination;
+        }
+    }
+
+    /**
+     * The JobFailedException class is thrown by the listener of {@link FileLoader} in place of exiting, so that a file
+     * that cannot be loaded or written fails only its own job.
+     */
+    private static class JobFailedException extends RuntimeException {
+
+        private JobFailedException(String message) {
+            super(message);
+        }
+    }
+
+    /** The listener installed for the batch, which fails the job being handled rather than the program. **/
+    private static final LoaderListener FAIL_JOB = message -> {
+        throw new JobFailedException(message);
+    };
+
+    /**
+     * Runs an action on a job that has not failed, recording the reason when the action fails.
+     *
+     * @return Whether the action failed the job
+     */
+    private static boolean handle(Consumer<Job> action, Job job) {
+        try {
+            action.accept(job);
+            return false;
+        } catch (RuntimeException e) {
+            // Release whatever the failed stage had not consumed
+            job.failure = e instanceof JobFailedException ? e.getMessage() : e.toString();
+            job.contents = null;
+            job.lineValues = null;
+            job.tree = null;
+            job.compressed = null;
+            return true;
+        }
+    }
+
+    /**
+     * The Stage class runs an action on every job taken from its input queue, passing each job to its output queue.
+     * Time spent on the action and the depth of the input queue are recorded. Jobs that failed in an earlier stage are
+     * passed on without running the action.
+     */
+    private static class Stage implements Runnable {
+
+        private final String name;
+
+        private final Consumer<Job> action;
+
+        private final BlockingQueue<Job> input, output;
+
+        /** The number of jobs handled, the number of those that failed, and the time spent handling them. **/
+        private long jobs, failed, busyNanos;
+
+        /** The sum and maximum of the depth of the input queue, sampled as each job is taken. **/
+        private long depthSum, maxDepth;
+
+        private Stage(String name, Consumer<Job> action, BlockingQueue<Job> input, BlockingQueue<Job> output) {
+            this.name = name;
+            this.action = action;
+            this.input = input;
+            this.output = output;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Job job = input.take();
+                    if (job == Job.END) {
+                        if (output != null) {
+                            output.put(Job.END);
+                        }
+                        return;
+                    }
+
+                    // The taken job is counted in the depth, so a stage that never waits samples at least 1
+                    int depth = input.size() + 1;
+                    depthSum += depth;
+                    maxDepth = Math.max(maxDepth, depth);
+
+                    if (job.failure == null) {
+                        long start = System.nanoTime();
+                        if (handle(action, job)) {
+                            failed ++;
+                        }
+                        busyNanos += System.nanoTime() - start;
+                        jobs ++;
+                    }
+
+                    if (output != null) {
+                        output.put(job);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private String report(long wallNanos) {
+            return String.format("%-8s %8d %8d %10.1f %12.1f%% %12.2f %10d", name, jobs, failed, busyNanos / 1e6,
+                    100.0 * busyNanos / wallNanos, jobs == 0 ? 0.0 : (double) depthSum / jobs, maxDepth);
+        }
+    }
+
+    private static void read(Job job) {
+        job.contents = FileLoader.secureLoadBytes(job.source);
+    }
+
+    private static void parse(Job job) {
+        if (isPlainFormat(job.destination)) {
+            // The contents are compressed directly by the build stage
+            return;
+        }
+        job.lineValues = FileLoader.secureParseFileContents(job.contents, job.source);
+        job.contents = null;
+    }
+
+    private static void build(Job job) {
+        if (job.contents != null) {
+            try {
+                job.compressed = CompressionContext.current().compress(job.contents);
+                job.contents = null;
+                return;
+            } catch (LoaderException e) {
+                // Parsed and built as for the other formats, so the image succeeds or fails exactly as it would there
+                job.lineValues = FileLoader.secureParseFileContents(job.contents, job.source);
+                job.contents = null;
+            }
+        }
+
+        // Identical subtrees are shared when the destination is in the shared format
+        NodeCache cache = FileLoader.isSharedFormat(job.destination) ? new NodeCache() : null;
+
+        job.uncompressedSize = job.lineValues.size();
+        int dimension = (int) Math.sqrt(job.uncompressedSize);
+        if ((dimension & (dimension - 1)) == 0) {
+            job.tree = QuadTree.fromPyramid(MinMaxPyramid.of(job.lineValues), 0, 0, dimension, cache);
+        } else {
+            job.tree = QuadTree.fromUncompressedContents(job.lineValues, 0, 0, dimension, cache);
+        }
+        job.lineValues = null;
+    }
+
+    private static void write(Job job) {
+        if (job.compressed != null) {
+            FileLoader.secureWriteBytes(job.compressed, job.destination);
+            job.compressed = null;
+            return;
+        }
+        if (FileLoader.isEntropyFormat(job.destination)) {
+            FileLoader.secureWriteBytes(EntropyCodec.encode(job.tree, job.uncompressedSize), job.destination);
+        } else {
+            FileLoader.secureWriteTree(job.uncompressedSize, job.tree, job.destination);
+        }
+        job.tree = null;
+    }
+
+    private static boolean isPlainFormat(String path) {
+        return !FileLoader.isSharedFormat(path) && !FileLoader.isEntropyFormat(path);
+    }
+
+    /**
+     * Compresses every job through the pipeline, then prints the report of each stage.
+     */
+    private static void runPipeline(List<Job> jobs, int capacity) throws InterruptedException {
+        List<BlockingQueue<Job>> queues = new ArrayList<>();
+        for (int i = 0; i < 4; ++ i) {
+            queues.add(new ArrayBlockingQueue<>(capacity));
+        }
+
+        Stage[] stages = {
+                new Stage("read",  RITBatch::read,  queues.get(0), queues.get(1)),
+                new Stage("parse", RITBatch::parse, queues.get(1), queues.get(2)),
+                new Stage("build", RITBatch::build, queues.get(2), queues.get(3)),
+                new Stage("write", RITBatch::write, queues.get(3), null)
+        };
+
+        long start = System.nanoTime();
+        List<Thread> threads = new ArrayList<>();
+        for (Stage stage : stages) {
+            Thread thread = new Thread(stage, "RITBatch-" + stage.name);
+            thread.start();
+            threads.add(thread);
+        }
+
+        // Files are fed into the first queue, waiting whenever it is full
+        for (Job job : jobs) {
+            queues.get(0).put(job);
+        }
+        queues.get(0).put(Job.END);
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long wallNanos = System.nanoTime() - start;
+
+        System.out.printf("%-8s %8s %8s %10s %13s %12s %10s%n", "Stage", "Files", "Failed", "Busy ms", "Utilization", "Avg queue", "Max queue");
+        for (Stage stage : stages) {
+            System.out.println(stage.report(wallNanos));
+        }
+        int compressed = reportFailures(jobs);
+        System.out.printf("Compressed %d files in %.1f ms (%.1f files/s)%n", compressed, wallNanos / 1e6, compressed / (wallNanos / 1e9));
+    }
+
+    /**
+     * Prints the reason each failed job failed.
+     *
+     * @return The number of jobs that did not fail
+     */
+    private static int reportFailures(List<Job> jobs) {
+        int compressed = 0;
+        for (Job job : jobs) {
+            if (job.failure == null) {
+                compressed ++;
+            } else {
+                System.out.println("Failed: " + job.source + ": " + job.failure);
+            }
+        }
+        return compressed;
+    }
+
+    /**
+     * Compresses every job one step after another on the calling thread, for comparison with the pipeline.
+     */
+    private static void runSequential(List<Job> jobs) {
+        long start = System.nanoTime();
+        for (Job job : jobs) {
+            if (!handle(RITBatch::read, job) && !handle(RITBatch::parse, job) && !handle(RITBatch::build, job)) {
+                handle(RITBatch::write, job);
+            }
+        }
+        long wallNanos = System.nanoTime() - start;
+
+        int compressed = reportFailures(jobs);
+        System.out.printf("Compressed %d files sequentially in %.1f ms (%.1f files/s)%n", compressed, wallNanos / 1e6, compressed / (wallNanos / 1e9));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String format = "rit";
+        int capacity = DEFAULT_QUEUE_CAPACITY, next = 0;
+        boolean sequential = false;
+
+        // Parse options
+        try {
+            for (; next < args.length && args[next].startsWith("--"); ++ next) {
+                switch (args[next]) {
+                    case "--format":
+                        format = args[++ next];
+                        break;
+                    case "--queue":
+                        capacity = Integer.parseInt(args[++ next]);
+                        break;
+                    case "--sequential":
+                        sequential = true;
+                        break;
+                    default:
+                        throw new IllegalArgumentException(args[next]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            next = args.length;
+        }
+
+        if (args.length - next < 2 || capacity < 1 || !(format.equals("rit") || format.equals("ritd") || format.equals("rite"))) {
+            // Handle missing or invalid argument(s)
+            System.out.println("Usage: java RITBatch [--format rit|ritd|rite] [--queue capacity] [--sequential] destinationDirectory <uncompressed.txt|directory>...");
+            return;
+        }
+
+        // Collect every file to be compressed, expanding directories into paths relative to the directory
+        Path destination = Paths.get(args[next]);
+        List<Job> jobs = new ArrayList<>();
+        Map<Path, Path> sourceOf = new HashMap<>();
+        try {
+            Files.createDirectories(destination);
+            for (int i = next + 1; i < args.length; ++ i) {
+                Path path = Paths.get(args[i]);
+                List<Path> sources;
+                if (Files.isDirectory(path)) {
+                    try (Stream<Path> walk = Files.walk(path)) {
+                        sources = walk.filter(file -> Files.isRegularFile(file) && file.toString().endsWith(UNCOMP_EXTENSION)).sorted().collect(Collectors.toList());
+                    }
+                } else {
+                    sources = List.of(path);
+                }
+
+                for (Path source : sources) {
+                    Path relative = Files.isDirectory(path) ? path.relativize(source) : source.getFileName();
+                    String name = relative.getFileName().toString();
+                    name = name.endsWith(UNCOMP_EXTENSION) ? name.substring(0, name.length() - UNCOMP_EXTENSION.length()) : name;
+                    Path output = destination.resolve(relative).resolveSibling(name + "." + format).normalize();
+
+                    Path previous = sourceOf.putIfAbsent(output, source);
+                    if (previous != null) {
+                        System.out.println("Failed: " + previous + " and " + source + " would both be written to " + output);
+                        System.exit(-1);
+                    }
+                    Files.createDirectories(output.getParent());
+                    jobs.add(new Job(source.toString(), output.toString()));
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Failed to read sources: " + e.getMessage());
+            System.exit(-1);
+        }
+
+        // A file that cannot be loaded or written fails its own job rather than exiting
+        FileLoader.setListener(FAIL_JOB);
+
+        System.out.println("Compressing " + jobs.size() + " files to: " + new File(args[next]).getAbsolutePath());
+        if (sequential) {
+            runSequential(jobs);
+        } else {
+            runPipeline(jobs, capacity);
+        }
+    }
+}
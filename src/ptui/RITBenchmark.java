@@ -0,0 +1,89 @@
+package ptui;
+
+import model.EntropyCodec;
+import model.FileLoader;
+import model.LoaderException;
+import model.QuadTree;
+import model.RITQTNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * The RITBenchmark class compares the text compressed format with the entropy coded format for a set of uncompressed
+ * images, reporting the size of each format in bytes per pixel and the rate at which each is decoded to pixels.
+ *
+ * <p>Decode rates are measured in megabytes of decoded pixels per second, counting one byte per pixel. Text files are
+ * read, parsed, and extracted as {@link RITUncompress} would. Entropy coded files are read and decoded into a reused
+ * pixel buffer with {@link EntropyCodec.Decoder#decodeInto(byte[], int[])}. Every measurement is preceded by warmup
+ * iterations, which are not timed.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class RITBenchmark {
+
+    /** The number of untimed and timed decodes of each file. **/
+    private static final int WARMUP_ITERATIONS = 5, TIMED_ITERATIONS = 10;
+
+    public static void main(String[] args) throws IOException, LoaderException.MalformedTreeException {
+        if (args.length == 0) {
+            System.out.println("Usage: java RITBenchmark uncompressed.txt...");
+            return;
+        }
+
+        System.out.printf("%-24s %10s %12s %12s %14s %14s%n", "Image", "Pixels", "Text B/px", "Entropy B/px", "Text MB/s", "Entropy MB/s");
+        for (String source : args) {
+            List<Integer> pixels = FileLoader.secureLoadFileContents(source);
+            int size = pixels.size(), dimension = (int) Math.sqrt(size);
+            RITQTNode root = QuadTree.fromUncompressedContents(pixels, 0, 0, dimension);
+
+            // Write both formats to temporary files so that decoding includes reading from disk
+            String text = Files.createTempFile("benchmark", ".rit").toString();
+            String entropy = Files.createTempFile("benchmark", ".rite").toString();
+            FileLoader.secureWriteFileContents(RITCompress.toWriteValues(size, root), text);
+            FileLoader.secureWriteBytes(EntropyCodec.encode(root, size), entropy);
+
+            double textRate = measure(() -> {
+                List<Integer> values = FileLoader.secureLoadFileContents(text);
+                int dim = (int) Math.sqrt(values.remove(0));
+                QuadTree.extract(QuadTree.fromCompressedContents(values), dim);
+            }, size);
+
+            EntropyCodec.Decoder decoder = new EntropyCodec.Decoder();
+            int[] buffer = new int[size];
+            double entropyRate = measure(() -> decoder.decodeInto(Files.readAllBytes(Paths.get(entropy)), buffer), size);
+
+            System.out.printf("%-24s %10d %12.4f %12.4f %14.2f %14.2f%n", source, size,
+                    (double) Files.size(Paths.get(text)) / size, (double) Files.size(Paths.get(entropy)) / size, textRate, entropyRate);
+
+            Files.delete(Paths.get(text));
+            Files.delete(Paths.get(entropy));
+        }
+    }
+
+    /**
+     * Provides the rate in megabytes of pixels per second at which a decode of the provided number of pixels runs.
+     */
+    private static double measure(Decode decode, int pixels) throws IOException, LoaderException.MalformedTreeException {
+        for (int i = 0; i < WARMUP_ITERATIONS; ++ i) {
+            decode.run();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < TIMED_ITERATIONS; ++ i) {
+            decode.run();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        return (double) pixels * TIMED_ITERATIONS / seconds / 1e6;
+    }
+
+    /**
+     * A single decode of a file, which may fail as reading or decoding would.
+     */
+    private interface Decode {
+        void run() throws IOException, LoaderException.MalformedTreeException;
+    }
+}
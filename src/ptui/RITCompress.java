@@ -1,10 +1,22 @@
 package ptui;
 
+import model.BandCompressor;
+import model.BinaryImage;
+import model.EntropyCodec;
 import model.FileLoader;
+import model.ImageStream;
+import model.LoaderException;
+import model.LossyCompressor;
+import model.MinMaxPyramid;
+import model.NodeCache;
 import model.QuadTree;
 import model.RITQTNode;
 
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -28,11 +40,44 @@ public class RITCompress {
      * Facilitates the process of compressing the file provided as an argument in the command line.
      */
     public static List<String> compress(String source) {
+        return compress(source, null);
+    }
+
+    /**
+     * Compresses the file at the provided source path. When a {@link NodeCache} is provided, structurally identical
+     * subtrees are shared as the tree is built and the values are written in the shared format.
+     */
+    public static List<String> compress(String source, NodeCache cache) {
+        if (BinaryImage.isBinaryImage(source)) {
+            // Binary images are read straight into a pixel array, which is always a power of two square
+            int[] pixels = FileLoader.secureLoadPixels(source);
+            uncompressedSize = pixels.length;
+
+            int dimension = (int) Math.sqrt(uncompressedSize);
+            treeContents = QuadTree.fromPyramid(MinMaxPyramid.of(pixels, dimension), 0, 0, dimension, cache);
+
+            return cache == null ? toWriteValues(uncompressedSize, treeContents) : toSharedWriteValues(uncompressedSize, treeContents);
+        }
+
         // Read the contents of the file to be compressed (the source) and convert into a QuadTree structure
         List<Integer> fileValues = FileLoader.secureLoadFileContents(source);
         uncompressedSize = fileValues.size();
 
-        treeContents = QuadTree.fromUncompressedContents(fileValues, 0, 0, (int) Math.sqrt(uncompressedSize));
+        int dimension = (int) Math.sqrt(uncompressedSize);
+        if ((dimension & (dimension - 1)) == 0) {
+            // Quadrants are tested for uniformity through the pyramid rather than by scanning their pixels
+            treeContents = QuadTree.fromPyramid(MinMaxPyramid.of(fileValues), 0, 0, dimension, cache);
+        } else {
+            treeContents = QuadTree.fromUncompressedContents(fileValues, 0, 0, dimension, cache);
+        }
+
+        return cache == null ? toWriteValues(uncompressedSize, treeContents) : toSharedWriteValues(uncompressedSize, treeContents);
+    }
+
+    /**
+     * Provides the lines of a compressed image file: the uncompressed size followed by the preorder of the tree.
+     */
+    public static List<String> toWriteValues(int uncompressedSize, RITQTNode treeContents) {
         String preorder = QuadTree.preorder(treeContents);
         String[] compressed = preorder.split(" ");
 
@@ -42,6 +87,24 @@ public class RITCompress {
         return writeValues;
     }
 
+    /**
+     * Provides the lines of a compressed image file in the shared format, in which each distinct subtree is written once.
+     */
+    public static List<String> toSharedWriteValues(int uncompressedSize, RITQTNode treeContents) {
+        StringBuilder preorder = new StringBuilder();
+        try {
+            QuadTree.sharedPreorder(treeContents, preorder, " ");
+        } catch (IOException e) {
+            // A StringBuilder never throws an IOException
+            throw new UncheckedIOException(e);
+        }
+
+        List<String> writeValues = new ArrayList<>(Collections.singleton("" + uncompressedSize));
+        writeValues.addAll(Arrays.asList(preorder.toString().split(" ")));
+
+        return writeValues;
+    }
+
     /** Access treeContents. **/
     public static RITQTNode treeContents() {
         return treeContents;
@@ -52,27 +115,191 @@ public class RITCompress {
         return uncompressedSize;
     }
 
+    /**
+     * Compresses an image file that is too large to be loaded into memory with {@link BandCompressor}. Arguments are
+     * the destination, the source, and an optional tile size.
+     */
+    private static void compressOutOfCore(String[] args) {
+        String source = args[2], destination = args[1];
+        System.out.println("Compressing in bands: " + source);
+
+        if (FileLoader.isSharedFormat(destination) || FileLoader.isEntropyFormat(destination)) {
+            System.out.println("Out-of-core compression writes the compressed.rit format only");
+            System.exit(-1);
+        }
+
+        try {
+            int tileSize = args.length > 3 ? Integer.parseInt(args[3]) : BandCompressor.DEFAULT_TILE_SIZE;
+            long comp = BandCompressor.compress(source, destination, tileSize);
+
+            System.out.println("Output file: " + new File(destination).getAbsolutePath());
+            System.out.println("Compressed image size: " + comp);
+        } catch (IOException | LoaderException | IllegalArgumentException e) {
+            // Handle unreadable files, invalid images, and invalid tile sizes
+            System.out.println("Failed to compress: " + e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Provides the size in bytes of the file that would be written for a tree, in the format of the destination.
+     */
+    public static long writtenSize(int uncompressedSize, RITQTNode treeContents, String destination) {
+        if (FileLoader.isEntropyFormat(destination)) {
+            return EntropyCodec.encode(treeContents, uncompressedSize).length;
+        }
+
+        List<String> writeValues = FileLoader.isSharedFormat(destination)
+                ? toSharedWriteValues(uncompressedSize, new NodeCache().intern(treeContents))
+                : toWriteValues(uncompressedSize, treeContents);
+
+        long size = 0;
+        for (String value : writeValues) {
+            size += value.length() + System.lineSeparator().length();
+        }
+        return size;
+    }
+
+    /**
+     * Compresses an image file with {@link LossyCompressor}. Arguments are the mode (--lossy or --target-size), the
+     * criterion (deviation or variance), the tolerance or size budget in bytes, the destination, and the source.
+     */
+    private static void compressLossy(String[] args) {
+        String source = args[4], destination = args[3];
+        System.out.println("Compressing lossily: " + source);
+
+        LossyCompressor.Criterion criterion;
+        double tolerance;
+        long budget;
+        try {
+            criterion = LossyCompressor.Criterion.valueOf(args[1].toUpperCase());
+            tolerance = args[0].equals("--lossy") ? Double.parseDouble(args[2]) : 0;
+            budget = args[0].equals("--target-size") ? Long.parseLong(args[2]) : 0;
+        } catch (IllegalArgumentException e) {
+            // Handle unknown criteria and non-numeric tolerances and budgets
+            System.out.println("Invalid lossy compression arguments: " + e.getMessage());
+            System.exit(-1);
+            return;
+        }
+
+        List<Integer> fileValues = FileLoader.secureLoadFileContents(source);
+        uncompressedSize = fileValues.size();
+
+        LossyCompressor compressor;
+        try {
+            compressor = LossyCompressor.of(fileValues);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Failed to compress: " + e.getMessage());
+            System.exit(-1);
+            return;
+        }
+
+        if (args[0].equals("--lossy")) {
+            treeContents = compressor.compress(criterion, tolerance);
+        } else {
+            LossyCompressor.Result result = compressor.compressToSize(criterion, budget, tree -> writtenSize(uncompressedSize, tree, destination));
+            treeContents = result.root();
+            tolerance = result.tolerance();
+
+            if (budget < result.size()) {
+                System.out.println("No tolerance meets the budget of " + budget + " bytes; writing a single color");
+            }
+        }
+        System.out.println("Tolerance (" + criterion.name().toLowerCase() + "): " + tolerance);
+
+        // Write the tree in the format of the destination
+        double uncm = uncompressedSize, comp;
+        if (FileLoader.isEntropyFormat(destination)) {
+            byte[] bytes = EntropyCodec.encode(treeContents, uncompressedSize);
+            FileLoader.secureWriteBytes(bytes, destination);
+            comp = bytes.length;
+        } else {
+            List<String> writeValues = FileLoader.isSharedFormat(destination)
+                    ? toSharedWriteValues(uncompressedSize, new NodeCache().intern(treeContents))
+                    : toWriteValues(uncompressedSize, treeContents);
+            FileLoader.secureWriteFileContents(writeValues, destination);
+            comp = writeValues.size();
+        }
+        System.out.println("Output file: " + new File(destination).getAbsolutePath());
+
+        System.out.println("Uncompressed image size: " + uncm);
+        System.out.println("Compressed image size: " + comp);
+        System.out.println("Compressed file size: " + new File(destination).length() + " bytes");
+        System.out.println("Compression: " + (uncm - comp) / uncm * 100.0D + "%");
+        double psnr = compressor.psnr(treeContents);
+        System.out.println("PSNR: " + (Double.isInfinite(psnr) ? "infinite (lossless)" : String.format("%.2f dB", psnr)));
+    }
+
+    /**
+     * Compresses an image read from standard input into a compressed image written to standard output with
+     * {@link ImageStream}. Arguments are the source format, the destination format, and an optional side length of a
+     * text source. Nothing but the image is written to standard output, so messages are written to standard error.
+     */
+    private static void compressStream(String[] args) {
+        try {
+            int dimension = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+            ImageStream.compress(System.in, ImageStream.Format.of(args[1]), new FileOutputStream(FileDescriptor.out), ImageStream.Format.of(args[2]), dimension);
+        } catch (IOException | LoaderException | IllegalArgumentException e) {
+            // Handle closed streams, invalid images, and invalid formats or dimensions
+            System.err.println("Failed to compress: " + e.getMessage());
+            System.exit(-1);
+        }
+    }
+
     public static void main(String[] args) {
-        if (args.length != 2) {
-            // Handle missing or invalid argument(s)
-            System.out.println("Usage: java RITCompress compressed.rit uncompressed.txt");
+        if ((args.length == 3 || args.length == 4) && args[0].equals("--stream")) {
+            compressStream(args);
+        } else if ((args.length == 3 || args.length == 4) && args[0].equals("--out-of-core")) {
+            compressOutOfCore(args);
+        } else if (args.length == 5 && (args[0].equals("--lossy") || args[0].equals("--target-size"))) {
+            compressLossy(args);
+        } else if (args.length < 2 || args[0].startsWith("--")) {
+            // Handle missing or invalid argument(s), including a mode given the wrong number of arguments, which would
+            // otherwise be compressed as though the mode were a destination
+            System.out.println("Usage: java RITCompress compressed.rit uncompressed.txt|image.pgm|image.raw [operations...]\n" + RITTransform.OPERATIONS_USAGE);
+            System.out.println("A compressed.ritd destination writes each distinct subtree once.");
+            System.out.println("A compressed.rite destination writes an entropy coded binary file.");
+            System.out.println("Binary P5 .pgm and square 8-bit .raw sources are padded to a power of two square.");
+            System.out.println("Usage: java RITCompress --out-of-core compressed.rit uncompressed.txt [tileSize]");
+            System.out.println("Usage: java RITCompress --stream txt|pgm rit|ritd|rite [dimension] < source > destination");
+            System.out.println("Usage: java RITCompress --lossy deviation|variance tolerance compressed.rit uncompressed.txt");
+            System.out.println("Usage: java RITCompress --target-size deviation|variance bytes compressed.rit uncompressed.txt");
         } else {
             String source = args[1], destination = args[0];
             System.out.println("Compressing: " + source);
 
-            // Perform compression
-            List<String> writeValues = compress(source);
+            // Perform compression, sharing identical subtrees for the shared format
+            boolean shared = FileLoader.isSharedFormat(destination);
+            NodeCache cache = shared ? new NodeCache() : null;
+            List<String> writeValues = compress(source, cache);
+
+            if (args.length > 2) {
+                // Transform the compressed tree before it is written
+                treeContents = RITTransform.applyOperations(treeContents, (int) Math.sqrt(uncompressedSize), args, 2);
+                treeContents = shared ? cache.intern(treeContents) : treeContents;
+                writeValues = shared ? toSharedWriteValues(uncompressedSize, treeContents) : toWriteValues(uncompressedSize, treeContents);
+            }
             System.out.println("QuadTree: " + QuadTree.preorder(treeContents()));
 
-            // Write compressed data to the output file
-            FileLoader.secureWriteFileContents(writeValues, destination);
+            double uncm = RITCompress.uncompressedSize(), comp = writeValues.size();
+            if (FileLoader.isEntropyFormat(destination)) {
+                // Entropy coded files are binary, so their size is measured in bytes against one byte per pixel
+                byte[] bytes = EntropyCodec.encode(treeContents, uncompressedSize);
+                FileLoader.secureWriteBytes(bytes, destination);
+                comp = bytes.length;
+            } else {
+                // Write compressed data to the output file
+                FileLoader.secureWriteFileContents(writeValues, destination);
+            }
             System.out.println("Output file: " + new File(destination).getAbsolutePath());
 
             // Print compression information
-            double uncm = RITCompress.uncompressedSize(), comp = writeValues.size();
             System.out.println("Uncompressed image size: " + uncm);
             System.out.println("Compressed image size: " + comp);
             System.out.println("Compression: " + (uncm - comp) / uncm * 100.0D + "%");
+
+            // Lossless compression reproduces every pixel, so the PSNR is only finite once the image is transformed
+            System.out.println("PSNR: " + (args.length > 2 ? "not applicable (transformed)" : "infinite (lossless)"));
         }
     }
 }
@@ -0,0 +1,50 @@
+package ptui;
+
+import model.CompressedImage;
+import model.FileLoader;
+import model.TreeCombiner;
+
+import java.io.File;
+
+/**
+ * The RITDiff class is a command line program that compares two compressed images of the same size without
+ * uncompressing them. Comparison is handled in {@link TreeCombiner}. Each image, and the difference image, may be in
+ * any compressed format, chosen by its extension.
+ *
+ * @author Samuel Henderson
+ */
+public class RITDiff {
+
+    public static void main(String[] args) {
+        if (args.length != 2 && args.length != 3) {
+            // Handle missing or invalid argument(s)
+            System.out.println("Usage: java RITDiff reference.rit compared.rit [difference.rit]");
+        } else {
+            CompressedImage reference = FileLoader.secureLoadCompressed(args[0]);
+            CompressedImage compared = FileLoader.secureLoadCompressed(args[1]);
+            if (reference == null || compared == null) {
+                return;
+            }
+
+            if (reference.dimension() != compared.dimension()) {
+                System.out.println("Images differ in size and cannot be compared");
+                System.exit(-1);
+            }
+
+            int dimension = reference.dimension();
+            TreeCombiner.Combination difference = TreeCombiner.difference(reference.root(), compared.root(), dimension);
+
+            // Print comparison information
+            System.out.println("Comparing: " + args[0] + " to " + args[1]);
+            System.out.println("Differing pixels: " + difference.differingArea());
+            System.out.println("Differing regions: " + difference.differingRegions());
+            System.out.println("Difference: " + difference.differingFraction(dimension) * 100.0D + "%");
+
+            if (args.length == 3) {
+                // Write the difference image in the compressed format of its extension
+                FileLoader.secureWriteCompressed(reference.uncompressedSize(), difference.tree(), args[2]);
+                System.out.println("Output file: " + new File(args[2]).getAbsolutePath());
+            }
+        }
+    }
+}
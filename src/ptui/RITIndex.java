@@ -0,0 +1,130 @@
+package ptui;
+
+import model.FileLoader;
+import model.LoaderException;
+import model.QuadTree;
+import model.RITQTNode;
+import model.SubtreeIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The RITIndex class is a command line program that writes and uses the {@link SubtreeIndex} of a compressed file.
+ *
+ * <p>Commands:</p>
+ * <ul>
+ *     <li>build: writes the index of a compressed file beside it, after which {@link RITUncompress} decodes the file in
+ *     parallel</li>
+ *     <li>region: extracts a region of a compressed file into an uncompressed file, decoding only the subtrees that the
+ *     region touches</li>
+ *     <li>benchmark: compares sequential decoding with parallel decoding and with lazily extracting a small region, and
+ *     times reading the index, which a region extraction must do first</li>
+ * </ul>
+ *
+ * @author Samuel Henderson
+ */
+public class RITIndex {
+
+    /** The number of untimed and timed decodes of each kind. **/
+    private static final int WARMUP_ITERATIONS = 5, TIMED_ITERATIONS = 10;
+
+    /** The side length of the region extracted by the benchmark. **/
+    private static final int BENCHMARK_REGION = 64;
+
+    private static void build(String source, int depth) throws IOException, LoaderException {
+        SubtreeIndex index = SubtreeIndex.build(source, depth);
+        String indexPath = SubtreeIndex.indexPath(source);
+        index.write(indexPath);
+
+        System.out.println("Indexed " + source + " to depth " + index.depth());
+        System.out.println("Output file: " + new File(indexPath).getAbsolutePath() + " (" + new File(indexPath).length() + " bytes)");
+    }
+
+    private static void region(String source, String destination, int row, int col, int height, int width) throws IOException, LoaderException {
+        ByteBuffer contents = SubtreeIndex.map(source);
+        SubtreeIndex index = SubtreeIndex.read(source, contents);
+
+        int[][] region = QuadTree.extractRegion(index.decodeLazy(contents), index.dimension(), row, col, height, width);
+        List<String> writeValues = new ArrayList<>();
+        for (int[] values : region) {
+            for (int value : values) {
+                writeValues.add(value + "");
+            }
+        }
+        FileLoader.secureWriteFileContents(writeValues, destination);
+
+        System.out.println("Output file: " + new File(destination).getAbsolutePath());
+        System.out.println("Subtrees decoded: " + index.loadedSubtrees());
+    }
+
+    private static void benchmark(String source) throws IOException, LoaderException {
+        ByteBuffer contents = SubtreeIndex.map(source);
+        SubtreeIndex index = SubtreeIndex.read(source, contents);
+        int region = Math.min(BENCHMARK_REGION, index.dimension());
+
+        double sequential = measure(() -> {
+            List<Integer> values = FileLoader.secureLoadFileContents(source);
+            values.remove(0);
+            QuadTree.fromCompressedContents(values);
+        });
+        double parallel = measure(() -> index.decodeParallel(contents));
+        double lazy = measure(() -> QuadTree.extractRegion(index.decodeLazy(contents), index.dimension(), 0, 0, region, region));
+        double read = measure(() -> SubtreeIndex.read(source, contents));
+
+        System.out.printf("Sequential decode:          %10.2f ms%n", sequential);
+        System.out.printf("Parallel decode (%d threads): %8.2f ms%n", Runtime.getRuntime().availableProcessors(), parallel);
+        System.out.printf("Lazy %dx%d region:          %10.2f ms%n", region, region, lazy);
+        System.out.printf("Index read:                 %10.2f ms%n", read);
+    }
+
+    /**
+     * Provides the average time in milliseconds of an operation.
+     */
+    private static double measure(Operation operation) throws IOException, LoaderException {
+        for (int i = 0; i < WARMUP_ITERATIONS; ++ i) {
+            operation.run();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < TIMED_ITERATIONS; ++ i) {
+            operation.run();
+        }
+        return (System.nanoTime() - start) / 1e6 / TIMED_ITERATIONS;
+    }
+
+    /**
+     * A single decode or read, which may fail as decoding or reading would.
+     */
+    private interface Operation {
+        void run() throws IOException, LoaderException;
+    }
+
+    public static void main(String[] args) {
+        try {
+            if (args.length >= 2 && args.length <= 3 && args[0].equals("build")) {
+                build(args[1], args.length == 3 ? Integer.parseInt(args[2]) : SubtreeIndex.DEFAULT_DEPTH);
+                return;
+            } else if (args.length == 7 && args[0].equals("region")) {
+                region(args[1], args[2], Integer.parseInt(args[3]), Integer.parseInt(args[4]), Integer.parseInt(args[5]), Integer.parseInt(args[6]));
+                return;
+            } else if (args.length == 2 && args[0].equals("benchmark")) {
+                benchmark(args[1]);
+                return;
+            }
+        } catch (IOException | LoaderException | IllegalArgumentException | IllegalStateException e) {
+            // Handle unreadable files, invalid files and indexes, files found not to match their index as they are
+            // decoded lazily, and invalid numbers and regions
+            System.out.println("Failed: " + e.getMessage());
+            System.exit(-1);
+        }
+
+        // Handle missing or invalid argument(s)
+        System.out.println("Usage: java RITIndex build compressed.rit [depth]");
+        System.out.println("Usage: java RITIndex region compressed.rit uncompressed.txt row col height width");
+        System.out.println("Usage: java RITIndex benchmark compressed.rit");
+    }
+}
@@ -0,0 +1,180 @@
+package ptui;
+
+import model.BinaryImage;
+import model.FileLoader;
+import model.FrameSequence;
+import model.LoaderException;
+import model.QuadTree;
+import model.RITQTNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The RITSequence class is a command line program that writes and reads sequences of frames stored as keyframes and
+ * deltas by {@link FrameSequence}.
+ *
+ * <p>Commands:</p>
+ * <ul>
+ *     <li>create: writes a sequence from frames in any format read by {@link RITUncompress} or any uncompressed
+ *     format, all of the same dimension</li>
+ *     <li>info: lists the kind and length of every frame</li>
+ *     <li>extract: writes a single frame to a compressed, uncompressed, or binary image file</li>
+ *     <li>play: decodes every frame in order into one pixel buffer and reports the frame rate, then seeks to every
+ *     frame in reverse order and reports the average seek time</li>
+ * </ul>
+ *
+ * @author Samuel Henderson
+ */
+public class RITSequence {
+
+    private static void create(String destination, int keyframeInterval, String[] frames, int start) throws IOException {
+        int dimension = -1;
+        long sourceBytes = 0;
+
+        FrameSequence.Writer writer = null;
+        try {
+            for (int i = start; i < frames.length; ++ i) {
+                int[] frameDimension = { 0 };
+                RITQTNode root = loadFrame(frames[i], frameDimension);
+                if (writer == null) {
+                    dimension = frameDimension[0];
+                    writer = FrameSequence.create(destination, dimension, keyframeInterval);
+                } else if (frameDimension[0] != dimension) {
+                    throw new IllegalArgumentException("Frame " + frames[i] + " is " + frameDimension[0] + "x" + frameDimension[0] + " rather than " + dimension + "x" + dimension);
+                }
+
+                writer.append(root);
+                sourceBytes += new File(frames[i]).length();
+            }
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+
+        long written = new File(destination).length();
+        System.out.println("Frames: " + (frames.length - start) + " (" + dimension + "x" + dimension + ", keyframe every " + keyframeInterval + ")");
+        System.out.println("Output file: " + new File(destination).getAbsolutePath() + " (" + written + " bytes)");
+        System.out.println("Frame files: " + sourceBytes + " bytes");
+    }
+
+    /**
+     * Loads a frame into a QuadTree data structure, storing its side length in the provided array.
+     */
+    private static RITQTNode loadFrame(String path, int[] dimension) {
+        if (BinaryImage.isBinaryImage(path)) {
+            int[] pixels = FileLoader.secureLoadPixels(path);
+            dimension[0] = (int) Math.sqrt(pixels.length);
+            return QuadTree.fromPixels(pixels, dimension[0], 0, 0, dimension[0]);
+        } else if (path.endsWith(".txt")) {
+            List<Integer> lineValues = FileLoader.secureLoadFileContents(path);
+            dimension[0] = (int) Math.sqrt(lineValues.size());
+            return QuadTree.fromUncompressedContents(lineValues, 0, 0, dimension[0]);
+        }
+
+        RITQTNode root = RITUncompress.uncompressTree(path, new String[0], 0);
+        if (root == null) {
+            System.exit(-1);
+        }
+        dimension[0] = (int) Math.sqrt(RITUncompress.dimension);
+        return root;
+    }
+
+    private static void info(String source) throws IOException, LoaderException {
+        try (FrameSequence sequence = FrameSequence.open(source)) {
+            long keyframeBytes = 0, deltaBytes = 0;
+            for (int i = 0; i < sequence.frameCount(); ++ i) {
+                boolean keyframe = sequence.isKeyframe(i);
+                System.out.println("Frame " + i + ": " + (keyframe ? "keyframe" : "delta") + " (" + sequence.frameLength(i) + " bytes)");
+                if (keyframe) {
+                    keyframeBytes += sequence.frameLength(i);
+                } else {
+                    deltaBytes += sequence.frameLength(i);
+                }
+            }
+
+            System.out.println("Dimension: " + sequence.dimension() + "x" + sequence.dimension());
+            System.out.println("Keyframe bytes: " + keyframeBytes);
+            System.out.println("Delta bytes: " + deltaBytes);
+        }
+    }
+
+    private static void extract(String source, int frame, String destination) throws IOException, LoaderException {
+        try (FrameSequence sequence = FrameSequence.open(source)) {
+            int dimension = sequence.dimension();
+
+            if (BinaryImage.isBinaryImage(destination)) {
+                FrameSequence.Player player = sequence.player();
+                player.seek(frame);
+                FileLoader.secureWritePixels(player.pixels(), dimension, destination);
+            } else if (destination.endsWith(".txt")) {
+                FrameSequence.Player player = sequence.player();
+                player.seek(frame);
+                List<String> writeValues = new ArrayList<>(dimension * dimension);
+                for (int pixel : player.pixels()) {
+                    writeValues.add(pixel + "");
+                }
+                FileLoader.secureWriteFileContents(writeValues, destination);
+            } else {
+                FileLoader.secureWriteTree(dimension * dimension, sequence.tree(frame), destination);
+            }
+        }
+
+        System.out.println("Output file: " + new File(destination).getAbsolutePath());
+    }
+
+    private static void play(String source) throws IOException, LoaderException {
+        try (FrameSequence sequence = FrameSequence.open(source)) {
+            FrameSequence.Player player = sequence.player();
+
+            long start = System.nanoTime();
+            while (player.next()) {
+                // Decode every frame in order
+            }
+            double playback = (System.nanoTime() - start) / 1e9;
+
+            start = System.nanoTime();
+            for (int i = sequence.frameCount() - 1; 0 <= i; -- i) {
+                player.seek(i);
+            }
+            double seek = (System.nanoTime() - start) / 1e6 / sequence.frameCount();
+
+            System.out.printf("Playback: %d frames in %.3f s (%.1f frames per second)%n", sequence.frameCount(), playback, sequence.frameCount() / playback);
+            System.out.printf("Average seek: %.3f ms%n", seek);
+        }
+    }
+
+    public static void main(String[] args) {
+        try {
+            if (args.length >= 5 && args[0].equals("create") && args[2].equals("--keyframes")) {
+                create(args[1], Integer.parseInt(args[3]), args, 4);
+                return;
+            } else if (args.length >= 3 && args[0].equals("create") && !args[2].equals("--keyframes")) {
+                create(args[1], FrameSequence.DEFAULT_KEYFRAME_INTERVAL, args, 2);
+                return;
+            } else if (args.length == 2 && args[0].equals("info")) {
+                info(args[1]);
+                return;
+            } else if (args.length == 4 && args[0].equals("extract")) {
+                extract(args[1], Integer.parseInt(args[2]), args[3]);
+                return;
+            } else if (args.length == 2 && args[0].equals("play")) {
+                play(args[1]);
+                return;
+            }
+        } catch (IOException | LoaderException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            // Handle unreadable files, invalid sequences and frames, and invalid numbers
+            System.out.println("Failed: " + e.getMessage());
+            System.exit(-1);
+        }
+
+        // Handle missing or invalid argument(s)
+        System.out.println("Usage: java RITSequence create sequence.rits [--keyframes interval] frame...");
+        System.out.println("Usage: java RITSequence info sequence.rits");
+        System.out.println("Usage: java RITSequence extract sequence.rits frame <compressed.rit|uncompressed.txt|image.pgm|image.raw>");
+        System.out.println("Usage: java RITSequence play sequence.rits");
+    }
+}
@@ -0,0 +1,312 @@
+package ptui;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import model.CompressedImage;
+import model.CompressionContext;
+import model.EntropyCodec;
+import model.ImageStatistics;
+import model.LoaderException;
+import model.QuadTree;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * The RITServer class is a command line program that serves compression and uncompression over HTTP, so that other
+ * programs can compress images with a request rather than by launching {@link RITCompress}.
+ *
+ * <p>Every endpoint accepts a POST whose body is the contents of an image file, and responds with the contents of
+ * another:</p>
+ * <ul>
+ *     <li>/compress: an uncompressed image, answered in the compressed format named by the format query parameter,
+ *     which is rit (the default), ritd, or rite</li>
+ *     <li>/decompress: a compressed image in any format, answered as an uncompressed image</li>
+ *     <li>/stats: a compressed image, answered with its statistics as printed by RITUncompress --stats</li>
+ *     <li>/region: a compressed image, answered with the pixels of the region named by the row, col, height, and width
+ *     query parameters, one value per line in row-major order</li>
+ * </ul>
+ *
+ * <p>Each request is handled on its own virtual thread. Bodies larger than the request size limit are refused with 413,
+ * and when the maximum number of requests are already being handled, further requests are refused immediately with
+ * 503 rather than queued, so that callers can back off. Invalid images, and images or regions whose pixels would
+ * exceed the pixel limit, are refused with 400 and the reason. The size an image declares is checked before any of it is
+ * decoded, and decoding stops at the node limit, so that a small body cannot describe a tree, or a shared tree whose
+ * expansion, too large to be held in memory.</p>
+ *
+ * <p>Images compressed into the plain format are compressed with a {@link CompressionContext}, which reuses its buffers
+ * from one request to the next. Since each request runs on a new virtual thread, the contexts are pooled by the server
+ * rather than kept per thread, and at most one context is created per request handled at once.</p>
+ *
+ * <p>Request bodies are read through synchronized streams, which pin a virtual thread to its carrier thread while it
+ * waits for a slow client, so there should be a carrier thread for every permit and more to refuse requests. The
+ * number of carrier threads is fixed when the first virtual thread is created, so it is set when the program is
+ * launched, with {@code java -Djdk.virtualThreadScheduler.parallelism=N ptui.RITServer ...}, where N is the number of
+ * requests handled at once plus the number of processors.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class RITServer {
+
+    /** The default port, request size limit in bytes, and number of requests handled at once. **/
+    private static final int DEFAULT_PORT = 8337, DEFAULT_MAX_REQUEST_BYTES = 64 << 20, DEFAULT_MAX_CONCURRENT = Runtime.getRuntime().availableProcessors() * 2;
+
+    /** The largest region that may be requested from /region, in pixels. **/
+    private static final long MAX_REGION_PIXELS = 1 << 24;
+
+    /** The largest image that may be read by any endpoint, in pixels. **/
+    private static final long MAX_PIXELS = 1 << 24;
+
+    /** The most nodes that may be decoded from a request body. **/
+    private static final long MAX_NODES = 1 << 22;
+
+    private final int maxRequestBytes;
+
+    /** The permits of the requests being handled. **/
+    private final Semaphore permits;
+
+    /** The contexts that are not in use by a request. **/
+    private final Queue<CompressionContext> contexts = new ConcurrentLinkedQueue<>();
+
+    private RITServer(int maxRequestBytes, int maxConcurrent) {
+        this.maxRequestBytes = maxRequestBytes;
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * Starts a server at the provided address. The server runs until it is stopped.
+     *
+     * @param maxRequestBytes The size limit of request bodies
+     * @param maxConcurrent The number of requests that are handled at once
+     */
+    public static HttpServer start(InetSocketAddress address, int maxRequestBytes, int maxConcurrent) throws IOException {
+        RITServer service = new RITServer(maxRequestBytes, maxConcurrent);
+        HttpServer server = HttpServer.create(address, 0);
+
+        server.createContext("/compress", service.handler(service::compress));
+        server.createContext("/decompress", service.handler(service::decompress));
+        server.createContext("/stats", service.handler(service::stats));
+        server.createContext("/region", service.handler(service::region));
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+
+        return server;
+    }
+
+    private byte[] compress(byte[] body, Map<String, String> query) throws IOException, LoaderException {
+        String format = query.getOrDefault("format", "rit");
+        if (!format.equals("rit") && !format.equals("ritd") && !format.equals("rite")) {
+            throw new IllegalArgumentException("Unknown format: " + format);
+        }
+        if (format.equals("rit")) {
+            CompressionContext context = contexts.poll();
+            if (context == null) {
+                context = new CompressionContext();
+            }
+            try {
+                return context.compress(body);
+            } finally {
+                contexts.offer(context);
+            }
+        }
+        return CompressedImage.fromUncompressed(new ByteArrayInputStream(body)).encode("." + format);
+    }
+
+    /**
+     * Parses a compressed image from a request body after checking the size it declares against the pixel limit. A
+     * small body may declare any size, and a tree of that size, or the expansion of a shared tree of that size, may
+     * not fit in memory, so the size is read from the header before anything is decoded.
+     *
+     * @throws IllegalArgumentException Thrown when the declared size exceeds the pixel limit
+     */
+    private static CompressedImage load(byte[] body) throws IOException, LoaderException {
+        long size = EntropyCodec.isEncoded(body) ? EntropyCodec.uncompressedSize(body) : declaredSize(body);
+        if (MAX_PIXELS < size) {
+            throw new IllegalArgumentException("Image of " + size + " pixels exceeds " + MAX_PIXELS + " pixels");
+        }
+        return CompressedImage.fromCompressed(body, MAX_NODES);
+    }
+
+    /**
+     * Reads the size header of text contents, which is their first value. Contents whose first value is not a number
+     * declare no size, and are refused when they are parsed.
+     */
+    private static long declaredSize(byte[] body) {
+        int i = 0;
+        while (i < body.length && Character.isWhitespace(body[i])) {
+            i++;
+        }
+        long size = 0;
+        for (; i < body.length && '0' <= body[i] && body[i] <= '9'; i++) {
+            size = Math.min(size * 10 + body[i] - '0', Long.MAX_VALUE / 10);
+        }
+        return size;
+    }
+
+    private byte[] decompress(byte[] body, Map<String, String> query) throws IOException, LoaderException {
+        return load(body).uncompressed();
+    }
+
+    private byte[] stats(byte[] body, Map<String, String> query) throws IOException, LoaderException {
+        CompressedImage image = load(body);
+        return ImageStatistics.of(image.root(), image.dimension()).report().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private byte[] region(byte[] body, Map<String, String> query) throws IOException, LoaderException {
+        int row = intParameter(query, "row"), col = intParameter(query, "col");
+        int height = intParameter(query, "height"), width = intParameter(query, "width");
+        if (MAX_REGION_PIXELS < (long) height * width) {
+            throw new IllegalArgumentException("Region of " + height + "x" + width + " pixels exceeds " + MAX_REGION_PIXELS + " pixels");
+        }
+
+        CompressedImage image = load(body);
+        return CompressedImage.lines(QuadTree.extractRegion(image.root(), image.dimension(), row, col, height, width));
+    }
+
+    /**
+     * Wraps an endpoint with the method check, request size limit, concurrency limit, and error responses shared by all
+     * endpoints.
+     */
+    private HttpHandler handler(Endpoint endpoint) {
+        return exchange -> {
+            try (exchange) {
+                if (!exchange.getRequestMethod().equals("POST")) {
+                    exchange.getResponseHeaders().set("Allow", "POST");
+                    respond(exchange, 405, "Method not allowed: " + exchange.getRequestMethod());
+                    return;
+                }
+
+                String length = exchange.getRequestHeaders().getFirst("Content-Length");
+                if (length != null && maxRequestBytes < parseLength(length)) {
+                    respond(exchange, 413, "Request exceeds " + maxRequestBytes + " bytes");
+                    return;
+                }
+
+                if (!permits.tryAcquire()) {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    respond(exchange, 503, "Server is busy");
+                    return;
+                }
+
+                try {
+                    byte[] body = readBody(exchange.getRequestBody());
+                    if (body == null) {
+                        respond(exchange, 413, "Request exceeds " + maxRequestBytes + " bytes");
+                        return;
+                    }
+
+                    byte[] response = endpoint.handle(body, parseQuery(exchange.getRequestURI().getRawQuery()));
+                    exchange.getResponseHeaders().set("Content-Type", EntropyCodec.isEncoded(response) ? "application/octet-stream" : "text/plain");
+                    exchange.sendResponseHeaders(200, response.length == 0 ? -1 : response.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(response);
+                    }
+                } catch (LoaderException | IllegalArgumentException e) {
+                    respond(exchange, 400, e.getMessage());
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    respond(exchange, 500, "Internal error: " + e);
+                } finally {
+                    permits.release();
+                }
+            }
+        };
+    }
+
+    /**
+     * Reads a request body, providing null when it exceeds the request size limit.
+     */
+    private byte[] readBody(InputStream stream) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1 << 16];
+
+        for (int read; (read = stream.read(buffer)) != -1; ) {
+            if (maxRequestBytes < body.size() + read) {
+                return null;
+            }
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    private static long parseLength(String length) {
+        try {
+            return Long.parseLong(length.trim());
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] bytes = (message + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int equals = pair.indexOf('=');
+                if (0 < equals) {
+                    parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8), URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return parameters;
+    }
+
+    private static int intParameter(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing query parameter: " + name);
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Non-integral query parameter: " + name + "=" + value);
+        }
+    }
+
+    /**
+     * An endpoint, which answers the body of a request with the body of its response.
+     */
+    private interface Endpoint {
+        byte[] handle(byte[] body, Map<String, String> query) throws IOException, LoaderException;
+    }
+
+    public static void main(String[] args) {
+        try {
+            int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+            int maxRequestBytes = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_REQUEST_BYTES;
+            int maxConcurrent = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_CONCURRENT;
+
+            // The server only accepts connections from this machine
+            HttpServer server = start(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), maxRequestBytes, maxConcurrent);
+            System.out.println("Serving on http://localhost:" + server.getAddress().getPort() + " (/compress, /decompress, /stats, /region)");
+            System.out.println("Request limit: " + maxRequestBytes + " bytes, " + maxConcurrent + " concurrent requests");
+        } catch (NumberFormatException e) {
+            System.out.println("Usage: java [-Djdk.virtualThreadScheduler.parallelism=N] RITServer [port] [maxRequestBytes] [maxConcurrent]");
+        } catch (IOException e) {
+            System.out.println("Failed to start server: " + e.getMessage());
+            System.exit(-1);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package ptui;
+
+import model.Canonicalizer;
+import model.CompressedImage;
+import model.FileLoader;
+import model.LoaderException;
+import model.QuadTree;
+import model.RITQTNode;
+import model.TreeEditor;
+import model.TreeTransform;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The RITTransform class is a command line program that applies geometric and tonal transformations and region edits to
+ * a compressed image without uncompressing it. Transformations are handled in {@link TreeTransform} and edits are
+ * handled in {@link TreeEditor}.
+ *
+ * <p>The same operations are accepted after the required arguments of {@link RITCompress} and {@link RITUncompress}, so
+ * that a transformation can be applied while an image is compressed or uncompressed.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class RITTransform {
+
+    /** Usage information for the supported operations. **/
+    public static final String OPERATIONS_USAGE =
+            "Operations: --rotate <90|180|270> --flip <horizontal|vertical> --invert --threshold <value> " +
+            "--levels <black> <white> --gamma <value> --canonicalize --set <row> <col> <value> " +
+            "--fill <row> <col> <height> <width> <value> --paste <row> <col> <uncompressed.txt>";
+
+    /**
+     * Applies the operations listed in the provided arguments, starting at index start, to a tree representing an image
+     * with the provided side length. Operations are applied in order. The program exits with a usage message if an
+     * operation cannot be parsed.
+     */
+    public static RITQTNode applyOperations(RITQTNode root, int dimension, String[] args, int start) {
+        int index = start;
+
+        try {
+            while (index < args.length) {
+                switch (args[index]) {
+                    case "--rotate":
+                        root = TreeTransform.rotate(root, Integer.parseInt(args[++ index]));
+                        break;
+                    case "--flip":
+                        String axis = args[++ index];
+                        if (axis.equals("horizontal")) {
+                            root = TreeTransform.flipHorizontal(root);
+                        } else if (axis.equals("vertical")) {
+                            root = TreeTransform.flipVertical(root);
+                        } else {
+                            throw new IllegalArgumentException("Unknown flip axis: " + axis);
+                        }
+                        break;
+                    case "--invert":
+                        root = TreeTransform.invert(root);
+                        break;
+                    case "--threshold":
+                        root = TreeTransform.threshold(root, Integer.parseInt(args[++ index]));
+                        break;
+                    case "--levels":
+                        int black = Integer.parseInt(args[++ index]), white = Integer.parseInt(args[++ index]);
+                        root = TreeTransform.remap(root, TreeTransform.levelsTable(black, white));
+                        break;
+                    case "--gamma":
+                        root = TreeTransform.remap(root, TreeTransform.gammaTable(Double.parseDouble(args[++ index])));
+                        break;
+                    case "--canonicalize":
+                        Canonicalizer canonicalizer = new Canonicalizer();
+                        root = canonicalizer.canonicalize(root);
+                        System.out.println("Canonicalization removed " + canonicalizer.removed() + " nodes");
+                        break;
+                    case "--set":
+                        root = TreeEditor.setPixel(root, dimension, Integer.parseInt(args[++ index]), Integer.parseInt(args[++ index]), Integer.parseInt(args[++ index]));
+                        break;
+                    case "--fill":
+                        int row = Integer.parseInt(args[++ index]), col = Integer.parseInt(args[++ index]);
+                        int height = Integer.parseInt(args[++ index]), width = Integer.parseInt(args[++ index]);
+                        root = TreeEditor.fillRect(root, dimension, row, col, height, width, Integer.parseInt(args[++ index]));
+                        break;
+                    case "--paste":
+                        int pasteRow = Integer.parseInt(args[++ index]), pasteCol = Integer.parseInt(args[++ index]);
+                        List<Integer> pasteValues = FileLoader.secureLoadFileContents(args[++ index]);
+                        int pasteDim = (int) Math.sqrt(pasteValues.size());
+
+                        // Arrange the pasted image into a grid
+                        int[][] pixelGrid = new int[pasteDim][pasteDim];
+                        for (int i = 0; i < pasteValues.size(); ++ i) {
+                            pixelGrid[i / pasteDim][i % pasteDim] = pasteValues.get(i);
+                        }
+                        root = TreeEditor.paste(root, dimension, pasteRow, pasteCol, pixelGrid);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown operation: " + args[index]);
+                }
+
+                index ++;
+            }
+        } catch (ArrayIndexOutOfBoundsException a) {
+            // Handle an operation missing its value
+            System.out.println("Missing value for operation: " + args[index - 1] + "\n" + OPERATIONS_USAGE);
+            System.exit(-1);
+        } catch (IllegalArgumentException | LoaderException.IntegralColorException e) {
+            // Handle unknown operations and invalid values (NumberFormatException is an IllegalArgumentException)
+            System.out.println("Invalid operation: " + e.getMessage() + "\n" + OPERATIONS_USAGE);
+            System.exit(-1);
+        }
+
+        return root;
+    }
+
+    /**
+     * Rewrites the compressed file at the provided path in place if it is not canonical, merging equal sibling leaves
+     * with a {@link Canonicalizer}. Canonical files are left untouched. The canonical tree is written to a partial file
+     * beside the original, which replaces the original only once it is complete, so a failed write never destroys the
+     * only copy.
+     */
+    public static void canonicalizeInPlace(String path) {
+        CompressedImage image = FileLoader.secureLoadCompressed(path);
+        if (image == null) {
+            return;
+        }
+
+        Canonicalizer canonicalizer = new Canonicalizer();
+        RITQTNode treeContents = canonicalizer.canonicalize(image.root());
+
+        if (canonicalizer.removed() == 0) {
+            System.out.println("Already canonical: " + path);
+        } else {
+            String partial = FileLoader.partialPath(path);
+            File partialFile = new File(partial);
+            // The listener may exit while the partial file is written, which skips the finally block, so the partial
+            // file is also removed at exit; once moved into place there is no partial file left to remove
+            partialFile.deleteOnExit();
+            try {
+                FileLoader.secureWriteCompressed(image.uncompressedSize(), treeContents, partial);
+                FileLoader.moveIntoPlace(partial, path);
+            } catch (IOException e) {
+                // Handle a destination that cannot be replaced, which still holds the original file
+                System.out.println("Failed to replace " + path + ": " + e.getMessage());
+                partialFile.delete();
+                System.exit(-1);
+            } finally {
+                partialFile.delete();
+            }
+            System.out.println("Rewrote " + path + ", removed " + canonicalizer.removed() + " nodes");
+        }
+    }
+
+    public static void main(String[] args) {
+        if (2 <= args.length && args[0].equals("--canonicalize")) {
+            // Rewrite every listed file in place
+            for (int index = 1; index < args.length; ++ index) {
+                canonicalizeInPlace(args[index]);
+            }
+        } else if (args.length < 2) {
+            // Handle missing or invalid argument(s)
+            System.out.println("Usage: java RITTransform transformed.rit compressed.rit [operations...]\n" + OPERATIONS_USAGE);
+            System.out.println("Usage: java RITTransform --canonicalize compressed.rit [compressed.rit...]");
+        } else {
+            String source = args[1], destination = args[0];
+            System.out.println("Transforming: " + source);
+
+            CompressedImage image = FileLoader.secureLoadCompressed(source);
+            if (image == null) {
+                return;
+            }
+
+            // Transform the tree directly, without uncompressing it
+            RITQTNode treeContents = applyOperations(image.root(), image.dimension(), args, 2);
+            System.out.println("QuadTree: " + QuadTree.preorder(treeContents));
+
+            FileLoader.secureWriteCompressed(image.uncompressedSize(), treeContents, destination);
+            System.out.println("Output file: " + new File(destination).getAbsolutePath());
+        }
+    }
+}
@@ -1,10 +1,21 @@
 package ptui;
 
+import model.BinaryImage;
+import model.EntropyCodec;
 import model.FileLoader;
+import model.ImageStatistics;
+import model.ImageStream;
+import model.LoaderException;
+import model.PixelKernels;
 import model.QuadTree;
 import model.RITQTNode;
+import model.SubtreeIndex;
 
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -25,18 +36,20 @@ public class RITUncompress {
      * @return A list of Strings representing the uncompressed content of the source file
      */
     public static List<String> uncompress(String source) {
-        if(source == null) {
-            System.out.println("Failed to uncompress: null source or destination");
-            return new ArrayList<>();
-        }
-
-        List<Integer> lineValues = FileLoader.secureLoadFileContents(source);
-        dimension = lineValues.remove(0);
-
-        // Create the quadtree structure from the compressed file
-        treeContents = QuadTree.fromCompressedContents(lineValues);
+        return uncompress(source, new String[0], 0);
+    }
 
+    /**
+     * Attempts to uncompress the file at the provided source path after applying the transformation operations listed
+     * in args, starting at index start. Operations are parsed by {@link RITTransform#applyOperations(RITQTNode, int, String[], int)}.
+     *
+     * @return A list of Strings representing the uncompressed content of the transformed source file
+     */
+    public static List<String> uncompress(String source, String[] args, int start) {
         List<String> writeValues = new ArrayList<>();
+        if (uncompressTree(source, args, start) == null) {
+            return writeValues;
+        }
 
         for (int[] row : QuadTree.extract(treeContents, (int) Math.sqrt(dimension))) {
             for (int value : row) {
@@ -47,6 +60,77 @@ public class RITUncompress {
         return writeValues;
     }
 
+    /**
+     * Attempts to parse the file at the provided source path into a QuadTree and apply the transformation operations
+     * listed in args, starting at index start, without uncompressing its pixels.
+     *
+     * @return The transformed tree, or null if the file could not be parsed
+     */
+    public static RITQTNode uncompressTree(String source, String[] args, int start) {
+        if(source == null) {
+            System.out.println("Failed to uncompress: null source or destination");
+            return null;
+        }
+
+        // Create the quadtree structure from the compressed file
+        List<Integer> lineValues = null;
+        if (FileLoader.isEntropyFormat(source)) {
+            try {
+                byte[] bytes = FileLoader.secureLoadBytes(source);
+                dimension = EntropyCodec.uncompressedSize(bytes);
+                treeContents = EntropyCodec.decode(bytes);
+            } catch (LoaderException.MalformedTreeException e) {
+                System.out.println("Failed to uncompress: " + e.getMessage());
+                treeContents = null;
+                return null;
+            }
+        } else if ((treeContents = decodeIndexed(source)) == null) {
+            lineValues = FileLoader.secureLoadFileContents(source);
+            dimension = lineValues.remove(0);
+        }
+
+        if (lineValues != null) {
+            if (FileLoader.isSharedFormat(source)) {
+                try {
+                    treeContents = QuadTree.fromSharedContents(lineValues);
+                } catch (LoaderException.MalformedTreeException e) {
+                    System.out.println("Failed to uncompress: " + e.getMessage());
+                    treeContents = null;
+                    return null;
+                }
+            } else {
+                treeContents = QuadTree.fromCompressedContents(lineValues);
+            }
+        }
+        treeContents = RITTransform.applyOperations(treeContents, (int) Math.sqrt(dimension), args, start);
+
+        return treeContents;
+    }
+
+    /**
+     * Decodes a compressed file in the plain format in parallel when a {@link SubtreeIndex} has been written beside it.
+     *
+     * @return The decoded tree, or null when the file has no index or its index cannot be used
+     */
+    private static RITQTNode decodeIndexed(String source) {
+        String indexPath = SubtreeIndex.indexPath(source);
+        if (FileLoader.isSharedFormat(source) || FileLoader.isArchiveEntry(source) || !new File(indexPath).isFile()) {
+            return null;
+        }
+
+        try {
+            ByteBuffer contents = SubtreeIndex.map(source);
+            SubtreeIndex index = SubtreeIndex.read(source, contents);
+            RITQTNode root = index.decodeParallel(contents);
+            dimension = index.dimension() * index.dimension();
+            return root;
+        } catch (IOException | LoaderException e) {
+            // The file is decoded without its index instead
+            System.out.println("Ignoring subtree index: " + e.getMessage());
+            return null;
+        }
+    }
+
     /** Access treeContents **/
     public static RITQTNode treeContents() {
         return treeContents;
@@ -55,20 +139,101 @@ public class RITUncompress {
     /** The dimension of the image to uncompress. **/
     public static int dimension;
 
+    /**
+     * Prints statistics about the image in the compressed file at the provided source path. The statistics are computed
+     * from the preorder contents of the file, so no tree is built and no pixels are uncompressed.
+     */
+    public static void printStatistics(String source) {
+        ImageStatistics statistics;
+        if (FileLoader.isEntropyFormat(source)) {
+            try {
+                byte[] bytes = FileLoader.secureLoadBytes(source);
+                dimension = EntropyCodec.uncompressedSize(bytes);
+                statistics = ImageStatistics.of(EntropyCodec.decode(bytes), (int) Math.sqrt(dimension));
+            } catch (LoaderException.MalformedTreeException e) {
+                System.out.println("Failed to read statistics: " + e.getMessage());
+                return;
+            }
+            printStatistics(source, statistics);
+            return;
+        }
+
+        List<Integer> lineValues = FileLoader.secureLoadFileContents(source);
+        dimension = lineValues.remove(0);
+
+        if (FileLoader.isSharedFormat(source)) {
+            // References must be resolved, so the shared structure is built, but no pixels are uncompressed
+            try {
+                statistics = ImageStatistics.of(QuadTree.fromSharedContents(lineValues), (int) Math.sqrt(dimension));
+            } catch (LoaderException.MalformedTreeException e) {
+                System.out.println("Failed to read statistics: " + e.getMessage());
+                return;
+            }
+        } else {
+            statistics = ImageStatistics.ofPreorder(lineValues, (int) Math.sqrt(dimension));
+        }
+        printStatistics(source, statistics);
+    }
+
+    /**
+     * Prints statistics that have been computed for the compressed file at the provided path.
+     */
+    private static void printStatistics(String source, ImageStatistics statistics) {
+        System.out.println("Statistics: " + source);
+        System.out.print(statistics.report());
+    }
+
+    /**
+     * Uncompresses an image read from standard input into an uncompressed image written to standard output with
+     * {@link ImageStream}. Arguments are the source format and the destination format. Nothing but the image is written
+     * to standard output, so messages are written to standard error.
+     */
+    private static void uncompressStream(String[] args) {
+        try {
+            ImageStream.uncompress(System.in, ImageStream.Format.of(args[1]), new FileOutputStream(FileDescriptor.out), ImageStream.Format.of(args[2]));
+        } catch (IOException | LoaderException | IllegalArgumentException e) {
+            // Handle closed streams, invalid trees, and invalid formats
+            System.err.println("Failed to uncompress: " + e.getMessage());
+            System.exit(-1);
+        }
+    }
+
     public static void main(String[] args) {
-        if (args.length != 2) {
+        if (args.length == 3 && args[0].equals("--stream")) {
+            uncompressStream(args);
+        } else if (args.length == 2 && args[0].equals("--stats")) {
+            printStatistics(args[1]);
+        } else if (args.length < 2) {
             // Handle missing or invalid argument(s)
-            System.out.println("Usage: java RITUncompress compressed.rit uncompressed.txt");
+            System.out.println("Usage: java RITUncompress compressed.rit uncompressed.txt|image.pgm|image.raw [operations...]\n" + RITTransform.OPERATIONS_USAGE);
+            System.out.println("Usage: java RITUncompress --stats compressed.rit");
+            System.out.println("Usage: java RITUncompress --stream rit|ritd|rite txt|pgm < source > destination");
         } else {
             String source = args[0], destination = args[1];
             System.out.println("Uncompressing: " + source);
 
-            // Uncompress file
-            List<String> writeValues = uncompress(source);
-            System.out.println("QuadTree: " + QuadTree.preorder(treeContents()));
+            if (BinaryImage.isBinaryImage(destination)) {
+                // Binary images are extracted into a pixel array and written without building lines
+                if (uncompressTree(source, args, 2) == null) {
+                    System.exit(-1);
+                }
+                System.out.println("QuadTree: " + QuadTree.preorder(treeContents()));
+
+                int side = (int) Math.sqrt(dimension);
+                int[] pixels = new int[dimension];
+                QuadTree.extract(treeContents, side, pixels, PixelKernels.preferred());
+                FileLoader.secureWritePixels(pixels, side, destination);
+            } else {
+                // Uncompress file
+                List<String> writeValues = uncompress(source, args, 2);
+                if (treeContents() == null) {
+                    System.exit(-1);
+                }
+                System.out.println("QuadTree: " + QuadTree.preorder(treeContents()));
 
-            // Write uncompressed content to output file
-            FileLoader.secureWriteFileContents(writeValues, destination);
+                // Write uncompressed content to output file
+                FileLoader.secureWriteFileContents(writeValues, destination);
+            }
             System.out.println("Output file: " + new File(destination).getAbsolutePath());
         }
     }
@@ -0,0 +1,89 @@
+package ptui;
+
+import model.FileLoader;
+import model.ImageArchive;
+import model.LoaderException;
+import model.RITValidator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The RITValidate class is a command line program that checks compressed image files before they are loaded. Any
+ * directory provided as an argument is searched recursively for compressed files, and every compressed entry of any
+ * archive provided as an argument is validated. Validation is handled in
+ * {@link RITValidator}.
+ *
+ * <p>Files are validated in parallel. The program exits with a nonzero status when any file is invalid.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class RITValidate {
+
+    /** The file extension for compressed files **/
+    private static final String COMP_EXTENSION = ".rit";
+
+    /**
+     * Validates a single file, providing a line describing the result.
+     */
+    private static String validate(Path path) {
+        try {
+            long nodes = RITValidator.validate(path.toString());
+            return "Valid: " + path + " (" + nodes + " nodes)";
+        } catch (IOException | LoaderException e) {
+            return "Invalid: " + path + ": " + e.getMessage();
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            // Handle missing argument(s)
+            System.out.println("Usage: java RITValidate <compressed.rit|directory|archive.rita>...");
+            return;
+        }
+
+        // Collect every file to be validated, expanding directories
+        List<Path> paths = new ArrayList<>();
+        for (String arg : args) {
+            Path path = Paths.get(arg);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> walk = Files.walk(path)) {
+                    walk.filter(file -> Files.isRegularFile(file) && file.toString().endsWith(COMP_EXTENSION)).sorted().forEach(paths::add);
+                } catch (IOException e) {
+                    System.out.println("Failed to read directory: " + path);
+                    System.exit(-1);
+                }
+            } else if (FileLoader.isArchive(arg)) {
+                // Every compressed entry of an archive is validated
+                try {
+                    for (ImageArchive.Entry entry : FileLoader.openArchive(arg).entries()) {
+                        if (entry.name().endsWith(COMP_EXTENSION)) {
+                            paths.add(Paths.get(arg + FileLoader.ENTRY_SEPARATOR + entry.name()));
+                        }
+                    }
+                } catch (IOException | LoaderException e) {
+                    System.out.println("Failed to read archive: " + e.getMessage());
+                    System.exit(-1);
+                }
+            } else {
+                paths.add(path);
+            }
+        }
+
+        // Results are printed in the order the files were listed
+        List<String> results = paths.parallelStream().map(RITValidate::validate).collect(Collectors.toList());
+        long invalid = results.stream().filter(result -> result.startsWith("Invalid")).count();
+        results.forEach(System.out::println);
+
+        System.out.println("Validated " + paths.size() + " files, " + invalid + " invalid");
+        if (invalid != 0) {
+            System.exit(1);
+        }
+    }
+}
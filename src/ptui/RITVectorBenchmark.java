@@ -0,0 +1,78 @@
+package ptui;
+
+import model.FileLoader;
+import model.PixelKernels;
+import model.QuadTree;
+import model.RITQTNode;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The RITVectorBenchmark class compares the scalar {@link PixelKernels} with the fastest kernels available to the
+ * virtual machine, timing the top-down scan that builds a QuadTree from a flat pixel buffer and the fill that extracts
+ * it back into one.
+ *
+ * <p>The vector kernels are only available when the virtual machine is started with --add-modules
+ * jdk.incubator.vector; otherwise both columns measure the scalar kernels. Rates are in megapixels per second, and
+ * every measurement is preceded by a warmup period, which is not timed.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class RITVectorBenchmark {
+
+    /** The minimum untimed and timed durations of the runs of each kernel, in nanoseconds. **/
+    private static final long WARMUP_NANOS = 500_000_000L, TIMED_NANOS = 1_000_000_000L;
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Usage: java [--add-modules jdk.incubator.vector] RITVectorBenchmark uncompressed.txt...");
+            return;
+        }
+
+        PixelKernels scalar = PixelKernels.scalar(), preferred = PixelKernels.preferred();
+        System.out.println("Preferred kernels: " + preferred);
+
+        System.out.printf("%-24s %10s %16s %16s %16s %16s%n", "Image", "Pixels", "Scalar scan MP/s", "Preferred scan", "Scalar fill MP/s", "Preferred fill");
+        for (String source : args) {
+            List<Integer> values = FileLoader.secureLoadFileContents(source);
+            int size = values.size(), dimension = (int) Math.sqrt(size);
+            int[] pixels = new int[size], extracted = new int[size];
+            for (int i = 0; i < size; ++ i) {
+                pixels[i] = values.get(i);
+            }
+
+            RITQTNode root = QuadTree.fromUncompressedPixels(pixels, dimension, 0, 0, dimension, scalar, null);
+            double scalarScan = measure(() -> QuadTree.fromUncompressedPixels(pixels, dimension, 0, 0, dimension, scalar, null), size);
+            double preferredScan = measure(() -> QuadTree.fromUncompressedPixels(pixels, dimension, 0, 0, dimension, preferred, null), size);
+            double scalarFill = measure(() -> QuadTree.extract(root, dimension, extracted, scalar), size);
+            double preferredFill = measure(() -> QuadTree.extract(root, dimension, extracted, preferred), size);
+
+            if (!Arrays.equals(pixels, extracted)) {
+                System.out.println("Extracted pixels differ from the source: " + source);
+                System.exit(-1);
+            }
+
+            System.out.printf("%-24s %10d %16.1f %16.1f %16.1f %16.1f%n", source, size, scalarScan, preferredScan, scalarFill, preferredFill);
+        }
+    }
+
+    /**
+     * Provides the rate in megapixels per second at which an operation over the provided number of pixels runs.
+     */
+    private static double measure(Runnable operation, int pixels) {
+        // Vector operations are only compiled to vector instructions once the method has been optimized
+        for (long start = System.nanoTime(); System.nanoTime() - start < WARMUP_NANOS; ) {
+            operation.run();
+        }
+
+        long start = System.nanoTime(), runs = 0;
+        while (System.nanoTime() - start < TIMED_NANOS) {
+            operation.run();
+            runs ++;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        return (double) pixels * runs / seconds / 1e6;
+    }
+}
@@ -0,0 +1,546 @@
+package ptui;
+
+import model.CompressedImage;
+import model.LoaderException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The RITWatch class is a command line program that runs until it is stopped, compressing every uncompressed image file
+ * that is created or updated in a source directory into a destination directory as soon as the file stops changing.
+ *
+ * <p>The source directory is watched with a {@link WatchService}, and files already present when the program starts
+ * are compressed as if they had just been created. Every event for a file only records that the file is pending and
+ * when it last changed, so repeated events for the same file are merged. A file is stable once its size and
+ * modification time are unchanged between two checks and no event has arrived for it within the settle time. Stable
+ * files are compressed on a fixed pool of threads with a bounded queue; while the queue is full, stable files remain
+ * pending and are offered again at the next check. A file is never compressed by two threads at once, and a file whose
+ * size and modification time match its last compression is not compressed again. A file that is deleted is forgotten,
+ * so that the record of compressed files does not grow beyond the files in the source directory.</p>
+ *
+ * <p>Compressed files are written to a temporary file in the destination directory and moved into place, so readers of
+ * the destination never see a partial file. The temporary file is created with the default permissions, as
+ * {@link RITCompress} creates its files, so other readers of the destination can read the compressed files. Invalid
+ * images are reported and skipped without stopping the program.</p>
+ *
+ * <p>The number of pending, queued, and active files, the number of files compressed and failed, the average and
+ * maximum latency from the first event for a file to its compressed file, and the throughput are printed at the
+ * report interval and when the program stops, and are exposed while it runs as the {@link CountersMXBean} named
+ * {@link RITWatch#OBJECT_NAME} to JMX clients such as jconsole.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class RITWatch {
+
+    /** The default settle time in milliseconds, report interval in seconds, and capacity of the compression queue. **/
+    private static final int DEFAULT_SETTLE_MILLIS = 500, DEFAULT_REPORT_SECONDS = 10, DEFAULT_QUEUE_CAPACITY = 64;
+
+    /** The default number of compression threads. **/
+    private static final int DEFAULT_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+    /** The file extension for uncompressed files **/
+    private static final String UNCOMP_EXTENSION = ".txt";
+
+    /** The name under which the counters are registered with the platform MBean server. **/
+    public static final String OBJECT_NAME = "ptui:type=RITWatch";
+
+    private final Path source, destination;
+
+    private final String format;
+
+    private final long settleNanos;
+
+    /** The files that have changed and are waiting to become stable, by path. **/
+    private final Map<Path, Pending> pending = new ConcurrentHashMap<>();
+
+    /** The files that are queued or being compressed. **/
+    private final Set<Path> inFlight = ConcurrentHashMap.newKeySet();
+
+    /** The size and modification time of each file when it was last compressed. **/
+    private final Map<Path, Snapshot> compressed = new ConcurrentHashMap<>();
+
+    private final ThreadPoolExecutor workers;
+
+    private final Counters counters = new Counters();
+
+    private RITWatch(Path source, Path destination, String format, int threads, int capacity, long settleMillis) {
+        this.source = source;
+        this.destination = destination;
+        this.format = format;
+        this.settleNanos = TimeUnit.MILLISECONDS.toNanos(settleMillis);
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(capacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "RITWatch-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * The Snapshot class holds the size and modification time of a file, which are compared to decide whether the file
+     * has changed.
+     */
+    private static final class Snapshot {
+
+        private final long size, modified;
+
+        private Snapshot(long size, long modified) {
+            this.size = size;
+            this.modified = modified;
+        }
+
+        /**
+         * Provides the snapshot of a file, or null when it no longer exists.
+         */
+        private static Snapshot of(Path path) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                return attributes.isRegularFile() ? new Snapshot(attributes.size(), attributes.lastModifiedTime().toMillis()) : null;
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        private boolean matches(Snapshot other) {
+            return other != null && size == other.size && modified == other.modified;
+        }
+    }
+
+    /**
+     * The Pending class records when a file was first and last reported as changed, and how it looked when last checked.
+     */
+    private static final class Pending {
+
+        private final long firstEvent;
+
+        private volatile long lastEvent;
+
+        private Snapshot lastCheck;
+
+        private Pending(long now) {
+            this.firstEvent = now;
+            this.lastEvent = now;
+        }
+    }
+
+    /**
+     * Records that a file has changed. Events for a file that is already pending only move its last event time.
+     */
+    private void changed(Path path) {
+        if (!path.getFileName().toString().endsWith(UNCOMP_EXTENSION)) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        pending.compute(path, (key, file) -> {
+            if (file == null) {
+                counters.events.increment();
+                return new Pending(now);
+            }
+            file.lastEvent = now;
+            counters.merged.increment();
+            return file;
+        });
+    }
+
+    /**
+     * Offers every pending file that has become stable to the compression threads. Files that have disappeared, or that
+     * are unchanged since their last compression, are dropped.
+     */
+    private void check() {
+        long now = System.nanoTime();
+
+        for (Map.Entry<Path, Pending> entry : pending.entrySet()) {
+            Path path = entry.getKey();
+            Pending file = entry.getValue();
+            if (inFlight.contains(path)) {
+                // Changes made during compression are compressed again once it finishes
+                continue;
+            }
+
+            Snapshot snapshot = Snapshot.of(path);
+            if (snapshot == null || snapshot.matches(compressed.get(path))) {
+                pending.remove(path, file);
+                continue;
+            }
+
+            boolean stable = snapshot.matches(file.lastCheck) && settleNanos <= now - file.lastEvent;
+            file.lastCheck = snapshot;
+            if (!stable) {
+                continue;
+            }
+
+            // The file stops being pending first, so that an event arriving meanwhile makes it pending again
+            inFlight.add(path);
+            pending.remove(path, file);
+            try {
+                workers.execute(() -> compress(path, file, snapshot));
+            } catch (RejectedExecutionException e) {
+                // The queue is full, so the file remains pending until the next check
+                pending.putIfAbsent(path, file);
+                inFlight.remove(path);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Compresses a stable file into the destination directory, replacing any earlier compressed file atomically.
+     */
+    private void compress(Path path, Pending file, Snapshot snapshot) {
+        long start = System.nanoTime();
+        try {
+            String name = path.getFileName().toString();
+            name = name.substring(0, name.length() - UNCOMP_EXTENSION.length()) + "." + format;
+
+            CompressedImage image;
+            try (InputStream stream = Files.newInputStream(path)) {
+                image = CompressedImage.fromUncompressed(stream);
+            }
+            byte[] bytes = image.encode(name);
+
+            // Each source has its own name, and is compressed by one thread at a time, so a leftover temporary file can
+            // only remain from a watch that was stopped while writing it
+            Path temporary = destination.resolve("." + name + ".tmp");
+            Files.deleteIfExists(temporary);
+            try {
+                Files.write(temporary, bytes, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                move(temporary, destination.resolve(name));
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+
+            compressed.put(path, snapshot);
+            counters.completed(snapshot.size, System.nanoTime() - file.firstEvent, System.nanoTime() - start);
+        } catch (IOException | LoaderException | RuntimeException e) {
+            // Invalid images and unreadable files are reported without stopping the program
+            counters.failed.increment();
+            System.out.println("Failed to compress " + path + ": " + e.getMessage());
+            compressed.put(path, snapshot);
+        } finally {
+            inFlight.remove(path);
+            if (!Files.exists(path)) {
+                // The file was deleted during compression, after its deletion was handled
+                compressed.remove(path);
+            }
+        }
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Forgets a file that has been deleted, so that it is compressed again if it is created again.
+     */
+    private void deleted(Path path) {
+        pending.remove(path);
+        compressed.remove(path);
+    }
+
+    /**
+     * Reports every file already in the source directory as changed, and forgets every compressed file that no longer
+     * exists, since its deletion may have been among the lost events.
+     */
+    private void scan() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(source, "*" + UNCOMP_EXTENSION)) {
+            for (Path file : files) {
+                changed(file);
+            }
+        }
+        compressed.keySet().removeIf(file -> !Files.exists(file));
+    }
+
+    /**
+     * Watches the source directory until the watch service is closed. An overflow, in which events may have been lost,
+     * is handled by scanning the whole directory.
+     */
+    private void watch(WatchService service) throws IOException {
+        source.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        scan();
+
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        counters.overflows.increment();
+                        scan();
+                    } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        deleted(source.resolve((Path) event.context()));
+                    } else {
+                        changed(source.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    System.out.println("Source directory is no longer accessible: " + source);
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The CountersMXBean interface exposes the counters of a running watch to JMX clients.
+     */
+    public interface CountersMXBean {
+
+        /** Access the number of changed files waiting to become stable. **/
+        int getPendingFiles();
+
+        /** Access the number of stable files waiting for a compression thread. **/
+        int getQueuedFiles();
+
+        /** Access the number of files being compressed. **/
+        int getActiveFiles();
+
+        /** Access the number of times a file became pending after its first event. **/
+        long getDetectedFiles();
+
+        /** Access the number of files compressed. **/
+        long getCompletedFiles();
+
+        /** Access the number of files that could not be compressed. **/
+        long getFailedFiles();
+
+        /** Access the number of events that were merged into a file that was already pending. **/
+        long getMergedEvents();
+
+        /** Access the number of times events were lost and the source directory was scanned again. **/
+        long getOverflows();
+
+        /** Access the average time from the first event for a file to its compressed file, in milliseconds. **/
+        double getAverageLatencyMillis();
+
+        /** Access the longest time from the first event for a file to its compressed file, in milliseconds. **/
+        double getMaxLatencyMillis();
+
+        /** Access the average time spent compressing a file, in milliseconds. **/
+        double getAverageCompressMillis();
+
+        /** Access the number of files compressed per second since the program started. **/
+        double getFilesPerSecond();
+
+        /** Access the number of uncompressed bytes compressed per second since the program started. **/
+        double getBytesPerSecond();
+    }
+
+    /**
+     * The Counters class accumulates the counters of a watch. Counters are updated from every thread without locking.
+     */
+    private class Counters implements CountersMXBean {
+
+        private final long start = System.nanoTime();
+
+        private final LongAdder events = new LongAdder(), merged = new LongAdder(), overflows = new LongAdder(), failed = new LongAdder();
+
+        private final LongAdder completed = new LongAdder(), bytes = new LongAdder(), latencyNanos = new LongAdder(), compressNanos = new LongAdder();
+
+        private final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+
+        /** The number of files completed when the last report was printed, and when it was printed. **/
+        private final AtomicLong reportedFiles = new AtomicLong(), reportedNanos = new AtomicLong(start);
+
+        private void completed(long size, long latency, long compress) {
+            completed.increment();
+            bytes.add(size);
+            latencyNanos.add(latency);
+            compressNanos.add(compress);
+            maxLatencyNanos.accumulate(latency);
+        }
+
+        @Override
+        public int getPendingFiles() {
+            return pending.size();
+        }
+
+        @Override
+        public int getQueuedFiles() {
+            return workers.getQueue().size();
+        }
+
+        @Override
+        public int getActiveFiles() {
+            return workers.getActiveCount();
+        }
+
+        @Override
+        public long getDetectedFiles() {
+            return events.sum();
+        }
+
+        @Override
+        public long getCompletedFiles() {
+            return completed.sum();
+        }
+
+        @Override
+        public long getFailedFiles() {
+            return failed.sum();
+        }
+
+        @Override
+        public long getMergedEvents() {
+            return merged.sum();
+        }
+
+        @Override
+        public long getOverflows() {
+            return overflows.sum();
+        }
+
+        @Override
+        public double getAverageLatencyMillis() {
+            long files = completed.sum();
+            return files == 0 ? 0.0 : latencyNanos.sum() / 1e6 / files;
+        }
+
+        @Override
+        public double getMaxLatencyMillis() {
+            return maxLatencyNanos.get() / 1e6;
+        }
+
+        @Override
+        public double getAverageCompressMillis() {
+            long files = completed.sum();
+            return files == 0 ? 0.0 : compressNanos.sum() / 1e6 / files;
+        }
+
+        @Override
+        public double getFilesPerSecond() {
+            return completed.sum() / ((System.nanoTime() - start) / 1e9);
+        }
+
+        @Override
+        public double getBytesPerSecond() {
+            return bytes.sum() / ((System.nanoTime() - start) / 1e9);
+        }
+
+        /**
+         * Provides a single line describing the counters, including the throughput since the previous report.
+         */
+        private String report() {
+            long now = System.nanoTime(), files = completed.sum();
+            long previousFiles = reportedFiles.getAndSet(files), previousNanos = reportedNanos.getAndSet(now);
+            double recent = now == previousNanos ? 0.0 : (files - previousFiles) / ((now - previousNanos) / 1e9);
+
+            return String.format("pending %d, queued %d, active %d | detected %d, compressed %d, failed %d, merged events %d | "
+                            + "latency avg %.1f ms, max %.1f ms, compress avg %.1f ms | %.1f files/s recent, %.1f files/s, %.1f KB/s overall",
+                    getPendingFiles(), getQueuedFiles(), getActiveFiles(), getDetectedFiles(), files, getFailedFiles(), getMergedEvents(),
+                    getAverageLatencyMillis(), getMaxLatencyMillis(), getAverageCompressMillis(), recent, getFilesPerSecond(), getBytesPerSecond() / 1024);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String format = "rit";
+        int threads = DEFAULT_THREADS, capacity = DEFAULT_QUEUE_CAPACITY, settle = DEFAULT_SETTLE_MILLIS, report = DEFAULT_REPORT_SECONDS, next = 0;
+
+        // Parse options
+        try {
+            for (; next < args.length && args[next].startsWith("--"); ++ next) {
+                switch (args[next]) {
+                    case "--format":
+                        format = args[++ next];
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++ next]);
+                        break;
+                    case "--queue":
+                        capacity = Integer.parseInt(args[++ next]);
+                        break;
+                    case "--settle":
+                        settle = Integer.parseInt(args[++ next]);
+                        break;
+                    case "--report":
+                        report = Integer.parseInt(args[++ next]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException(args[next]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            next = args.length;
+        }
+
+        if (args.length - next != 2 || threads < 1 || capacity < 1 || settle < 0 || report < 1
+                || !(format.equals("rit") || format.equals("ritd") || format.equals("rite"))) {
+            // Handle missing or invalid argument(s)
+            System.out.println("Usage: java RITWatch [--format rit|ritd|rite] [--threads count] [--queue capacity] [--settle ms] [--report seconds] sourceDirectory destinationDirectory");
+            return;
+        }
+
+        Path source = Paths.get(args[next]), destination = Paths.get(args[next + 1]);
+        if (!Files.isDirectory(source)) {
+            System.out.println("Source is not a directory: " + source);
+            System.exit(-1);
+        }
+        Files.createDirectories(destination);
+
+        RITWatch watch = new RITWatch(source, destination, format, threads, capacity, settle);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(watch.counters, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            System.out.println("Counters are not available to JMX clients: " + e.getMessage());
+        }
+
+        // Stability is checked several times within each settle time
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "RITWatch-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(watch::check, 0, Math.max(10, settle / 4), TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(() -> System.out.println(watch.counters.report()), report, report, TimeUnit.SECONDS);
+
+        WatchService service = FileSystems.getDefault().newWatchService();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                service.close();
+            } catch (IOException e) {
+                // The service is closed only to stop watching
+            }
+            System.out.println(watch.counters.report());
+        }));
+
+        System.out.println("Watching " + new File(args[next]).getAbsolutePath() + ", compressing to " + destination.toAbsolutePath()
+                + " with " + threads + " threads");
+        watch.watch(service);
+    }
+}
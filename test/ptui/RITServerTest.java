@@ -0,0 +1,105 @@
+package ptui;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The RITServerTest class starts a {@link RITServer} on an ephemeral port of the loopback address and checks the
+ * responses of every endpoint, including the refusal of requests that are too large, images whose pixels exceed the
+ * limit of responses, and methods other than POST.
+ *
+ * <p>Run with {@code java -cp out ptui.RITServerTest} after compiling the RIT module and this class into out. The
+ * program exits with status 0 when every check passes, and reports the first failed check otherwise.</p>
+ *
+ * @author Samuel Henderson
+ */
+public class RITServerTest {
+
+    /** The request size limit and number of requests handled at once by the server under test. **/
+    private static final int MAX_REQUEST_BYTES = 1 << 16, MAX_CONCURRENT = 4;
+
+    /** An uncompressed 4x4 image, and its compressed contents. **/
+    private static final String IMAGE = "9\n9\n1\n2\n4\n4\n4\n4\n4\n4\n4\n4\n4\n4\n4\n4\n",
+            COMPRESSED = "16\n-1\n-1\n9\n9\n4\n4\n-1\n1\n2\n4\n4\n4\n4\n";
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private final String base;
+
+    private RITServerTest(HttpServer server) {
+        this.base = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    private HttpResponse<byte[]> post(String path, byte[] body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(base + path)).POST(HttpRequest.BodyPublishers.ofByteArray(body)).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private HttpResponse<byte[]> post(String path, String body) throws IOException, InterruptedException {
+        return post(path, body.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private void run() throws IOException, InterruptedException {
+        HttpResponse<byte[]> compressed = post("/compress", IMAGE);
+        check("/compress answers 200", compressed.statusCode() == 200);
+        check("/compress answers the compressed image", new String(compressed.body(), StandardCharsets.US_ASCII).equals(COMPRESSED));
+
+        HttpResponse<byte[]> entropy = post("/compress?format=rite", IMAGE);
+        check("/compress?format=rite answers 200", entropy.statusCode() == 200);
+        HttpResponse<byte[]> uncompressed = post("/decompress", entropy.body());
+        check("/decompress reverses /compress", uncompressed.statusCode() == 200 && new String(uncompressed.body(), StandardCharsets.US_ASCII).equals(IMAGE));
+
+        HttpResponse<byte[]> region = post("/region?row=0&col=0&height=2&width=2", COMPRESSED);
+        check("/region answers the pixels of the region", region.statusCode() == 200 && new String(region.body(), StandardCharsets.US_ASCII).equals("9\n9\n4\n4\n"));
+
+        check("/stats answers 200", post("/stats", COMPRESSED).statusCode() == 200);
+        check("an invalid image is refused with 400", post("/decompress", "16\n-1\n300\n").statusCode() == 400);
+        check("an unknown format is refused with 400", post("/compress?format=bmp", IMAGE).statusCode() == 400);
+
+        // Small bodies that declare images or regions far larger than the pixel limit
+        check("a declared image beyond the pixel limit is refused with 400", post("/decompress", "1073741824\n0\n").statusCode() == 400);
+        check("statistics of a declared image beyond the pixel limit are refused with 400", post("/stats", "1073741824\n0\n").statusCode() == 400);
+        check("a region of a declared image beyond the pixel limit is refused with 400", post("/region?row=0&col=0&height=1&width=1", "1073741824\n0\n").statusCode() == 400);
+        byte[] header = Arrays.copyOf(entropy.body(), entropy.body().length);
+        // The size header follows the magic and version bytes, and now declares a 32768x32768 image
+        header[5] = 0x40;
+        check("an entropy coded image beyond the pixel limit is refused with 400", post("/stats", header).statusCode() == 400);
+        check("a region beyond the pixel limit is refused with 400", post("/region?row=0&col=0&height=65536&width=65536", COMPRESSED).statusCode() == 400);
+
+        byte[] large = new byte[MAX_REQUEST_BYTES + 1];
+        Arrays.fill(large, (byte) '\n');
+        check("a body beyond the request size limit is refused with 413", post("/compress", large).statusCode() == 413);
+
+        HttpRequest get = HttpRequest.newBuilder(URI.create(base + "/stats")).GET().build();
+        check("a GET is refused with 405", client.send(get, HttpResponse.BodyHandlers.discarding()).statusCode() == 405);
+    }
+
+    private static void check(String description, boolean passed) {
+        if (!passed) {
+            throw new AssertionError(description);
+        }
+        System.out.println("Passed: " + description);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        // Port 0 binds an ephemeral port, so the test never collides with a running server
+        HttpServer server = RITServer.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), MAX_REQUEST_BYTES, MAX_CONCURRENT);
+        try {
+            new RITServerTest(server).run();
+        } catch (AssertionError e) {
+            System.out.println("Failed: " + e.getMessage());
+            System.exit(-1);
+        } finally {
+            server.stop(0);
+        }
+    }
+}